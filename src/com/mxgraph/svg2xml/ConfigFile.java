@@ -0,0 +1,125 @@
+/**
+ * Copyright (c) 2013, JGraph
+ */
+
+package com.mxgraph.svg2xml;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+/**
+ * A parsed group or stencil config file. It's read and parsed once and then shared by all stencils using it,
+ * so it must not be changed. Connections taken from it have to be copied before they are changed, see getConnections.
+ */
+public class ConfigFile
+{
+	private final byte[] bytes;
+
+	private final boolean valid;
+
+	// attributes of the shape element, null if there is no shape element
+	private String background = null;
+	private String aspect = null;
+	private String groupName = null;
+
+	private ArrayList<Connection> connections = null;
+
+	/**
+	 * Reads and parses <b>file</b>
+	 * @param file config file
+	 * @throws IOException if <b>file</b> can't be read
+	 */
+	public ConfigFile(File file) throws IOException
+	{
+		bytes = XmlInput.readBytes(file);
+		Document doc = XmlInput.parse(bytes);
+		valid = (doc != null);
+
+		if (valid)
+		{
+			NodeList shapes = doc.getElementsByTagName("shape");
+
+			if (shapes.getLength() > 0)
+			{
+				Element shape = (Element) shapes.item(0);
+				background = shape.getAttribute("background");
+				aspect = shape.getAttribute("aspect");
+				groupName = shape.getAttribute("groupname");
+				connections = Svg2Xml.getConstraintsFromXml(doc);
+			}
+		}
+	}
+
+	/**
+	 * @return the content of the file
+	 */
+	public byte[] getBytes()
+	{
+		return bytes;
+	}
+
+	/**
+	 * @return false if the file isn't well-formed XML
+	 */
+	public boolean isValid()
+	{
+		return valid;
+	}
+
+	/**
+	 * @return true if the file has a shape element, the other getters return null if it hasn't
+	 */
+	public boolean hasShape()
+	{
+		return background != null;
+	}
+
+	/**
+	 * @return the background attribute of the shape element
+	 */
+	public String getBackground()
+	{
+		return background;
+	}
+
+	/**
+	 * @return the aspect attribute of the shape element
+	 */
+	public String getAspect()
+	{
+		return aspect;
+	}
+
+	/**
+	 * @return the groupname attribute of the shape element
+	 */
+	public String getGroupName()
+	{
+		return groupName;
+	}
+
+	/**
+	 * @return copies of the connection blocks, they can be changed by the caller. The constraints are shared.
+	 */
+	public ArrayList<Connection> getConnections()
+	{
+		if (connections == null)
+		{
+			return null;
+		}
+
+		ArrayList<Connection> copies = new ArrayList<Connection>();
+
+		for (Connection connection : connections)
+		{
+			copies.add(new Connection(connection));
+		}
+
+		return copies;
+	}
+}
@@ -0,0 +1,52 @@
+/**
+ * Copyright (c) 2013, JGraph
+ */
+
+package com.mxgraph.svg2xml;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Hashtable;
+
+/**
+ * Parsed config files of a run. All SVGs of a folder share the group config, so it's read and parsed once instead of
+ * once per SVG. A file is read again if its size or modification time changed since it was read.
+ */
+public class ConfigRegistry
+{
+	private final Hashtable<String, Entry> entries = new Hashtable<String, Entry>();
+
+	private static class Entry
+	{
+		long lastModified;
+		long length;
+		ConfigFile config;
+	}
+
+	/**
+	 * @param file config file, it doesn't need to exist
+	 * @return the parsed <b>file</b>, or null if it doesn't exist
+	 * @throws IOException if <b>file</b> can't be read
+	 */
+	public synchronized ConfigFile get(File file) throws IOException
+	{
+		if (!file.exists())
+		{
+			return null;
+		}
+
+		String path = file.getAbsolutePath();
+		Entry entry = entries.get(path);
+
+		if (entry == null || entry.lastModified != file.lastModified() || entry.length != file.length())
+		{
+			entry = new Entry();
+			entry.lastModified = file.lastModified();
+			entry.length = file.length();
+			entry.config = new ConfigFile(file);
+			entries.put(path, entry);
+		}
+
+		return entry.config;
+	}
+}
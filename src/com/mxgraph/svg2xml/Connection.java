@@ -16,6 +16,20 @@ public class Connection
 	private String id;
 	private ArrayList<Constraint> constraints = new ArrayList<Constraint>();
 
+	public Connection()
+	{
+	}
+
+	/**
+	 * Copies <b>source</b>. The list of constraints is copied, the constraints are shared.
+	 */
+	public Connection(Connection source)
+	{
+		name = source.name;
+		id = source.id;
+		constraints = new ArrayList<Constraint>(source.constraints);
+	}
+
 	public String getName() 
 	{
 		return name;
@@ -0,0 +1,163 @@
+/**
+ * Copyright (c) 2013, JGraph
+ */
+
+package com.mxgraph.svg2xml;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * On-disk cache of converted stencils. An entry is keyed by a hash of everything the conversion of a stencil depends on:
+ * the SVG file (name and content), its group and stencil config files and the conversion options that change the stencil XML,
+ * reading the SVGs with a stream gives the same XML.
+ * A stencil is only converted again if one of these changed.
+ */
+public class ConversionCache
+{
+	// must be changed whenever the generated stencil XML changes, so older entries aren't used
+	private static final String FORMAT_VERSION = "5";
+
+	private final File folder;
+
+	/**
+	 * @param folder folder of the cache entries, created if it doesn't exist
+	 */
+	public ConversionCache(File folder)
+	{
+		this.folder = folder;
+		folder.mkdirs();
+	}
+
+	/**
+	 * @param sourceFile SVG file
+	 * @param groupConfig group config of <b>sourceFile</b>, null if it doesn't exist
+	 * @param stencilConfig stencil config of <b>sourceFile</b>, null if it doesn't exist
+	 * @param options conversion settings
+	 * @param target scale target of the entry, it replaces the scaling of <b>options</b>
+	 * @return key of the cache entry of <b>sourceFile</b> at <b>target</b>
+	 * @throws IOException if a file can't be read
+	 */
+	public String getKey(File sourceFile, ConfigFile groupConfig, ConfigFile stencilConfig, Svg2XmlOptions options, ScaleTarget target) throws IOException
+	{
+		MessageDigest digest;
+
+		try
+		{
+			digest = MessageDigest.getInstance("SHA-256");
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			// every Java platform supports SHA-256
+			throw new IllegalStateException(e);
+		}
+
+		String settings = FORMAT_VERSION
+				+ ";" + sourceFile.getName()
+				+ ";" + options.isCalculateBorder()
+				+ ";" + target.isRelativeScaling()
+				+ ";" + target.getRelativeScaleRatio()
+				+ ";" + target.getAbsoluteScalingX()
+				+ ";" + target.getAbsoluteScalingY()
+				+ ";" + options.isRoundCoords()
+				+ ";" + options.getDecimalsToRound()
+				+ ";" + options.isOptimizeStyles()
+				+ ";" + options.isSimplifyPaths();
+
+		update(digest, settings.getBytes(StandardCharsets.UTF_8));
+		update(digest, Files.readAllBytes(sourceFile.toPath()));
+		update(digest, (groupConfig != null) ? groupConfig.getBytes() : null);
+		update(digest, (stencilConfig != null) ? stencilConfig.getBytes() : null);
+
+		StringBuilder key = new StringBuilder();
+
+		for (byte b : digest.digest())
+		{
+			key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+
+		return key.toString();
+	}
+
+	// every part is prefixed with its length, so the parts can't run into each other
+	private static void update(MessageDigest digest, byte[] bytes)
+	{
+		int length = (bytes != null) ? bytes.length : -1;
+		digest.update(new byte[] {(byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8), (byte) length});
+
+		if (bytes != null)
+		{
+			digest.update(bytes);
+		}
+	}
+
+	/**
+	 * @param key cache key, see getKey
+	 * @return the cached stencil with the XML of the entry as its only XML, or null if there is no entry for <b>key</b>
+	 */
+	ConvertedStencil get(String key)
+	{
+		File file = getFile(key);
+
+		if (!file.exists())
+		{
+			return null;
+		}
+
+		try
+		{
+			String entry = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+			int lineEnd = entry.indexOf('\n');
+
+			if (lineEnd < 0)
+			{
+				return null;
+			}
+
+			ConvertedStencil stencil = new ConvertedStencil();
+			stencil.groupName = (lineEnd > 0) ? entry.substring(0, lineEnd) : null;
+			stencil.xml = new String[] {entry.substring(lineEnd + 1)};
+
+			return stencil;
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+
+		return null;
+	}
+
+	/**
+	 * Stores a converted stencil. The entry is written to a temporary file first, so readers never see a partial entry.
+	 * @param key cache key, see getKey
+	 * @param stencil converted stencil, its XML must not be null
+	 * @param target index of the XML of <b>stencil</b> that is stored
+	 */
+	void put(String key, ConvertedStencil stencil, int target)
+	{
+		File file = getFile(key);
+
+		try
+		{
+			File temp = File.createTempFile(key, ".tmp", folder);
+			String entry = ((stencil.groupName != null) ? stencil.groupName : "") + "\n" + stencil.xml[target];
+			Files.write(temp.toPath(), entry.getBytes(StandardCharsets.UTF_8));
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	private File getFile(String key)
+	{
+		return new File(folder, key + ".xml");
+	}
+}
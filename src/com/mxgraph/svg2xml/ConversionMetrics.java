@@ -0,0 +1,301 @@
+/**
+ * Copyright (c) 2013, JGraph
+ */
+
+package com.mxgraph.svg2xml;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Metrics of a conversion run: the stage metrics of every converted stencil and their summary per stage
+ * (total, percentiles and a histogram of the wall times). Written as JSON or CSV, so slow, memory hungry or broken
+ * SVGs can be found and regressions tracked between runs. Failed stencils are listed with their status, but left
+ * out of the stage summaries.
+ */
+public class ConversionMetrics
+{
+	public static final String FORMAT_JSON = "json";
+
+	public static final String FORMAT_CSV = "csv";
+
+	// upper bounds of the histogram buckets in nanoseconds, the last bucket has no upper bound
+	private static final long[] BUCKET_LIMITS = {100000L, 1000000L, 10000000L, 100000000L, 1000000000L};
+
+	private static final String[] BUCKET_NAMES = {"<0.1ms", "<1ms", "<10ms", "<100ms", "<1s", ">=1s"};
+
+	private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+	private final ArrayList<StencilMetrics> stencils = new ArrayList<StencilMetrics>();
+
+	private int cachedCount = 0;
+
+	private int failedCount = 0;
+
+	private final long startNanos = System.nanoTime();
+
+	private long runNanos = -1;
+
+	/**
+	 * @param stencil metrics of a converted stencil, or of a failed one if <b>stencil.isFailed()</b>
+	 */
+	public void add(StencilMetrics stencil)
+	{
+		stencils.add(stencil);
+
+		if (stencil.isFailed())
+		{
+			failedCount++;
+		}
+	}
+
+	/**
+	 * Counts a stencil that failed without metrics, e.g. because the thread converting it threw
+	 * @param name name of the stencil
+	 */
+	public void addFailed(String name)
+	{
+		StencilMetrics stencil = new StencilMetrics(name);
+		stencil.setFailed(true);
+		add(stencil);
+	}
+
+	/**
+	 * Counts a stencil that was taken from the cache instead of being converted
+	 */
+	public void addCached()
+	{
+		cachedCount++;
+	}
+
+	/**
+	 * Ends the run, the wall time of the run is measured until here
+	 */
+	public void finish()
+	{
+		runNanos = System.nanoTime() - startNanos;
+	}
+
+	/**
+	 * Writes the metrics to <b>file</b>
+	 * @param file destination file
+	 * @param format FORMAT_JSON or FORMAT_CSV
+	 * @throws IOException
+	 */
+	public void write(File file, String format) throws IOException
+	{
+		file.getAbsoluteFile().getParentFile().mkdirs();
+		Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+
+		try
+		{
+			if (FORMAT_CSV.equals(format))
+			{
+				writeCsv(out);
+			}
+			else
+			{
+				writeJson(out);
+			}
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+
+	/**
+	 * Writes one row per stencil, with its status (converted or failed), the wall time (ms) and the allocated bytes of
+	 * every stage
+	 */
+	private void writeCsv(Writer out) throws IOException
+	{
+		out.write("stencil,status,total_ms,total_bytes");
+
+		for (String stage : StencilMetrics.STAGE_NAMES)
+		{
+			out.write("," + stage + "_ms," + stage + "_bytes");
+		}
+
+		out.write(LINE_SEPARATOR);
+
+		for (StencilMetrics stencil : stencils)
+		{
+			out.write(quoteCsv(stencil.getName()) + "," + getStatus(stencil) + "," + toMillis(stencil.getTotalNanos()) + ","
+					+ stencil.getTotalAllocatedBytes());
+
+			for (int i = 0; i < StencilMetrics.STAGE_NAMES.length; i++)
+			{
+				out.write("," + toMillis(stencil.getNanos(i)) + "," + stencil.getAllocatedBytes(i));
+			}
+
+			out.write(LINE_SEPARATOR);
+		}
+	}
+
+	/**
+	 * Writes the summary of the run and of every stage, followed by the metrics of the stencils
+	 */
+	private void writeJson(Writer out) throws IOException
+	{
+		out.write("{" + LINE_SEPARATOR);
+		out.write("  \"converted\": " + (stencils.size() - failedCount) + "," + LINE_SEPARATOR);
+		out.write("  \"cached\": " + cachedCount + "," + LINE_SEPARATOR);
+		out.write("  \"failed\": " + failedCount + "," + LINE_SEPARATOR);
+		out.write("  \"run_ms\": " + toMillis(runNanos) + "," + LINE_SEPARATOR);
+		out.write("  \"stages\": {" + LINE_SEPARATOR);
+
+		for (int i = 0; i < StencilMetrics.STAGE_NAMES.length; i++)
+		{
+			out.write("    \"" + StencilMetrics.STAGE_NAMES[i] + "\": ");
+			writeStageSummary(out, i);
+			out.write(((i + 1 < StencilMetrics.STAGE_NAMES.length) ? "," : "") + LINE_SEPARATOR);
+		}
+
+		out.write("  }," + LINE_SEPARATOR);
+		out.write("  \"stencils\": [" + LINE_SEPARATOR);
+
+		for (int j = 0; j < stencils.size(); j++)
+		{
+			StencilMetrics stencil = stencils.get(j);
+			out.write("    {\"stencil\": " + quoteJson(stencil.getName())
+					+ ", \"status\": \"" + getStatus(stencil) + "\""
+					+ ", \"total_ms\": " + toMillis(stencil.getTotalNanos())
+					+ ", \"total_bytes\": " + stencil.getTotalAllocatedBytes());
+
+			for (int i = 0; i < StencilMetrics.STAGE_NAMES.length; i++)
+			{
+				out.write(", \"" + StencilMetrics.STAGE_NAMES[i] + "_ms\": " + toMillis(stencil.getNanos(i))
+						+ ", \"" + StencilMetrics.STAGE_NAMES[i] + "_bytes\": " + stencil.getAllocatedBytes(i));
+			}
+
+			out.write("}" + ((j + 1 < stencils.size()) ? "," : "") + LINE_SEPARATOR);
+		}
+
+		out.write("  ]" + LINE_SEPARATOR);
+		out.write("}" + LINE_SEPARATOR);
+	}
+
+	// summary of the converted stencils, the stages of a failed one are incomplete
+	private void writeStageSummary(Writer out, int stage) throws IOException
+	{
+		int count = stencils.size() - failedCount;
+		long[] nanos = new long[count];
+		long totalNanos = 0;
+		long totalBytes = 0;
+		int slowest = -1;
+		int[] histogram = new int[BUCKET_NAMES.length];
+		int k = 0;
+
+		for (int j = 0; j < stencils.size(); j++)
+		{
+			StencilMetrics stencil = stencils.get(j);
+
+			if (stencil.isFailed())
+			{
+				continue;
+			}
+
+			nanos[k] = stencil.getNanos(stage);
+			totalNanos += nanos[k];
+			totalBytes += Math.max(stencil.getAllocatedBytes(stage), 0);
+
+			if (slowest < 0 || nanos[k] > stencils.get(slowest).getNanos(stage))
+			{
+				slowest = j;
+			}
+
+			int bucket = 0;
+
+			while (bucket < BUCKET_LIMITS.length && nanos[k] >= BUCKET_LIMITS[bucket])
+			{
+				bucket++;
+			}
+
+			histogram[bucket]++;
+			k++;
+		}
+
+		Arrays.sort(nanos);
+
+		out.write("{\"total_ms\": " + toMillis(totalNanos)
+				+ ", \"total_bytes\": " + totalBytes
+				+ ", \"p50_ms\": " + toMillis(percentile(nanos, 50))
+				+ ", \"p90_ms\": " + toMillis(percentile(nanos, 90))
+				+ ", \"p99_ms\": " + toMillis(percentile(nanos, 99))
+				+ ", \"max_ms\": " + toMillis((count > 0) ? nanos[count - 1] : 0)
+				+ ", \"slowest\": " + ((slowest >= 0) ? quoteJson(stencils.get(slowest).getName()) : "null")
+				+ ", \"histogram\": {");
+
+		for (int b = 0; b < BUCKET_NAMES.length; b++)
+		{
+			out.write(((b > 0) ? ", " : "") + "\"" + BUCKET_NAMES[b] + "\": " + histogram[b]);
+		}
+
+		out.write("}}");
+	}
+
+	private static String getStatus(StencilMetrics stencil)
+	{
+		return (stencil.isFailed()) ? "failed" : "converted";
+	}
+
+	// nearest rank percentile of sorted values
+	private static long percentile(long[] sorted, int percent)
+	{
+		if (sorted.length == 0)
+		{
+			return 0;
+		}
+
+		int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+
+		return sorted[Math.max(rank, 1) - 1];
+	}
+
+	private static String toMillis(long nanos)
+	{
+		return Double.toString(Math.round(nanos / 1000.0) / 1000.0);
+	}
+
+	private static String quoteCsv(String value)
+	{
+		if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0)
+		{
+			return value;
+		}
+
+		return "\"" + value.replace("\"", "\"\"") + "\"";
+	}
+
+	static String quoteJson(String value)
+	{
+		StringBuilder quoted = new StringBuilder("\"");
+
+		for (int i = 0; i < value.length(); i++)
+		{
+			char c = value.charAt(i);
+
+			if (c == '"' || c == '\\')
+			{
+				quoted.append('\\').append(c);
+			}
+			else if (c < 0x20)
+			{
+				quoted.append(String.format("\\u%04x", (int) c));
+			}
+			else
+			{
+				quoted.append(c);
+			}
+		}
+
+		return quoted.append('"').toString();
+	}
+}
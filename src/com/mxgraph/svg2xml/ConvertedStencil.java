@@ -0,0 +1,20 @@
+/**
+ * Copyright (c) 2013, JGraph
+ */
+
+package com.mxgraph.svg2xml;
+
+/**
+ * Result of converting a single SVG file
+ */
+class ConvertedStencil
+{
+	// the stencil XML for every scale target of the run, null if the conversion failed
+	String[] xml;
+
+	// group name read from the group config, null if not defined there
+	String groupName;
+
+	// stage metrics of the conversion, null if the stencil was taken from the cache
+	StencilMetrics metrics;
+}
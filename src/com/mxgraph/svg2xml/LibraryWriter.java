@@ -0,0 +1,265 @@
+/**
+ * Copyright (c) 2013, JGraph
+ */
+
+package com.mxgraph.svg2xml;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Writes a stencil library (the stencils of a group) to its file. The file is opened once per group and every
+ * stencil is appended as soon as it is converted, so the library is never held in memory as a whole.
+ * <p>
+ * Stencils that only differ in their name can be found by a hash of the stencil XML without the name, only the
+ * hashes are kept in memory. They are reported, and optionally only the first one is written (collapse), with an
+ * alias map from the names of the others to it in a <b>.aliases.json</b> file next to the library (alias).
+ */
+public class LibraryWriter
+{
+	/** reports identical stencils, all of them are written */
+	public static final String DEDUP_REPORT = "report";
+
+	/** writes only the first of identical stencils */
+	public static final String DEDUP_COLLAPSE = "collapse";
+
+	/** writes only the first of identical stencils and maps the names of the others to it */
+	public static final String DEDUP_ALIAS = "alias";
+
+	private final File file;
+	private Writer writer;
+
+	// DEDUP_REPORT, DEDUP_COLLAPSE or DEDUP_ALIAS, null if identical stencils aren't looked for
+	private final String dedupMode;
+
+	// name of the first stencil for every stencil hash
+	private final HashMap<String, String> stencilNames = new HashMap<String, String>();
+
+	// names of the stencils that are identical to an earlier one, and the names of these earlier ones
+	private final ArrayList<String> aliases = new ArrayList<String>();
+	private final ArrayList<String> aliasTargets = new ArrayList<String>();
+
+	/**
+	 * Creates the library file (and its folders) and writes the library header
+	 * @param file destination file of the library
+	 * @param name name of the library (the group name)
+	 * @throws IOException if the file can't be created
+	 */
+	public LibraryWriter(File file, String name) throws IOException
+	{
+		this(file, name, null);
+	}
+
+	/**
+	 * Creates the library file (and its folders) and writes the library header
+	 * @param file destination file of the library
+	 * @param name name of the library (the group name)
+	 * @param dedupMode DEDUP_REPORT, DEDUP_COLLAPSE or DEDUP_ALIAS, null if identical stencils aren't looked for
+	 * @throws IOException if the file can't be created
+	 */
+	public LibraryWriter(File file, String name, String dedupMode) throws IOException
+	{
+		this.file = file;
+		this.dedupMode = dedupMode;
+		file.getParentFile().mkdirs();
+		writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+		writer.write("<shapes name=\"" + name + "\">" + System.getProperty("line.separator"));
+	}
+
+	/**
+	 * @param shapeXml the XML of a stencil, as written by StencilWriter
+	 * @throws IOException
+	 */
+	public void append(String shapeXml) throws IOException
+	{
+		if (dedupMode != null)
+		{
+			int nameStart = shapeXml.indexOf(" name=\"");
+			int nameEnd = shapeXml.indexOf('"', nameStart + 7);
+
+			// the name is an attribute of the shape element, the first element of the stencil
+			if (nameStart >= 0 && nameStart < shapeXml.indexOf('>'))
+			{
+				String name = unescape(shapeXml.substring(nameStart + 7, nameEnd));
+				String hash = getHash(shapeXml.substring(0, nameStart) + shapeXml.substring(nameEnd + 1));
+				String firstName = stencilNames.get(hash);
+
+				if (firstName != null)
+				{
+					System.out.println("stencil \"" + name + "\" is identical to \"" + firstName + "\"");
+					aliases.add(name);
+					aliasTargets.add(firstName);
+
+					if (!dedupMode.equals(DEDUP_REPORT))
+					{
+						return;
+					}
+				}
+				else
+				{
+					stencilNames.put(hash, name);
+				}
+			}
+		}
+
+		writer.write(shapeXml);
+	}
+
+	/**
+	 * @return the number of stencils that were identical to an earlier one
+	 */
+	public int getDuplicateCount()
+	{
+		return aliases.size();
+	}
+
+	private static String getHash(String text)
+	{
+		try
+		{
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+			StringBuilder hash = new StringBuilder();
+
+			for (byte b : digest)
+			{
+				hash.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			}
+
+			return hash.toString();
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			// every Java platform supports SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	// reverses the escaping of StencilWriter
+	private static String unescape(String value)
+	{
+		if (value.indexOf('&') < 0)
+		{
+			return value;
+		}
+
+		StringBuilder result = new StringBuilder();
+		int i = 0;
+
+		while (i < value.length())
+		{
+			int end = value.indexOf(';', i);
+
+			if (value.charAt(i) == '&' && end > i)
+			{
+				String entity = value.substring(i + 1, end);
+
+				if (entity.equals("amp"))
+				{
+					result.append('&');
+				}
+				else if (entity.equals("lt"))
+				{
+					result.append('<');
+				}
+				else if (entity.equals("gt"))
+				{
+					result.append('>');
+				}
+				else if (entity.equals("quot"))
+				{
+					result.append('"');
+				}
+				else if (entity.startsWith("#"))
+				{
+					result.appendCodePoint(Integer.parseInt(entity.substring(1)));
+				}
+
+				i = end + 1;
+			}
+			else
+			{
+				result.append(value.charAt(i++));
+			}
+		}
+
+		return result.toString();
+	}
+
+	/**
+	 * Ends the library and closes the file
+	 * @throws IOException
+	 */
+	public void close() throws IOException
+	{
+		if (writer != null)
+		{
+			try
+			{
+				writer.write("</shapes>");
+			}
+			finally
+			{
+				writer.close();
+				writer = null;
+			}
+
+			if (!aliases.isEmpty())
+			{
+				System.out.println(aliases.size() + " stencils of " + file.getPath() + " are identical to other stencils");
+			}
+
+			if (DEDUP_ALIAS.equals(dedupMode))
+			{
+				writeAliases();
+			}
+		}
+	}
+
+	/**
+	 * @return the file of the alias map
+	 */
+	public File getAliasFile()
+	{
+		String path = file.getPath();
+
+		return new File(path.substring(0, path.lastIndexOf('.')) + ".aliases.json");
+	}
+
+	// writes the alias map, the names of the stencils that weren't written and the names of the stencils they are identical to
+	private void writeAliases() throws IOException
+	{
+		String lineSeparator = System.getProperty("line.separator");
+		Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(getAliasFile()), "UTF-8"));
+
+		try
+		{
+			out.write("{" + lineSeparator);
+
+			for (int i = 0; i < aliases.size(); i++)
+			{
+				out.write("  " + ConversionMetrics.quoteJson(aliases.get(i)) + ": " + ConversionMetrics.quoteJson(aliasTargets.get(i))
+						+ ((i + 1 < aliases.size()) ? "," : "") + lineSeparator);
+			}
+
+			out.write("}" + lineSeparator);
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+
+	public File getFile()
+	{
+		return file;
+	}
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright (c) 2013, JGraph
+ */
+
+package com.mxgraph.svg2xml;
+
+/**
+ * A SVG path that was read once, as the command letters and their parameters in two arrays. The parameters of all
+ * commands follow each other, every command has as many as PathLexer.getParamCount returns. Implicit commands are
+ * stored as the command they stand for, see PathLexer.
+ */
+public class PathData
+{
+	private char[] commands = new char[16];
+	private int commandCount = 0;
+
+	private double[] params = new double[64];
+	private int paramCount = 0;
+
+	/**
+	 * @param reader the path is read from here until its end
+	 * @return the commands of <b>reader</b>
+	 */
+	public static PathData read(PathReader reader)
+	{
+		PathData data = new PathData();
+
+		while (reader.next())
+		{
+			char command = reader.getCommand();
+			data.addCommand(command);
+
+			for (int i = 0; i < PathLexer.getParamCount(command); i++)
+			{
+				data.addParam(reader.getParam(i));
+			}
+		}
+
+		return data;
+	}
+
+	/**
+	 * @param path the "d" attribute of a SVG path element
+	 * @return the commands of <b>path</b>, up to the first error
+	 */
+	public static PathData parse(String path)
+	{
+		return read(new PathLexer(path));
+	}
+
+	/**
+	 * Adds a command, its parameters must be added next with addParam
+	 * @param command path command letter
+	 */
+	public void addCommand(char command)
+	{
+		if (commandCount == commands.length)
+		{
+			char[] newCommands = new char[commandCount * 2];
+			System.arraycopy(commands, 0, newCommands, 0, commandCount);
+			commands = newCommands;
+		}
+
+		commands[commandCount++] = command;
+	}
+
+	/**
+	 * Adds a parameter of the last command
+	 */
+	public void addParam(double param)
+	{
+		if (paramCount == params.length)
+		{
+			double[] newParams = new double[paramCount * 2];
+			System.arraycopy(params, 0, newParams, 0, paramCount);
+			params = newParams;
+		}
+
+		params[paramCount++] = param;
+	}
+
+	/**
+	 * @return the number of commands
+	 */
+	public int getCommandCount()
+	{
+		return commandCount;
+	}
+
+	/**
+	 * @return a reader from the first command, every reader has its own position
+	 */
+	public PathReader getReader()
+	{
+		return new Reader();
+	}
+
+	private class Reader implements PathReader
+	{
+		// index of the current command and of its first parameter, before the first command
+		private int command = -1;
+		private int param = 0;
+
+		public boolean next()
+		{
+			if (command + 1 >= commandCount)
+			{
+				return false;
+			}
+
+			if (command >= 0)
+			{
+				param += PathLexer.getParamCount(commands[command]);
+			}
+
+			command++;
+			return true;
+		}
+
+		public char getCommand()
+		{
+			return commands[command];
+		}
+
+		public double getParam(int i)
+		{
+			return params[param + i];
+		}
+	}
+}
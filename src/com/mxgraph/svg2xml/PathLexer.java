@@ -0,0 +1,322 @@
+/**
+ * Copyright (c) 2013, JGraph
+ */
+
+package com.mxgraph.svg2xml;
+
+/**
+ * Reads the "d" attribute of a SVG path in a single pass, one command at a time. The parameters of the
+ * current command are available as doubles, no intermediate strings are created.
+ * Implicit commands (parameters following the parameters of the previous command) are returned as a repetition
+ * of the previous command, or as a lineto after a moveto.
+ * <p>
+ * The "points" attribute of a polyline or polygon is read with forPoints, as a lineto for every point.
+ */
+public class PathLexer implements PathReader
+{
+	// powers of ten that are exactly representable as doubles
+	private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+	// mantissas up to 2^53 are exact as doubles
+	private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+	private final String path;
+	private final int length;
+	private int index = 0;
+
+	// the current command, 'm' before the first command
+	private char command;
+	private final double[] params = new double[7];
+	private boolean error = false;
+
+	// true if only points are read, command letters are an error then
+	private final boolean isPoints;
+
+	/**
+	 * @param path the "d" attribute of a SVG path element
+	 */
+	public PathLexer(String path)
+	{
+		this(path, false);
+	}
+
+	private PathLexer(String path, boolean isPoints)
+	{
+		this.path = (path != null) ? path : "";
+		this.length = this.path.length();
+		this.isPoints = isPoints;
+		this.command = (isPoints) ? 'L' : 'm';
+	}
+
+	/**
+	 * Reads the points of a polyline or polygon. The coordinates can be separated by commas, whitespace or both, or
+	 * not at all if the sign of the next one separates them. The string isn't copied.
+	 * @param points the "points" attribute of a SVG polyline or polygon element
+	 * @return a lexer that returns every point as an absolute lineto, up to the first error
+	 */
+	public static PathLexer forPoints(String points)
+	{
+		return new PathLexer(points, true);
+	}
+
+	/**
+	 * Reads the next command and its parameters.
+	 * @return false at the end of the path, or if the rest of the path isn't valid
+	 */
+	public boolean next()
+	{
+		skipSeparators();
+
+		if (error || index >= length)
+		{
+			return false;
+		}
+
+		char c = path.charAt(index);
+
+		if (!isPoints && getParamCount(c) >= 0)
+		{
+			command = c;
+			index++;
+		}
+		else if (isNumberStart(c) && command != 'z' && command != 'Z')
+		{
+			if (command == 'm')
+			{
+				command = 'l';
+			}
+			else if (command == 'M')
+			{
+				command = 'L';
+			}
+		}
+		else
+		{
+			error = true;
+			return false;
+		}
+
+		int paramCount = getParamCount(command);
+		boolean isArc = (command == 'a' || command == 'A');
+
+		for (int i = 0; i < paramCount; i++)
+		{
+			skipSeparators();
+
+			if (isArc && (i == 3 || i == 4))
+			{
+				params[i] = readFlag();
+			}
+			else
+			{
+				params[i] = readNumber();
+			}
+
+			if (error)
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * @return the current command letter
+	 */
+	public char getCommand()
+	{
+		return command;
+	}
+
+	/**
+	 * @param i index of the parameter, starting from 0
+	 * @return the parameter of the current command
+	 */
+	public double getParam(int i)
+	{
+		return params[i];
+	}
+
+	/**
+	 * @param command path command letter
+	 * @return number of parameters of <b>command</b> or -1 if it isn't a path command
+	 */
+	public static int getParamCount(char command)
+	{
+		switch (command)
+		{
+			case 'Z':
+			case 'z':
+				return 0;
+			case 'H':
+			case 'h':
+			case 'V':
+			case 'v':
+				return 1;
+			case 'M':
+			case 'm':
+			case 'L':
+			case 'l':
+			case 'T':
+			case 't':
+				return 2;
+			case 'S':
+			case 's':
+			case 'Q':
+			case 'q':
+				return 4;
+			case 'C':
+			case 'c':
+				return 6;
+			case 'A':
+			case 'a':
+				return 7;
+			default:
+				return -1;
+		}
+	}
+
+	private static boolean isNumberStart(char c)
+	{
+		return (c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.';
+	}
+
+	private void skipSeparators()
+	{
+		while (index < length)
+		{
+			char c = path.charAt(index);
+
+			if (c == ' ' || c == ',' || c == '\n' || c == '\r' || c == '\t' || c == '\f')
+			{
+				index++;
+			}
+			else
+			{
+				break;
+			}
+		}
+	}
+
+	// arc flags are a single digit, they don't need to be separated from the next parameter
+	private double readFlag()
+	{
+		if (index < length)
+		{
+			char c = path.charAt(index);
+
+			if (c == '0' || c == '1')
+			{
+				index++;
+				return c - '0';
+			}
+		}
+
+		error = true;
+		return 0;
+	}
+
+	private double readNumber()
+	{
+		int start = index;
+		boolean negative = false;
+
+		if (index < length && (path.charAt(index) == '-' || path.charAt(index) == '+'))
+		{
+			negative = path.charAt(index) == '-';
+			index++;
+		}
+
+		long mantissa = 0;
+		int digits = 0;
+		int exponent = 0;
+		boolean exact = true;
+
+		while (index < length && path.charAt(index) >= '0' && path.charAt(index) <= '9')
+		{
+			mantissa = addDigit(mantissa, path.charAt(index));
+			exact = exact && mantissa <= MAX_EXACT_MANTISSA;
+			digits++;
+			index++;
+		}
+
+		if (index < length && path.charAt(index) == '.')
+		{
+			index++;
+
+			while (index < length && path.charAt(index) >= '0' && path.charAt(index) <= '9')
+			{
+				mantissa = addDigit(mantissa, path.charAt(index));
+				exact = exact && mantissa <= MAX_EXACT_MANTISSA;
+				exponent--;
+				digits++;
+				index++;
+			}
+		}
+
+		if (digits == 0)
+		{
+			error = true;
+			return 0;
+		}
+
+		// exponent, but only if followed by digits (so "1e" isn't swallowed)
+		if (index < length && (path.charAt(index) == 'e' || path.charAt(index) == 'E'))
+		{
+			int expIndex = index + 1;
+			boolean expNegative = false;
+
+			if (expIndex < length && (path.charAt(expIndex) == '-' || path.charAt(expIndex) == '+'))
+			{
+				expNegative = path.charAt(expIndex) == '-';
+				expIndex++;
+			}
+
+			if (expIndex < length && path.charAt(expIndex) >= '0' && path.charAt(expIndex) <= '9')
+			{
+				int exp = 0;
+
+				while (expIndex < length && path.charAt(expIndex) >= '0' && path.charAt(expIndex) <= '9')
+				{
+					exp = Math.min(exp * 10 + (path.charAt(expIndex) - '0'), 100000);
+					expIndex++;
+				}
+
+				exponent += (expNegative) ? -exp : exp;
+				index = expIndex;
+			}
+		}
+
+		double value;
+
+		if (exact && exponent >= -22 && exponent <= 22)
+		{
+			// both the mantissa and the power of ten are exact, so a single operation gives the correctly rounded result
+			value = (exponent >= 0) ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+
+			if (negative)
+			{
+				value = -value;
+			}
+		}
+		else
+		{
+			value = Double.parseDouble(path.substring(start, index));
+		}
+
+		return value;
+	}
+
+	private static long addDigit(long mantissa, char digit)
+	{
+		// the value is only used if it stays exact, this just avoids overflowing
+		if (mantissa > Long.MAX_VALUE / 10 - 10)
+		{
+			return Long.MAX_VALUE;
+		}
+
+		return mantissa * 10 + (digit - '0');
+	}
+}
@@ -0,0 +1,29 @@
+/**
+ * Copyright (c) 2013, JGraph
+ */
+
+package com.mxgraph.svg2xml;
+
+/**
+ * Reads the commands of a SVG path one at a time, with their parameters as doubles. Implemented by PathLexer, which
+ * reads the "d" attribute, and by PathData, which holds a path that was already read.
+ */
+public interface PathReader
+{
+	/**
+	 * Moves to the next command.
+	 * @return false at the end of the path
+	 */
+	boolean next();
+
+	/**
+	 * @return the current command letter
+	 */
+	char getCommand();
+
+	/**
+	 * @param i index of the parameter, starting from 0
+	 * @return the parameter of the current command
+	 */
+	double getParam(int i);
+}
@@ -0,0 +1,258 @@
+/**
+ * Copyright (c) 2013, JGraph
+ */
+
+package com.mxgraph.svg2xml;
+
+/**
+ * Simplifies runs of consecutive lines of a path before they are written. The parsers add the lines of a run here
+ * instead of writing them, and flush the run before they write anything else (move, curve, arc, close or the end of
+ * the path).
+ * <p>
+ * A run is simplified with Ramer-Douglas-Peucker: a point is dropped if it is closer than the tolerance to the line
+ * between the points that are kept around it. This also merges collinear lines. A point where the run doesn't go on
+ * in the same direction is always kept, so a run that goes back along itself keeps its length, e.g. M40 40 L50 50
+ * L40 40 L60 60 is written as it is. The tolerance is half of the last rounded decimal, the same error the rounding
+ * of the coordinates allows, so a dropped point can't be told apart from a rounded one. Lines that have the same end
+ * point as the previous one after rounding are dropped too.
+ * The end point of a run is always kept, curves and arcs are written as they are.
+ */
+public class PathSimplifier
+{
+	private final StencilPath path;
+
+	private final boolean doRound;
+
+	private final int dtr;
+
+	private final double toleranceSq;
+
+	// points of the current run, the first one is the start point of the run, it isn't written
+	private double[] xs = new double[16];
+	private double[] ys = new double[16];
+	private int count = 0;
+
+	/**
+	 * @param path the lines are added at the end of this path
+	 * @param decimals number of decimals used for rounding coordinates (-1 if they aren't rounded, then only lines
+	 * that don't change the direction or have no length are dropped)
+	 */
+	public PathSimplifier(StencilPath path, int decimals)
+	{
+		this.path = path;
+		this.doRound = (decimals >= 0);
+		this.dtr = decimals;
+
+		double tolerance = (doRound) ? 0.5 / Math.pow(10, decimals) : 0;
+		this.toleranceSq = tolerance * tolerance;
+	}
+
+	/**
+	 * Adds a line to the current run
+	 * @param prevX x of the current point, only used if this is the first line of the run
+	 * @param prevY y of the current point, only used if this is the first line of the run
+	 * @param x x of the end point of the line
+	 * @param y y of the end point of the line
+	 */
+	public void lineTo(double prevX, double prevY, double x, double y)
+	{
+		if (count == 0)
+		{
+			add(prevX, prevY);
+		}
+
+		add(x, y);
+	}
+
+	private void add(double x, double y)
+	{
+		if (count == xs.length)
+		{
+			double[] newXs = new double[count * 2];
+			double[] newYs = new double[count * 2];
+			System.arraycopy(xs, 0, newXs, 0, count);
+			System.arraycopy(ys, 0, newYs, 0, count);
+			xs = newXs;
+			ys = newYs;
+		}
+
+		xs[count] = x;
+		ys[count] = y;
+		count++;
+	}
+
+	/**
+	 * Writes the simplified lines of the current run and starts a new run
+	 */
+	public void flush()
+	{
+		if (count == 0)
+		{
+			return;
+		}
+
+		boolean[] keep = simplify();
+		double prevX = rtd(xs[0]);
+		double prevY = rtd(ys[0]);
+		int written = 0;
+
+		for (int i = 1; i < count; i++)
+		{
+			if (keep[i])
+			{
+				double x = rtd(xs[i]);
+				double y = rtd(ys[i]);
+
+				// a line without length after rounding, a run that only has such lines keeps its last one
+				if (x == prevX && y == prevY && (i < count - 1 || written > 0))
+				{
+					continue;
+				}
+
+				path.lineTo(x, y);
+				prevX = x;
+				prevY = y;
+				written++;
+			}
+		}
+
+		count = 0;
+	}
+
+	/**
+	 * @return the points of the run that are kept by Ramer-Douglas-Peucker
+	 */
+	private boolean[] simplify()
+	{
+		boolean[] keep = new boolean[count];
+		keep[0] = true;
+		keep[count - 1] = true;
+		markTurningPoints(keep);
+
+		// ranges that are still to be simplified, as pairs of first and last point, without recursion for long runs
+		int[] stack = new int[32];
+		int top = 0;
+		int start = 0;
+
+		// the points kept so far split the run into ranges that are simplified on their own
+		for (int i = 1; i < count; i++)
+		{
+			if (keep[i])
+			{
+				if (top + 2 > stack.length)
+				{
+					int[] newStack = new int[stack.length * 2];
+					System.arraycopy(stack, 0, newStack, 0, top);
+					stack = newStack;
+				}
+
+				stack[top++] = start;
+				stack[top++] = i;
+				start = i;
+			}
+		}
+
+		while (top > 0)
+		{
+			int last = stack[--top];
+			int first = stack[--top];
+			double maxDistSq = toleranceSq;
+			int farthest = -1;
+
+			for (int i = first + 1; i < last; i++)
+			{
+				double distSq = getDistanceSq(xs[i], ys[i], xs[first], ys[first], xs[last], ys[last]);
+
+				// without a tolerance only points exactly on the line are dropped
+				if (distSq > maxDistSq)
+				{
+					maxDistSq = distSq;
+					farthest = i;
+				}
+			}
+
+			if (farthest != -1)
+			{
+				keep[farthest] = true;
+
+				if (top + 4 > stack.length)
+				{
+					int[] newStack = new int[stack.length * 2];
+					System.arraycopy(stack, 0, newStack, 0, top);
+					stack = newStack;
+				}
+
+				stack[top++] = first;
+				stack[top++] = farthest;
+				stack[top++] = farthest;
+				stack[top++] = last;
+			}
+		}
+
+		return keep;
+	}
+
+	/**
+	 * Keeps the points where the run doesn't go on in the same direction, i.e. where the dot product of the line before
+	 * and the line after the point isn't positive. Dropping such a point would shorten the stroked path, which moves
+	 * every dash after it. Lines without length are skipped, so they don't count as a turn.
+	 * @param keep the turning points are set to true here
+	 */
+	private void markTurningPoints(boolean[] keep)
+	{
+		double prevDx = 0;
+		double prevDy = 0;
+
+		for (int i = 1; i < count; i++)
+		{
+			double dx = xs[i] - xs[i - 1];
+			double dy = ys[i] - ys[i - 1];
+
+			if (dx != 0 || dy != 0)
+			{
+				if ((prevDx != 0 || prevDy != 0) && prevDx * dx + prevDy * dy <= 0)
+				{
+					keep[i - 1] = true;
+				}
+
+				prevDx = dx;
+				prevDy = dy;
+			}
+		}
+	}
+
+	/**
+	 * @return the squared distance of the point (px, py) to the segment from (x1, y1) to (x2, y2). The distance to the
+	 * segment, not the infinite line, so a point beyond the ends of the segment isn't dropped even if it is on the line.
+	 */
+	private static double getDistanceSq(double px, double py, double x1, double y1, double x2, double y2)
+	{
+		double dx = x2 - x1;
+		double dy = y2 - y1;
+		double lengthSq = dx * dx + dy * dy;
+		double t = 0;
+
+		if (lengthSq > 0)
+		{
+			t = ((px - x1) * dx + (py - y1) * dy) / lengthSq;
+			t = Math.max(0, Math.min(1, t));
+		}
+
+		double ex = x1 + t * dx - px;
+		double ey = y1 + t * dy - py;
+
+		return ex * ex + ey * ey;
+	}
+
+	private double rtd(double d)
+	{
+		if (doRound)
+		{
+			return Shape2Xml.roundToDecimals(d, dtr);
+		}
+		else
+		{
+			return d;
+		}
+	}
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright (c) 2013, JGraph
+ */
+
+package com.mxgraph.svg2xml;
+
+/**
+ * Size the stencils of a run are written at: either relative scaling by a ratio, or normalized to a fixed size.
+ * A run can write its libraries at several targets, every SVG is read and flattened only once for all of them.
+ */
+public class ScaleTarget
+{
+	private final boolean relativeScaling;
+
+	// dest/src, used if relativeScaling=true
+	private final double relativeScaleRatio;
+
+	// size of the stencils, used if relativeScaling=false
+	private final double absoluteScalingX;
+	private final double absoluteScalingY;
+
+	/**
+	 * @param relativeScaling true for relative scaling, false to normalize the size
+	 * @param relativeScaleRatio scaling ratio, dest/src
+	 * @param absoluteScalingX width of the stencils if they are normalized
+	 * @param absoluteScalingY height of the stencils if they are normalized
+	 */
+	public ScaleTarget(boolean relativeScaling, double relativeScaleRatio, double absoluteScalingX, double absoluteScalingY)
+	{
+		this.relativeScaling = relativeScaling;
+		this.relativeScaleRatio = relativeScaleRatio;
+		this.absoluteScalingX = absoluteScalingX;
+		this.absoluteScalingY = absoluteScalingY;
+	}
+
+	/**
+	 * @param target a ratio for relative scaling (e.g. <b>0.5</b>) or a size to normalize to (e.g. <b>100x100</b>)
+	 * @return the target described by <b>target</b>
+	 * @throws IllegalArgumentException if <b>target</b> isn't a positive ratio or size
+	 */
+	public static ScaleTarget parse(String target)
+	{
+		try
+		{
+			int xIndex = target.toLowerCase().indexOf('x');
+
+			if (xIndex < 0)
+			{
+				double ratio = Double.parseDouble(target);
+
+				if (ratio > 0)
+				{
+					return new ScaleTarget(true, ratio, 100, 100);
+				}
+			}
+			else
+			{
+				double x = Double.parseDouble(target.substring(0, xIndex));
+				double y = Double.parseDouble(target.substring(xIndex + 1));
+
+				if (x > 0 && y > 0)
+				{
+					return new ScaleTarget(false, 1.0, x, y);
+				}
+			}
+		}
+		catch (NumberFormatException e)
+		{
+			// reported below
+		}
+
+		throw new IllegalArgumentException("Invalid scale target: " + target);
+	}
+
+	public boolean isRelativeScaling()
+	{
+		return relativeScaling;
+	}
+
+	public double getRelativeScaleRatio()
+	{
+		return relativeScaleRatio;
+	}
+
+	public double getAbsoluteScalingX()
+	{
+		return absoluteScalingX;
+	}
+
+	public double getAbsoluteScalingY()
+	{
+		return absoluteScalingY;
+	}
+
+	/**
+	 * @return name of the folder the libraries of this target are written to, e.g. <b>scale_0.5</b> or <b>size_100x100</b>
+	 */
+	public String getName()
+	{
+		if (relativeScaling)
+		{
+			return "scale_" + format(relativeScaleRatio);
+		}
+		else
+		{
+			return "size_" + format(absoluteScalingX) + "x" + format(absoluteScalingY);
+		}
+	}
+
+	// whole numbers without the decimals
+	private static String format(double d)
+	{
+		return (d == Math.rint(d) && Math.abs(d) < 1e15) ? Long.toString((long) d) : Double.toString(d);
+	}
+
+	public String toString()
+	{
+		return getName();
+	}
+}
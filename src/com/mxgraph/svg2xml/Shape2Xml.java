@@ -9,12 +9,8 @@ import java.io.IOException;
 import java.io.StringReader;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
-import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 
 import org.w3c.dom.Element;
@@ -30,49 +26,86 @@ import org.xml.sax.SAXException;
  */
 public class Shape2Xml 
 {
-	protected static double lastPathX=0; // where the last path part ended
-	protected static double lastPathY=0; 
-	protected static double prevPathX=0; // where the last path part ended before transforming
-	protected static double prevPathY=0;
-	protected static double lastMoveX=0; // where the last move ended
-	protected static double lastMoveY=0; 
-	protected static double prevMoveX=0; // where the last move ended before transforming
-	protected static double prevMoveY=0;
+	/**
+	 * Path cursor of a single path transformation. Every transformation gets its own, so paths can be transformed in parallel.
+	 */
+	protected static class TransformContext
+	{
+		protected double lastPathX=0; // where the last path part ended
+		protected double lastPathY=0; 
+		protected double prevPathX=0; // where the last path part ended before transforming
+		protected double prevPathY=0;
+		protected double lastMoveX=0; // where the last move ended
+		protected double lastMoveY=0; 
+		protected double prevMoveX=0; // where the last move ended before transforming
+		protected double prevMoveY=0;
+	}
 	
 	/**
 	 * Parses a SVG element to an stencil XML element
 	 * @param element SVG element that is to be parsed
-	 * @param xmlDoc taget stencil XML document
-	 * @param configDoc config data of <b>xmlDoc</b>
-	 * @return Element in <b>xmlDoc</b>
+	 * @param block the stencil XML element is written at the end of this block
+	 * @param configDoc config data of the target stencil
+	 * @return true if an element was written to <b>block</b>
+	 */
+	public static boolean parse(Element element, StencilWriter.Block block, XmlConfig configDoc)
+	{
+		return parse(StencilGeometry.createShape(element), block, configDoc);
+	}
+
+	/**
+	 * @param configDoc config data of the target stencil, with the stencil bounds set
+	 * @return the scale of the coordinates of the stencil, the ratio for relative scaling or the ratio that fits the
+	 * bounds into the absolute size
 	 */
-	public static Element parse(Element element, Document xmlDoc, XmlConfig configDoc)
+	public static double getScale(XmlConfig configDoc)
 	{
-		double s = configDoc.getRelativeScalingRatio();
-		
-		if (!configDoc.isRelativeScaling())
+		if (configDoc.isRelativeScaling())
 		{
-			s = Math.min(configDoc.getAbsoluteScalingX() / configDoc.getStencilBoundsX(), configDoc.getAbsoluteScalingY() / configDoc.getStencilBoundsY());
+			return configDoc.getRelativeScalingRatio();
 		}
-		
-		if (element.getNodeName().equals("rect"))
+		else
+		{
+			return Math.min(configDoc.getAbsoluteScalingX() / configDoc.getStencilBoundsX(), configDoc.getAbsoluteScalingY() / configDoc.getStencilBoundsY());
+		}
+	}
+
+	/**
+	 * Writes the geometry of a SVG element as an stencil XML element
+	 * @param shape geometry of the SVG element, see StencilGeometry
+	 * @param block the stencil XML element is written at the end of this block
+	 * @param configDoc config data of the target stencil
+	 * @return true if an element was written to <b>block</b>
+	 */
+	public static boolean parse(StencilGeometry.Shape shape, StencilWriter.Block block, XmlConfig configDoc)
+	{
+		double s = getScale(configDoc);
+		double dx = configDoc.getStencilBoundsMinX();
+		double dy = configDoc.getStencilBoundsMinY();
+		int dn = configDoc.getDecimalsToRound();
+		double[] values = shape.values;
+
+		if (shape.kind == StencilGeometry.RECT)
 		{
-			if (element.getAttribute("transform") != null && !element.getAttribute("transform").equals(""))
+			double x = values[0];
+			double y = values[1];
+			double w = values[2];
+			double h = values[3];
+			double rx = values[4];
+			double ry = values[5];
+
+			if (shape.transformed)
 			{
 				//transformed rect or roundrect
-				return matrixTransformRect(element, xmlDoc, configDoc);
-			}
+				PathData path = matrixTransformPath(shape.path.getReader(), composeTransform(shape.tr, -dx, -dy, s));
 
-			int dn = configDoc.getDecimalsToRound();
-			double x = getDoubleAttribute(element, "x");
-			double y = getDoubleAttribute(element, "y");
-			double w = getDoubleAttribute(element, "width");
-			double h = getDoubleAttribute(element, "height");
-			double rx = getDoubleAttribute(element, "rx");
-			double ry = getDoubleAttribute(element, "ry");
+				mxPathParser pp = new mxPathParser();
+				pp.createShape(path.getReader(), block, dn, configDoc.isSimplifyPaths());
+				return true;
+			}
 
-			x = x - configDoc.getStencilBoundsMinX();
-			y = y - configDoc.getStencilBoundsMinY();
+			x = x - dx;
+			y = y - dy;
 
 			x = roundToDecimals(x * s, dn);
 			y = roundToDecimals(y * s, dn);
@@ -84,208 +117,75 @@ public class Shape2Xml
 			if(rx == 0 && ry == 0)
 			{
 				//untransformed rect
-				Element el = xmlDoc.createElement("rect");
-				el.setAttribute("x", String.valueOf(x));
-				el.setAttribute("y", String.valueOf(y));
-				el.setAttribute("w", String.valueOf(w));
-				el.setAttribute("h", String.valueOf(h));
-				return el;
+				block.startElement("rect");
+				block.attribute("x", x);
+				block.attribute("y", y);
+				block.attribute("w", w);
+				block.attribute("h", h);
+				block.endElement();
+				return true;
 			}
-			else if (rx != 0 || ry != 0)
+			else
 			{
 				//untransformed roundrect
-				Element el = xmlDoc.createElement("roundrect");
-				el.setAttribute("x", String.valueOf(x));
-				el.setAttribute("y", String.valueOf(y));
-				el.setAttribute("w", String.valueOf(w));
-				el.setAttribute("h", String.valueOf(h));
+				block.startElement("roundrect");
+				block.attribute("x", x);
+				block.attribute("y", y);
+				block.attribute("w", w);
+				block.attribute("h", h);
 				double arcSize = 0;
 				double r = (rx + ry) / 2;
 				double dim = Math.min(w, h);
 				arcSize = Math.min(r / dim * 100, 50);
 				arcSize = Math.max(arcSize, 0);
 				arcSize = roundToDecimals(arcSize, dn);
-				el.setAttribute("arcsize", String.valueOf(arcSize));
-				return el;
+				block.attribute("arcsize", arcSize);
+				block.endElement();
+				return true;
 			}
 		}
-		else if (element.getNodeName().equals("line"))
+		else if (shape.kind == StencilGeometry.PATH)
 		{
-			Double[] tr = getTransform(element);
-
-			double x1 = getDoubleAttribute(element, "x1");
-			double y1 = getDoubleAttribute(element, "y1");
-			double x2 = getDoubleAttribute(element, "x2");
-			double y2 = getDoubleAttribute(element, "y2");
-
-			String pathString =  "M " + x1 + " " + y1 + " L " + x2 + " " + y2;
-
-			pathString = matrixTransformPath(pathString, tr, configDoc);
-			double dx = configDoc.getStencilBoundsMinX();
-			double dy = configDoc.getStencilBoundsMinY();
-			pathString = matrixTransformPath(pathString, new Double[]{1.0, 0.0, 0.0, 1.0, -dx, -dy}, configDoc);
-			pathString = matrixTransformPath(pathString, new Double[]{s, 0.0, 0.0, s, 0.0, 0.0}, configDoc);
-
+			// paths and lines
+			PathData path = matrixTransformPath(shape.path.getReader(), composeTransform(shape.tr, -dx, -dy, s));
 			mxPathParser pp = new mxPathParser();
-			return pp.createShape(pathString, xmlDoc, configDoc.getDecimalsToRound());
+			pp.createShape(path.getReader(), block, dn, configDoc.isSimplifyPaths());
+			return true;
 		}
-		else if (element.getNodeName().equals("polyline") || element.getNodeName().equals("polygon"))
+		else if (shape.kind == StencilGeometry.POLY)
 		{
-			if (element.getAttribute("transform") != null && !element.getAttribute("transform").equals(""))
-			{
-				element = matrixTransformPoly(element, configDoc);
-			}
+			// the points are already transformed
+			double[] points = new double[shape.valueCount];
 
-			String pointsString = element.getAttribute("points");
-			int dn = configDoc.getDecimalsToRound();
-			
-			pointsString = pointsString.replaceAll("\\s{2,}", " ");
-			pointsString = pointsString.replaceAll("E -", "E-");
-			pointsString = pointsString.replaceAll("e -", "e-");
-
-			String newPointsString = "";
-			double x = 0;
-			double y = 0;
-			String xString;
-			String yString;
-			double xNew;
-			double yNew;
-
-			//a loop that reads the coords
-			int commaIndex = pointsString.indexOf(",");
-			int spaceIndex = pointsString.indexOf(" ", commaIndex+1);
-
-			if (spaceIndex == -1)
+			for (int i = 0; i + 1 < shape.valueCount; i += 2)
 			{
-				spaceIndex = pointsString.length();
+				points[i] = roundToDecimals((values[i] - dx) * s, dn);
+				points[i + 1] = roundToDecimals((values[i + 1] - dy) * s, dn);
 			}
 
-			if (commaIndex != -1)
-			{
-				while ((commaIndex != -1) && (spaceIndex > commaIndex))
-				{
-					//read x
-					xString = pointsString.substring(0, commaIndex);
-					//read y
-					yString = pointsString.substring(commaIndex + 1, spaceIndex);
-	
-					x = Double.valueOf(xString);
-					y = Double.valueOf(yString);
-					x = x - configDoc.getStencilBoundsMinX();
-					y = y - configDoc.getStencilBoundsMinY();
-	
-					// add the new coords to the new string
-					xNew = roundToDecimals(x * s, dn);
-					yNew = roundToDecimals(y * s, dn);
-	
-					newPointsString += xNew + "," + yNew + " ";
-	
-					pointsString = pointsString.substring(spaceIndex, pointsString.length());
-	
-					commaIndex = pointsString.indexOf(",");
-					spaceIndex = pointsString.indexOf(" ", commaIndex + 1);
-	
-					if (spaceIndex==-1)
-					{
-						spaceIndex = pointsString.length();
-					}
-				}
-			}
-			else if (spaceIndex > -1)
-			{
-				spaceIndex = pointsString.indexOf(" ");
-				int spaceIndex2 = pointsString.indexOf(" ", spaceIndex + 1);
-				
-				while (spaceIndex2 != spaceIndex)
-				{
-					//read x
-					xString = pointsString.substring(0, spaceIndex);
-					//read y
-					yString = pointsString.substring(spaceIndex + 1, spaceIndex2);
-	
-					x = Double.valueOf(xString);
-					y = Double.valueOf(yString);
-					x = x - configDoc.getStencilBoundsMinX();
-					y = y - configDoc.getStencilBoundsMinY();
-	
-					// add the new coords to the new string
-					xNew = roundToDecimals(x * s, dn);
-					yNew = roundToDecimals(y * s, dn);
-	
-					newPointsString += xNew + "," + yNew + " ";
-	
-					pointsString = pointsString.substring(Math.min(spaceIndex2 + 1, pointsString.length()), pointsString.length());
-	
-					spaceIndex = pointsString.indexOf(" ");
-					spaceIndex2 = pointsString.indexOf(" ", spaceIndex + 1);
-	
-					if (spaceIndex==-1)
-					{
-						spaceIndex = pointsString.length();
-					}
-					
-					if (spaceIndex2==-1)
-					{
-						spaceIndex2 = pointsString.length();
-					}
-				}
-			}
-			
-			newPointsString = newPointsString.substring(0, (newPointsString.length() - 1));
-			newPointsString = setPathRoot(newPointsString, configDoc);
-//			String polyXML = "<path>" + System.getProperty("line.separator");
-			//			mxPolylineProducer ph = new mxPolylineProducer();
-			//			PointsParser p = new PointsParser(ph);
-			//			p.parse(newPointsString, configDoc.getDecimalsToRound());
-			//			polyXML += ph.getLines();
-
-//			if (element.getNodeName().equals("polygon"))
-//			{
-//				polyXML += "<close/>" + System.getProperty("line.separator");
-//			}
-//
-//			polyXML += "</path>" + System.getProperty("line.separator");
 			mxPolyParser pp = new mxPolyParser();
-			return pp.createShape(newPointsString, xmlDoc, dn, element.getNodeName());
-//			return returnXmlFragment(xmlDoc, polyXML);
+			pp.createShape(points, shape.valueCount, block, dn, shape.closed, configDoc.isSimplifyPaths());
+			return true;
 		}
-		else if (element.getNodeName().equals("circle") || element.getNodeName().equals("ellipse"))
+		else if (shape.kind == StencilGeometry.ELLIPSE)
 		{
-			boolean isCircle = false;
-			int dn = configDoc.getDecimalsToRound();
-
-			if (element.getNodeName().equals("circle"))
-			{
-				isCircle = true;
-			}
-
-			Double[] tr = getTransform(element);
+			double cx = values[0];
+			double cy = values[1];
+			double rx = values[2];
+			double ry = values[3];
 
-			double cx = getDoubleAttribute(element, "cx");
-			double cy = getDoubleAttribute(element, "cy");
-			double r = 0;
-			double rx = 0;
-			double ry = 0;
-
-			if (isCircle)
+			if (shape.element.getNodeName().equals("circle"))
 			{
-				r = getDoubleAttribute(element, "r");
-
-				rx = roundToDecimals(r, dn);
+				rx = roundToDecimals(rx, dn);
 				ry = rx;
 			}
-			else
-			{
-				rx = getDoubleAttribute(element, "rx");
-				ry = getDoubleAttribute(element, "ry");
-			}
 
-			if (r < 0 || rx < 0 || ry < 0)
+			if (values[2] < 0 || rx < 0 || ry < 0)
 			{
-				return null; // error in SVG spec
+				return false; // error in SVG spec
 			}
 
-			if (tr != null)
+			if (shape.tr != null)
 			{
 				double x1 = cx;
 				double y1 = cy-ry;
@@ -296,88 +196,79 @@ public class Shape2Xml
 				double x4 = cx-rx;
 				double y4 = cy;
 
-				String ellString = "M " + x1 + " " + y1 + 
-						" A " + rx + " " + ry + " 0 0 1 " + x2 + " " + y2 + 
-						" A " + rx + " " + ry + " 0 0 1 " + x3 + " " + y3 + 
-						" A " + rx + " " + ry + " 0 0 1 " + x4 + " " + y4 + 
-						" A " + rx + " " + ry + " 0 0 1 " + x1 + " " + y1 + " Z ";
-
-				ellString = matrixTransformPath(ellString, tr, configDoc);
-				double dx = configDoc.getStencilBoundsMinX();
-				double dy = configDoc.getStencilBoundsMinY();
-				ellString = matrixTransformPath(ellString, new Double[]{1.0, 0.0, 0.0, 1.0, -dx, -dy}, configDoc);
-				ellString = matrixTransformPath(ellString, new Double[]{s, 0.0, 0.0, s, 0.0, 0.0}, configDoc);
+				PathData ellPath = new PathData();
+				ellPath.addCommand('M');
+				ellPath.addParam(x1);
+				ellPath.addParam(y1);
+				addArc(ellPath, rx, ry, x2, y2);
+				addArc(ellPath, rx, ry, x3, y3);
+				addArc(ellPath, rx, ry, x4, y4);
+				addArc(ellPath, rx, ry, x1, y1);
+				ellPath.addCommand('Z');
+
+				ellPath = matrixTransformPath(ellPath.getReader(), composeTransform(shape.tr, -dx, -dy, s));
 				mxPathParser pp = new mxPathParser();
-				return pp.createShape(ellString, xmlDoc, configDoc.getDecimalsToRound());
-
+				pp.createShape(ellPath.getReader(), block, dn, configDoc.isSimplifyPaths());
+				return true;
 			}
 			else
 			{
 				//untransformed circle/ellipse
-				Element ellipse = xmlDoc.createElement("ellipse");
+				block.startElement("ellipse");
 
-				int rd = configDoc.getDecimalsToRound();
-				cx = cx - configDoc.getStencilBoundsMinX();
-				cy = cy - configDoc.getStencilBoundsMinY();
+				cx = cx - dx;
+				cy = cy - dy;
 				cx = cx * s;
 				cy = cy * s;
 				rx = rx * s;
 				ry = ry * s;
 
-				ellipse.setAttribute("x", String.valueOf(roundToDecimals(cx - rx, rd)));
-				ellipse.setAttribute("y", String.valueOf(roundToDecimals(cy - ry, rd)));
-				ellipse.setAttribute("w", String.valueOf(roundToDecimals(2 * rx, rd)));
-				ellipse.setAttribute("h", String.valueOf(roundToDecimals(2 * ry, rd)));
-				return ellipse;
+				block.attribute("x", roundToDecimals(cx - rx, dn));
+				block.attribute("y", roundToDecimals(cy - ry, dn));
+				block.attribute("w", roundToDecimals(2 * rx, dn));
+				block.attribute("h", roundToDecimals(2 * ry, dn));
+				block.endElement();
+				return true;
 			}
 		}
-		else if (element.getNodeName().equals("path"))
-		{
-			String path = element.getAttribute("d");
-			path = path.replaceAll("(?=[a-zA-Z])", " ");
-			path = path.replaceAll("(?<=[a-zA-Z])", " ");
-			path = path.replaceAll(",", " ");
-			path = path.replaceAll("-", " -");
-			path = path.replaceAll("\\s{2,}", " ");
-			path = path.replaceAll("E -", "E-");
-			path = path.replaceAll("e -", "e-");
-			element.setAttribute("d", path);
-
-			Double[] tr = getTransform(element);
-
-			path = matrixTransformPath(path, tr, configDoc);
-			double dx = configDoc.getStencilBoundsMinX();
-			double dy = configDoc.getStencilBoundsMinY();
-			path = matrixTransformPath(path, new Double[]{1.0, 0.0, 0.0, 1.0, -dx, -dy}, configDoc);
-			path = matrixTransformPath(path, new Double[]{s, 0.0, 0.0, s, 0.0, 0.0}, configDoc);
-			mxPathParser pp = new mxPathParser();
-			return pp.createShape(path, xmlDoc, configDoc.getDecimalsToRound());
-		}
 
-		return null;
+		return false;
+	}
+
+	/**
+	 * Adds a clockwise quarter of an ellipse to <b>path</b>
+	 */
+	private static void addArc(PathData path, double rx, double ry, double x, double y)
+	{
+		path.addCommand('A');
+		path.addParam(rx);
+		path.addParam(ry);
+		path.addParam(0);
+		path.addParam(0);
+		path.addParam(1);
+		path.addParam(x);
+		path.addParam(y);
 	}
 
 	/**
 	 * Text is parsed differently, because it generates a more complex XML structure than other shapes. This function handles everything that goes into the stencil XML regarding the current text shape, not just geometry. Shape2Xml.parse() returns just geometry, so these two are handled differently.
 	 * @param element text element that needs parsing
-	 * @param xmlDoc the resulting elements will be created in this document
+	 * @param writer the resulting elements will be written to the blocks of this stencil
 	 * @param configDoc config document for the target stencil XML
 	 * @param isFirst is the current text element the first shape in the stencil (if yes, it will be inserted in the background block)
 	 */
-	public static void parseText(Element element, Document xmlDoc, XmlConfig configDoc, boolean isFirst)
+	public static void parseText(Element element, StencilWriter writer, XmlConfig configDoc, boolean isFirst)
 	{
 		XmlStyle style = Svg2Xml.getStyle(element);
 		double rot = 0;
-		double s = configDoc.getRelativeScalingRatio();
+		double s = getScale(configDoc);
 
-		if (element.getAttribute("transform") != null && !element.getAttribute("transform").equals(""))
-		{
-			//transformed text, but only x,y are transformed here
-			matrixTransformPoint(element, xmlDoc, configDoc);
-		}
-
-		String xS = element.getAttribute("x");
-		String yS = element.getAttribute("y");
+		//transformed text, but only x,y are transformed here
+		String[] point = getTransformedPoint(element, configDoc);
+		String textX = point[0];
+		String textY = point[1];
+		String xS = textX;
+		String yS = textY;
 
 		double x = Double.valueOf(xS);
 		double y = Double.valueOf(yS);
@@ -398,9 +289,6 @@ public class Shape2Xml
 		x = roundToDecimals(x * s, rd);
 		y = roundToDecimals(y * s, rd);
 
-		//create, populate and append the text element
-		Element textEl = xmlDoc.createElement("text");
-
 		String str = "";
 
 		NodeList textChildren = element.getChildNodes();
@@ -418,39 +306,32 @@ public class Shape2Xml
 
 		if (str != null && !str.equals(""))
 		{
-			textEl.setAttribute("str", str);
-			textEl.setAttribute("x", String.valueOf(x));
-			textEl.setAttribute("y", String.valueOf(y));
+			//create, populate and append the text element
+			StencilWriter.Block textBlock = (isFirst) ? writer.getBackground() : writer.getForeground();
+			textBlock.startElement("text");
+			textBlock.attribute("str", str);
+			textBlock.attribute("x", x);
+			textBlock.attribute("y", y);
 
 			if (!style.getAlign().equals(""))
 			{
-				textEl.setAttribute("align", style.getAlign());
+				textBlock.attribute("align", style.getAlign());
 			}
 
 			//SVG doesn't support vertical alignment, so this is fixed			
 			//if (!style.getVAlign().equals(""))
 			//{
-			//	textEl.setAttribute("valign", style.getVAlign());
+			//	textBlock.attribute("valign", style.getVAlign());
 			//}
-			textEl.setAttribute("valign", "bottom");
+			textBlock.attribute("valign", "bottom");
 			rot = getMatrixRotation(element.getAttribute("transform"), configDoc.getDecimalsToRound());
 
 			if (rot != 0)
 			{
-				textEl.setAttribute("rotation", Double.toString(rot));
+				textBlock.attribute("rotation", rot);
 			}
 
-			if (str != null && !str.equals(""))
-			{
-				if (!isFirst)
-				{
-					xmlDoc.getElementsByTagName("foreground").item(0).appendChild(textEl);
-				}
-				else
-				{
-					xmlDoc.getElementsByTagName("background").item(0).appendChild(textEl);
-				}
-			}
+			textBlock.endElement();
 		}
 
 		str = "";
@@ -465,28 +346,23 @@ public class Shape2Xml
 			{
 				XmlStyle currStyle = Svg2Xml.getStyle(currNode);
 				//we found a nested tspan element
-				Map<String, String> styleDiff = Svg2Xml.getStyleDiff(style, currStyle);
+				int styleDiff = Svg2Xml.getStyleDiff(style, currStyle);
 				//				style = currStyle;
 				Element currEl = (Element) currNode;
-				Svg2Xml.appendStyle(xmlDoc.getElementsByTagName("foreground").item(0), styleDiff, configDoc, currEl);
+				Svg2Xml.appendStyle(writer.getForeground(), currStyle, styleDiff, configDoc, currEl);
 
-				if (currEl.getAttribute("transform") != null && !currEl.getAttribute("transform").equals(""))
-				{
-					//transformed text, but only x,y are transformed here
-					matrixTransformPoint(currEl, xmlDoc, configDoc);
-				}
-
-				xS = currEl.getAttribute("x");
-				yS = currEl.getAttribute("y");
+				point = getTransformedPoint(currEl, configDoc);
+				xS = point[0];
+				yS = point[1];
 
 				if (xS.equals(""))
 				{
-					xS = element.getAttribute("x");
+					xS = textX;
 				}
 
 				if (yS.equals(""))
 				{
-					yS = element.getAttribute("y");
+					yS = textY;
 				}
 
 				x = Double.valueOf(xS);
@@ -507,9 +383,6 @@ public class Shape2Xml
 				x = roundToDecimals(x * s, rd);
 				y = roundToDecimals(y * s, rd);
 
-				//create, populate and append the text element
-				Element tspanEl = xmlDoc.createElement("text");
-
 				str = "";
 
 				textChildren = currEl.getChildNodes();
@@ -526,33 +399,36 @@ public class Shape2Xml
 
 				if (str != null && !str.equals("") && currEl.getNodeName().equals("tspan"))
 				{
-					tspanEl.setAttribute("str", str);
-					tspanEl.setAttribute("x", String.valueOf(x));
-					tspanEl.setAttribute("y", String.valueOf(y));
+					//create, populate and append the text element
+					StencilWriter.Block tspanBlock = writer.getForeground();
+					tspanBlock.startElement("text");
+					tspanBlock.attribute("str", str);
+					tspanBlock.attribute("x", x);
+					tspanBlock.attribute("y", y);
 
 					if (!currStyle.getAlign().equals(""))
 					{
-						tspanEl.setAttribute("align", currStyle.getAlign());
+						tspanBlock.attribute("align", currStyle.getAlign());
 					}
 					else if (!style.getAlign().equals(""))
 					{
-						tspanEl.setAttribute("align", style.getAlign());
+						tspanBlock.attribute("align", style.getAlign());
 					}
 
 					//SVG doesn't support vertical alignment, so this is fixed			
 					//if (!currStyle.get().equals(""))
 					//{
-					//	tspanEl.setAttribute("", currStyle.getVAlign());
+					//	tspanBlock.attribute("", currStyle.getVAlign());
 					//}
-					tspanEl.setAttribute("valign", "bottom");
+					tspanBlock.attribute("valign", "bottom");
 					double newRot = rot + getMatrixRotation(currEl.getAttribute("transform"), rd);
 
 					if (newRot != 0)
 					{
-						tspanEl.setAttribute("rotation", Double.toString(newRot));
+						tspanBlock.attribute("rotation", newRot);
 					}
 
-					xmlDoc.getElementsByTagName("foreground").item(0).appendChild(tspanEl);
+					tspanBlock.endElement();
 				}
 
 				style = currStyle;
@@ -633,7 +509,13 @@ public class Shape2Xml
 		}
 	}
 
-	private static void matrixTransformPoint(Element element, Document xmlDoc, XmlConfig configDoc)
+	/**
+	 * The element isn't changed, so it can be converted again
+	 * @param element text or tspan element
+	 * @param configDoc target stencil XML config document
+	 * @return the x and y attributes of <b>element</b>, transformed and rounded if it has a matrix transform
+	 */
+	private static String[] getTransformedPoint(Element element, XmlConfig configDoc)
 	{
 		int dn = configDoc.getDecimalsToRound();
 		String trString = element.getAttribute("transform");
@@ -709,133 +591,76 @@ public class Shape2Xml
 			xNew = roundToDecimals(xNew, dn);
 			yNew = roundToDecimals(yNew, dn);
 
-			element.setAttribute("x", Double.toString(xNew));
-			element.setAttribute("y", Double.toString(yNew));
-		}
-	}
-
-	/**
-	 * Parses the <b>transform</b> attribute of <b>element</b> and applies it to the element geometry
-	 * @param element SVG Element to be transformed
-	 * @param configDoc target stencil XML config document
-	 * @return <b>element</b> with an applied transformation. The transform attribute is removed in the process.
-	 */
-	private static Element matrixTransformPoly(Element element, XmlConfig configDoc)
-	{
-		Double[] tr = getTransform(element);
-
-		if (tr == null)
-		{
-			return element;
-		}
-
-		String pointsString = element.getAttribute("points");
-		String newPointsString = "";
-		double x = 0;
-		double y = 0;
-		String xString;
-		String yString;
-
-		//a loop that reads the coords
-		int commaIndex = pointsString.indexOf(",");
-		int spaceIndex = pointsString.indexOf(" ", commaIndex+1);
-
-		if (spaceIndex == -1)
-		{
-			spaceIndex = pointsString.length();
+			return new String[]{Double.toString(xNew), Double.toString(yNew)};
 		}
 
-		while ((commaIndex != -1) && (spaceIndex > commaIndex))
-		{
-			//read x
-			xString = pointsString.substring(0, commaIndex);
-			//read y
-			yString = pointsString.substring(commaIndex + 1, spaceIndex);
-
-			x = Double.valueOf(xString);
-			y = Double.valueOf(yString);
-
-			// the actual transform
-			double xNew = x * tr[0] + y * tr[2] + tr[4];
-			double yNew = x * tr[1] + y * tr[3] + tr[5];
-			// add the new coords to the new string
-
-			newPointsString += xNew + "," + yNew + " ";
-
-			pointsString = pointsString.substring(spaceIndex, pointsString.length());
-
-			commaIndex = pointsString.indexOf(",");
-			spaceIndex = pointsString.indexOf(" ", commaIndex + 1);
-
-			if (spaceIndex==-1)
-			{
-				spaceIndex = pointsString.length();
-			}
-		}
-
-		newPointsString = newPointsString.substring(0, (newPointsString.length() - 1));
-		newPointsString = setPathRoot(newPointsString, configDoc);
-		element.setAttribute("points", newPointsString);
-
-		return element;
+		return new String[]{element.getAttribute("x"), element.getAttribute("y")};
 	}
 
 	/**
-	 * Parses the <b>transform</b> attribute of <b>element</b> and applies it to the element geometry
-	 * @param element SVG Element to be transformed
-	 * @param xmlDoc target stencil XML document
-	 * @param configDoc target stencil XML config document
-	 * @return <b>element</b> with an applied transformation. The transform attribute is removed in the process.
+	 * @return the path of a rect or roundrect, used for transformed rects
 	 */
-	private static Element matrixTransformRect(Element element, Document xmlDoc, XmlConfig configDoc)
+	static PathData getRectPath(double x, double y, double w, double h, double rx, double ry)
 	{
-		Double[] tr = getTransform(element);
-		double x = getDoubleAttribute(element, "x");
-		double y = getDoubleAttribute(element, "y");
-		double w = getDoubleAttribute(element, "width");
-		double h = getDoubleAttribute(element, "height");
-		double rx = getDoubleAttribute(element, "rx");
-		double ry = getDoubleAttribute(element, "ry");
-
-		double x1 = x;
-		double y1 = y;
-		String pathString = "";
+		PathData path = new PathData();
+		path.addCommand('M');
+		path.addParam(x);
 
 		if (rx==0 && ry==0)
 		{
 			//rect
-			pathString =  "M " + x1 + " " + y1 + " v " + h + " h " + w + " v " + (-h) + " h " + (-w) + " Z ";
+			path.addParam(y);
+			addRectSide(path, 'v', h);
+			addRectSide(path, 'h', w);
+			addRectSide(path, 'v', -h);
+			addRectSide(path, 'h', -w);
 		}
 		else
 		{
 			//roundrect
-			pathString =  "M " + x1 + " " + (y1 + ry) + 
-					" v " + (h - 2 * ry) +
-					" a " + rx + " " + ry + " 0 0 0 " + rx + " " + ry +
-					" h " + (w - 2 * rx) +
-					" a " + rx + " " + ry + " 0 0 0 " + rx + " " + ( -ry) +
-					" v " + (2 * ry - h) + 
-					" a " + rx + " " + ry + " 0 0 0 " + ( -rx) + " " + ( -ry) +
-					" h " + (2 * rx - w) +
-					" a " + rx + " " + ry + " 0 0 0 " + ( -rx) + " " + ry +
-					" Z ";
+			path.addParam(y + ry);
+			addRectSide(path, 'v', h - 2 * ry);
+			addRectCorner(path, rx, ry, rx, ry);
+			addRectSide(path, 'h', w - 2 * rx);
+			addRectCorner(path, rx, ry, rx, -ry);
+			addRectSide(path, 'v', 2 * ry - h);
+			addRectCorner(path, rx, ry, -rx, -ry);
+			addRectSide(path, 'h', 2 * rx - w);
+			addRectCorner(path, rx, ry, -rx, ry);
 		}
 
-		if (tr != null)
-		{
-			pathString = matrixTransformPath(pathString, tr, configDoc);
-		}
+		path.addCommand('Z');
 
-		double dx = configDoc.getStencilBoundsMinX();
-		double dy = configDoc.getStencilBoundsMinY();
-		pathString = matrixTransformPath(pathString, new Double[]{1.0, 0.0, 0.0, 1.0, -dx, -dy}, configDoc);
-		double s = configDoc.getRelativeScalingRatio();
-		pathString = matrixTransformPath(pathString, new Double[]{s, 0.0, 0.0, s, 0.0, 0.0}, configDoc);
+		return path;
+	}
+
+	// relative horizontal or vertical line of getRectPath
+	private static void addRectSide(PathData path, char command, double d)
+	{
+		path.addCommand(command);
+		path.addParam(d);
+	}
 
-		mxPathParser pp = new mxPathParser();
-		return pp.createShape(pathString, xmlDoc, configDoc.getDecimalsToRound());
+	// relative arc of getRectPath
+	private static void addRectCorner(PathData path, double rx, double ry, double dx, double dy)
+	{
+		path.addCommand('a');
+		path.addParam(rx);
+		path.addParam(ry);
+		path.addParam(0);
+		path.addParam(0);
+		path.addParam(0);
+		path.addParam(dx);
+		path.addParam(dy);
 	}
 
+	// powers of ten that are exactly representable as doubles, used by roundToDecimals
+	private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+	// above 2^52 doubles have no fraction left to round
+	private static final double MAX_FAST_ROUNDING = 4503599627370496.0;
+
 	/**
 	 * @param d number to round
 	 * @param c decimals to round to (use values <0 if you want to skip rounding)
@@ -843,8 +668,22 @@ public class Shape2Xml
 	 */
 	public static double roundToDecimals(double d, int c) 
 	{
-		if (c >= 0)
+		if (c >= 0 && c < POWERS_OF_TEN.length && !Double.isNaN(d) && !Double.isInfinite(d))
 		{
+			double scaled = d * POWERS_OF_TEN[c];
+
+			if (Math.abs(scaled) < MAX_FAST_ROUNDING)
+			{
+				double fraction = Math.abs(scaled - Math.floor(scaled) - 0.5);
+
+				// far enough from a tie, d * 10^c rounds the same way as the decimal value of d
+				if (fraction > 4 * Math.ulp(scaled))
+				{
+					// + 0.0 turns -0.0 into 0.0, like BigDecimal does
+					return Math.rint(scaled) / POWERS_OF_TEN[c] + 0.0;
+				}
+			}
+
 			BigDecimal temp = new BigDecimal(Double.toString(d));
 			temp = temp.setScale(c, RoundingMode.HALF_EVEN);
 			return temp.doubleValue();
@@ -864,12 +703,11 @@ public class Shape2Xml
 	 */
 	private static Element returnXmlFragment(Document parentDoc, String fragment) 
 	{
-		DocumentBuilderFactory docBuilderFactory = DocumentBuilderFactory.newInstance();
 		DocumentBuilder docBuilder = null;
 
 		try
 		{
-			docBuilder = docBuilderFactory.newDocumentBuilder();
+			docBuilder = XmlResources.getDocumentBuilder();
 		}
 		catch (ParserConfigurationException e)
 		{
@@ -896,170 +734,91 @@ public class Shape2Xml
 	}
 
 	/**
-	 * @param pathString SVG path's "d" attribute
-	 * @param <b>a b c d e f</b> are parts of the SVG transform attribute's matrix in <b>double</b> format
-	 * @param configDoc config doc of the target stencil XML
-	 * @return transformed SVG path's "d" attribute string
+	 * Composes the element transform, the translation by the stencil bounds and the scaling into one matrix,
+	 * so paths can be transformed in a single pass
+	 * @param tr transform of the element as <b>a b c d e f</b>, or null
+	 * @param dx translation on x, applied after <b>tr</b>
+	 * @param dy translation on y, applied after <b>tr</b>
+	 * @param s scaling, applied last
+	 * @return the composed matrix as <b>a b c d e f</b>
 	 */
-	private static String matrixTransformPath(String pathString, Double[] tr, XmlConfig configDoc)
+	private static double[] composeTransform(Double[] tr, double dx, double dy, double s)
 	{
-		prevPathX = 0;
-		prevPathY = 0;
-		lastPathX = 0;
-		lastPathY = 0;
-
-		if (pathString != null)
+		if (tr == null)
 		{
-			pathString = pathString.replaceAll(System.getProperty("line.separator"), "");
-			pathString = pathString.replaceAll("E -", "E-");
-			pathString = pathString.replaceAll("e -", "e-");
-			pathString = pathString.replaceAll("\n", "");
-			pathString = pathString.replaceAll(" {2,}", " ");
-			pathString = pathString.replaceAll("-\\.", "-0.");
-			pathString = pathString.replaceAll(" e", "e");
-			pathString = pathString.replaceAll(" E", "e");
-
-			// handle the case of two decimals (".ddddd. to .ddddd 0.")
-			 Matcher m = Pattern.compile("\\.\\d+\\.").matcher(pathString);
-			 
-			 while (m.find()) {
-				 pathString = pathString.substring(0, m.end() - 1) + " 0" + pathString.substring(m.end() - 1, pathString.length());
-				 m = Pattern.compile("\\.\\d+\\.").matcher(pathString);
-			 }
-			 
-			 
-			if (tr != null)
-			{
-				String newPathString = "";
-				int nextPartStartIndex; 
-				char prevPathType = 'm';
-				
-				do
-				{
-					pathString = pathString.trim();
-					nextPartStartIndex = nextPartIndex(pathString, prevPathType);
-					String currPathString = null;
-					
-					if (nextPartStartIndex != -1)
-					{
-						currPathString = pathString.substring(0, nextPartStartIndex);
-					}
-					else
-					{
-						currPathString = pathString;
-					}
-					
-					char currPathType = currPathString.charAt(0);
-					
-					if (!Character.isLetter(currPathType))
-					{
-						if (prevPathType == 'm')
-						{
-							currPathType = 'l';
-						}
-						else if (prevPathType == 'M')
-						{
-							currPathType = 'L';
-						}
-						else
-						{
-							currPathType = prevPathType;
-						}
-						
-						currPathString = currPathType + " " + currPathString;
-					}
-					
-					newPathString += parseMatrixTransformPathPart(currPathString, tr);
-					
-					if (nextPartStartIndex != -1)
-					{
-						pathString = pathString.substring(nextPartStartIndex, pathString.length());
-						prevPathType = currPathType;
-					}
-					else
-					{
-						pathString = "";
-					}
-				} 
-				
-				while (pathString.length() > 0);
-
-				newPathString = newPathString.substring(0, (newPathString.length() - 1));
-				newPathString = setPathRoot(newPathString, configDoc);
-				return newPathString;
-			}
-			else
-			{
-				return pathString;
-			}
+			return new double[]{s, 0.0, 0.0, s, dx * s, dy * s};
 		}
-		else
+
+		return new double[]{tr[0] * s, tr[1] * s, tr[2] * s, tr[3] * s, (tr[4] + dx) * s, (tr[5] + dy) * s};
+	}
+
+	/**
+	 * @param reader commands of a SVG path, read until its end
+	 * @param <b>a b c d e f</b> are parts of the SVG transform attribute's matrix in <b>double</b> format
+	 * @return transformed SVG path
+	 */
+	private static PathData matrixTransformPath(PathReader reader, double[] tr)
+	{
+		TransformContext ctx = new TransformContext();
+		PathData newPath = new PathData();
+
+		while (reader.next())
 		{
-			return null;
+			parseMatrixTransformPathPart(reader, tr, ctx, newPath);
 		}
+
+		return newPath;
 	}
 
 	/**
-	 * @param currPathString one shape in the SVG path string
+	 * @param lexer path reader positioned on the current command
 	 * @param <b>a b c d e f</b> are parts of the SVG transform attribute's matrix in <b>double</b> format
-	 * @param configDoc config doc of the target stencil XML
-	 * @return path part with applied transformation
+	 * @param ctx path cursor of the current transformation
+	 * @param out the path part with applied transformation is added here
 	 */
-	private static String parseMatrixTransformPathPart(String currPathString, Double[] tr)
+	private static void parseMatrixTransformPathPart(PathReader lexer, double[] tr, TransformContext ctx, PathData out)
 	{
-		char pathType = currPathString.charAt(0);
-		String newPath="error"; // if it doesn't get changes, the path type isn't recognized, so it's an error
+		char pathType = lexer.getCommand();
 
 		switch (pathType)
 		{
-			case 'M' : return newPath = matrixTransformPathPartMove(currPathString, tr, true);
-			case 'm' : return newPath = matrixTransformPathPartMove(currPathString, tr, false);
-			case 'L' : return newPath = matrixTransformPathPartLine(currPathString, tr, true);
-			case 'l' : return newPath = matrixTransformPathPartLine(currPathString, tr, false);
-			case 'H' : return newPath = matrixTransformPathPartHorLine(currPathString, tr, true);
-			case 'h' : return newPath = matrixTransformPathPartHorLine(currPathString, tr, false);
-			case 'V' : return newPath = matrixTransformPathPartVerLine(currPathString, tr, true);
-			case 'v' : return newPath = matrixTransformPathPartVerLine(currPathString, tr, false);
-			case 'C' : return newPath = matrixTransformPathPartCurve(currPathString, tr, true);
-			case 'c' : return newPath = matrixTransformPathPartCurve(currPathString, tr, false);
-			case 'S' : return newPath = matrixTransformPathPartSmoothCurve(currPathString, tr, true);
-			case 's' : return newPath = matrixTransformPathPartSmoothCurve(currPathString, tr, false);
-			case 'Q' : return newPath = matrixTransformPathPartQuad(currPathString, tr, true);
-			case 'q' : return newPath = matrixTransformPathPartQuad(currPathString, tr, false);
-			case 'T' : return newPath = matrixTransformPathPartSmoothQuad(currPathString, tr, true);
-			case 't' : return newPath = matrixTransformPathPartSmoothQuad(currPathString, tr, false);
-			case 'A' : return newPath = matrixTransformPathPartArc(currPathString, tr, true);
-			case 'a' : return newPath = matrixTransformPathPartArc(currPathString, tr, false);
+			case 'M' : matrixTransformPathPartMove(lexer, tr, true, ctx, out); break;
+			case 'm' : matrixTransformPathPartMove(lexer, tr, false, ctx, out); break;
+			case 'L' : matrixTransformPathPartLine(lexer, tr, true, ctx, out); break;
+			case 'l' : matrixTransformPathPartLine(lexer, tr, false, ctx, out); break;
+			case 'H' : matrixTransformPathPartHorLine(lexer, tr, true, ctx, out); break;
+			case 'h' : matrixTransformPathPartHorLine(lexer, tr, false, ctx, out); break;
+			case 'V' : matrixTransformPathPartVerLine(lexer, tr, true, ctx, out); break;
+			case 'v' : matrixTransformPathPartVerLine(lexer, tr, false, ctx, out); break;
+			case 'C' : matrixTransformPathPartCurve(lexer, tr, true, ctx, out); break;
+			case 'c' : matrixTransformPathPartCurve(lexer, tr, false, ctx, out); break;
+			case 'S' : matrixTransformPathPartSmoothCurve(lexer, tr, true, ctx, out); break;
+			case 's' : matrixTransformPathPartSmoothCurve(lexer, tr, false, ctx, out); break;
+			case 'Q' : matrixTransformPathPartQuad(lexer, tr, true, ctx, out); break;
+			case 'q' : matrixTransformPathPartQuad(lexer, tr, false, ctx, out); break;
+			case 'T' : matrixTransformPathPartSmoothQuad(lexer, tr, true, ctx, out); break;
+			case 't' : matrixTransformPathPartSmoothQuad(lexer, tr, false, ctx, out); break;
+			case 'A' : matrixTransformPathPartArc(lexer, tr, true, ctx, out); break;
+			case 'a' : matrixTransformPathPartArc(lexer, tr, false, ctx, out); break;
 			case 'Z' :
-				prevPathX = prevMoveX;
-				prevPathY = prevMoveY;
-				return "Z ";
-			case 'z' : 
-				prevPathX = prevMoveX;
-				prevPathY = prevMoveY;
-				return "z ";
-		}
-
-		if (!newPath.equals("error"))
-		{
-			return newPath;
-		}
-		else
-		{
-			return null;
+			case 'z' :
+				ctx.prevPathX = ctx.prevMoveX;
+				ctx.prevPathY = ctx.prevMoveY;
+				out.addCommand(pathType);
+				break;
 		}
 	}
 
 	//for internal use only
-	private static String matrixTransformPathPartArc(String currPathString, Double[] tr, boolean isAbs)
+	private static void matrixTransformPathPartArc(PathReader lexer, double[] tr, boolean isAbs, TransformContext ctx, PathData out)
 	{
 		double xScaleFactor = Math.sqrt((tr[0] * tr[0]) + (tr[2] * tr[2]));
 		double yScaleFactor = Math.sqrt((tr[1] * tr[1]) + (tr[3] * tr[3]));
-		double rx = Math.abs(getPathParam(currPathString, 1) * xScaleFactor);
-		double ry = Math.abs(getPathParam(currPathString, 2) * yScaleFactor);
-		double xRot = getPathParam(currPathString, 3);
-		int largeArc = (int) getPathParam(currPathString, 4);
-		int sweep = (int) getPathParam(currPathString, 5);
+		double rx = Math.abs(lexer.getParam(0) * xScaleFactor);
+		double ry = Math.abs(lexer.getParam(1) * yScaleFactor);
+		double xRot = lexer.getParam(2);
+		int largeArc = (int) lexer.getParam(3);
+		int sweep = (int) lexer.getParam(4);
 
 		// correcting sweep if scaling is negative
 		if ((tr[0] < 0 && tr[3] >= 0) || ( tr[0] >= 0 && tr[3] < 0))
@@ -1074,196 +833,223 @@ public class Shape2Xml
 			}
 		}
 
-		double x = getPathParam(currPathString, 6);
-		double y = getPathParam(currPathString, 7);
+		double x = lexer.getParam(5);
+		double y = lexer.getParam(6);
 		double transformRot = Math.atan2(tr[1], tr[0]);
 		transformRot = Math.toDegrees(transformRot);
 		xRot = xRot + transformRot; 
 
 		if (isAbs)
 		{
-			prevPathX = x;
-			prevPathY = y;
+			ctx.prevPathX = x;
+			ctx.prevPathY = y;
 			double xNew = x * tr[0] + y * tr[2] + tr[4];
 			double yNew = x * tr[1] + y * tr[3] + tr[5];
 
-			currPathString = "A " + rx + " " + ry + " " + xRot + " " + largeArc + " " + sweep + " " + xNew + " " + yNew + " ";
+			out.addCommand('A');
+			out.addParam(rx);
+			out.addParam(ry);
+			out.addParam(xRot);
+			out.addParam(largeArc);
+			out.addParam(sweep);
+			out.addParam(xNew);
+			out.addParam(yNew);
 
-			lastPathX = xNew;
-			lastPathY = yNew;
+			ctx.lastPathX = xNew;
+			ctx.lastPathY = yNew;
 		}
 		else
 		{
-			double oldAbsX = prevPathX + x;
-			double oldAbsY = prevPathY + y;
-			prevPathX += x;
-			prevPathY += y;
+			double oldAbsX = ctx.prevPathX + x;
+			double oldAbsY = ctx.prevPathY + y;
+			ctx.prevPathX += x;
+			ctx.prevPathY += y;
 			double newAbsX = oldAbsX * tr[0] + oldAbsY * tr[2] + tr[4];
 			double newAbsY = oldAbsX * tr[1] + oldAbsY * tr[3] + tr[5];
 
-			double newRelX = newAbsX - lastPathX;
-			double newRelY = newAbsY - lastPathY;
+			double newRelX = newAbsX - ctx.lastPathX;
+			double newRelY = newAbsY - ctx.lastPathY;
 
-			currPathString = "a " + rx + " " + ry + " " + xRot + " " + largeArc + " " + sweep + " " + newRelX + " " + newRelY + " ";
+			out.addCommand('a');
+			out.addParam(rx);
+			out.addParam(ry);
+			out.addParam(xRot);
+			out.addParam(largeArc);
+			out.addParam(sweep);
+			out.addParam(newRelX);
+			out.addParam(newRelY);
 
-			lastPathX += newRelX;
-			lastPathY += newRelY;
+			ctx.lastPathX += newRelX;
+			ctx.lastPathY += newRelY;
 		}
-
-		return currPathString;
 	}
 
 	//for internal use only
-	private static String matrixTransformPathPartSmoothQuad(String currPathString, Double[] tr, boolean isAbs)
+	private static void matrixTransformPathPartSmoothQuad(PathReader lexer, double[] tr, boolean isAbs, TransformContext ctx, PathData out)
 	{
-		double x = getPathParam(currPathString, 1);
-		double y = getPathParam(currPathString, 2);
+		double x = lexer.getParam(0);
+		double y = lexer.getParam(1);
 
 		if (isAbs)
 		{
-			prevPathX = x;
-			prevPathY = y;
+			ctx.prevPathX = x;
+			ctx.prevPathY = y;
 			double xNew = x * tr[0] + y * tr[2] + tr[4];
 			double yNew = x * tr[1] + y * tr[3] + tr[5];
 
-			currPathString = "T " + " " + xNew + " " + yNew + " ";
+			out.addCommand('T');
+			out.addParam(xNew);
+			out.addParam(yNew);
 
-			lastPathX = xNew;
-			lastPathY = yNew;
+			ctx.lastPathX = xNew;
+			ctx.lastPathY = yNew;
 		}
 		else
 		{
-			double oldAbsX = prevPathX + x;
-			double oldAbsY = prevPathY + y;
-			prevPathX += x;
-			prevPathY += y;
+			double oldAbsX = ctx.prevPathX + x;
+			double oldAbsY = ctx.prevPathY + y;
+			ctx.prevPathX += x;
+			ctx.prevPathY += y;
 			double newAbsX = oldAbsX * tr[0] + oldAbsY * tr[2] + tr[4];
 			double newAbsY = oldAbsX * tr[1] + oldAbsY * tr[3] + tr[5];
 
-			double newRelX = newAbsX - lastPathX;
-			double newRelY = newAbsY - lastPathY;
+			double newRelX = newAbsX - ctx.lastPathX;
+			double newRelY = newAbsY - ctx.lastPathY;
 
-			currPathString = "t " + " " + newRelX + " " + newRelY + " ";
+			out.addCommand('t');
+			out.addParam(newRelX);
+			out.addParam(newRelY);
 
-			lastPathX += newRelX;
-			lastPathY += newRelY;
+			ctx.lastPathX += newRelX;
+			ctx.lastPathY += newRelY;
 		}
-		return currPathString;
 	}
 
 	//for internal use only
-	private static String matrixTransformPathPartQuad(String currPathString, Double[] tr, boolean isAbs)
+	private static void matrixTransformPathPartQuad(PathReader lexer, double[] tr, boolean isAbs, TransformContext ctx, PathData out)
 	{
-		double x1 = getPathParam(currPathString, 1);
-		double y1 = getPathParam(currPathString, 2);
-		double x = getPathParam(currPathString, 3);
-		double y = getPathParam(currPathString, 4);
+		double x1 = lexer.getParam(0);
+		double y1 = lexer.getParam(1);
+		double x = lexer.getParam(2);
+		double y = lexer.getParam(3);
 
 		if (isAbs)
 		{
-			prevPathX = x;
-			prevPathY = y;
+			ctx.prevPathX = x;
+			ctx.prevPathY = y;
 			double xNew = x * tr[0] + y * tr[2] + tr[4];
 			double yNew = x * tr[1] + y * tr[3] + tr[5];
 			double x1New = x1 * tr[0] + y1 * tr[2] + tr[4];
 			double y1New = x1 * tr[1] + y1 * tr[3] + tr[5];
 
-			currPathString = "Q " + x1New + " " + y1New + " " + xNew + " " + yNew + " ";
+			out.addCommand('Q');
+			out.addParam(x1New);
+			out.addParam(y1New);
+			out.addParam(xNew);
+			out.addParam(yNew);
 
-			lastPathX = xNew;
-			lastPathY = yNew;
+			ctx.lastPathX = xNew;
+			ctx.lastPathY = yNew;
 		}
 		else
 		{
-			double oldAbsX = prevPathX + x;
-			double oldAbsY = prevPathY + y;
-			double oldAbsX1 = prevPathX + x1;
-			double oldAbsY1 = prevPathY + y1;
-			prevPathX += x;
-			prevPathY += y;
+			double oldAbsX = ctx.prevPathX + x;
+			double oldAbsY = ctx.prevPathY + y;
+			double oldAbsX1 = ctx.prevPathX + x1;
+			double oldAbsY1 = ctx.prevPathY + y1;
+			ctx.prevPathX += x;
+			ctx.prevPathY += y;
 			double newAbsX = oldAbsX * tr[0] + oldAbsY * tr[2] + tr[4];
 			double newAbsY = oldAbsX * tr[1] + oldAbsY * tr[3] + tr[5];
 
 			double newAbsX1 = oldAbsX1 * tr[0] + oldAbsY1 * tr[2] + tr[4];
 			double newAbsY1 = oldAbsX1 * tr[1] + oldAbsY1 * tr[3] + tr[5];
 
-			double newRelX = newAbsX - lastPathX;
-			double newRelY = newAbsY - lastPathY;
-			double newRelX1 = newAbsX1 - lastPathX;
-			double newRelY1 = newAbsY1 - lastPathY;
+			double newRelX = newAbsX - ctx.lastPathX;
+			double newRelY = newAbsY - ctx.lastPathY;
+			double newRelX1 = newAbsX1 - ctx.lastPathX;
+			double newRelY1 = newAbsY1 - ctx.lastPathY;
 
-			currPathString = "q " + newRelX1 + " " + newRelY1 + " " + newRelX + " " + newRelY + " ";
+			out.addCommand('q');
+			out.addParam(newRelX1);
+			out.addParam(newRelY1);
+			out.addParam(newRelX);
+			out.addParam(newRelY);
 
-			lastPathX += newRelX;
-			lastPathY += newRelY;
+			ctx.lastPathX += newRelX;
+			ctx.lastPathY += newRelY;
 		}
-
-		return currPathString;
 	}
 
 	//for internal use only
-	private static String matrixTransformPathPartSmoothCurve(String currPathString,	Double[] tr, boolean isAbs)
+	private static void matrixTransformPathPartSmoothCurve(PathReader lexer, double[] tr, boolean isAbs, TransformContext ctx, PathData out)
 	{
-		double x2 = getPathParam(currPathString, 1);
-		double y2 = getPathParam(currPathString, 2);
-		double x = getPathParam(currPathString, 3);
-		double y = getPathParam(currPathString, 4);
+		double x2 = lexer.getParam(0);
+		double y2 = lexer.getParam(1);
+		double x = lexer.getParam(2);
+		double y = lexer.getParam(3);
 
 		if (isAbs)
 		{
-			prevPathX = x;
-			prevPathY = y;
+			ctx.prevPathX = x;
+			ctx.prevPathY = y;
 			double xNew = x * tr[0] + y * tr[2] + tr[4];
 			double yNew = x * tr[1] + y * tr[3] + tr[5];
 			double x2New = x2 * tr[0] + y2 * tr[2] + tr[4];
 			double y2New = x2 * tr[1] + y2 * tr[3] + tr[5];
 
-			currPathString = "S " + x2New + " " + y2New + " " + xNew + " " + yNew + " ";
+			out.addCommand('S');
+			out.addParam(x2New);
+			out.addParam(y2New);
+			out.addParam(xNew);
+			out.addParam(yNew);
 
-			lastPathX = xNew;
-			lastPathY = yNew;
+			ctx.lastPathX = xNew;
+			ctx.lastPathY = yNew;
 		}
 		else
 		{
-			double oldAbsX = prevPathX + x;
-			double oldAbsY = prevPathY + y;
-			double oldAbsX2 = prevPathX + x2;
-			double oldAbsY2 = prevPathY + y2;
-			prevPathX += x;
-			prevPathY += y;
+			double oldAbsX = ctx.prevPathX + x;
+			double oldAbsY = ctx.prevPathY + y;
+			double oldAbsX2 = ctx.prevPathX + x2;
+			double oldAbsY2 = ctx.prevPathY + y2;
+			ctx.prevPathX += x;
+			ctx.prevPathY += y;
 			double newAbsX = oldAbsX * tr[0] + oldAbsY * tr[2] + tr[4];
 			double newAbsY = oldAbsX * tr[1] + oldAbsY * tr[3] + tr[5];
 			double newAbsX2 = oldAbsX2 * tr[0] + oldAbsY2 * tr[2] + tr[4];
 			double newAbsY2 = oldAbsX2 * tr[1] + oldAbsY2 * tr[3] + tr[5];
 
-			double newRelX = newAbsX - lastPathX;
-			double newRelY = newAbsY - lastPathY;
-			double newRelX2 = newAbsX2 - lastPathX;
-			double newRelY2 = newAbsY2 - lastPathY;
+			double newRelX = newAbsX - ctx.lastPathX;
+			double newRelY = newAbsY - ctx.lastPathY;
+			double newRelX2 = newAbsX2 - ctx.lastPathX;
+			double newRelY2 = newAbsY2 - ctx.lastPathY;
 
-			currPathString = "s " + newRelX2 + " " + newRelY2 + " " + newRelX + " " + newRelY + " ";
+			out.addCommand('s');
+			out.addParam(newRelX2);
+			out.addParam(newRelY2);
+			out.addParam(newRelX);
+			out.addParam(newRelY);
 
-			lastPathX += newRelX;
-			lastPathY += newRelY;
+			ctx.lastPathX += newRelX;
+			ctx.lastPathY += newRelY;
 		}
-
-		return currPathString;
 	}
 
 	//for internal use only
-	private static String matrixTransformPathPartCurve(String currPathString, Double[] tr, boolean isAbs)
+	private static void matrixTransformPathPartCurve(PathReader lexer, double[] tr, boolean isAbs, TransformContext ctx, PathData out)
 	{
-		double x1 = getPathParam(currPathString, 1);
-		double y1 = getPathParam(currPathString, 2);
-		double x2 = getPathParam(currPathString, 3);
-		double y2 = getPathParam(currPathString, 4);
-		double x = getPathParam(currPathString, 5);
-		double y = getPathParam(currPathString, 6);
+		double x1 = lexer.getParam(0);
+		double y1 = lexer.getParam(1);
+		double x2 = lexer.getParam(2);
+		double y2 = lexer.getParam(3);
+		double x = lexer.getParam(4);
+		double y = lexer.getParam(5);
 
 		if (isAbs)
 		{
-			prevPathX = x;
-			prevPathY = y;
+			ctx.prevPathX = x;
+			ctx.prevPathY = y;
 			double xNew = x * tr[0] + y * tr[2] + tr[4];
 			double yNew = x * tr[1] + y * tr[3] + tr[5];
 			double x1New = x1 * tr[0] + y1 * tr[2] + tr[4];
@@ -1271,21 +1057,27 @@ public class Shape2Xml
 			double x2New = x2 * tr[0] + y2 * tr[2] + tr[4];
 			double y2New = x2 * tr[1] + y2 * tr[3] + tr[5];
 
-			currPathString = "C " + x1New + " " + y1New + " " + x2New + " " + y2New + " " + xNew + " " + yNew + " ";
+			out.addCommand('C');
+			out.addParam(x1New);
+			out.addParam(y1New);
+			out.addParam(x2New);
+			out.addParam(y2New);
+			out.addParam(xNew);
+			out.addParam(yNew);
 
-			lastPathX = xNew;
-			lastPathY = yNew;
+			ctx.lastPathX = xNew;
+			ctx.lastPathY = yNew;
 		}
 		else
 		{
-			double oldAbsX = prevPathX + x;
-			double oldAbsY = prevPathY + y;
-			double oldAbsX1 = prevPathX + x1;
-			double oldAbsY1 = prevPathY + y1;
-			double oldAbsX2 = prevPathX + x2;
-			double oldAbsY2 = prevPathY + y2;
-			prevPathX += x;
-			prevPathY += y;
+			double oldAbsX = ctx.prevPathX + x;
+			double oldAbsY = ctx.prevPathY + y;
+			double oldAbsX1 = ctx.prevPathX + x1;
+			double oldAbsY1 = ctx.prevPathY + y1;
+			double oldAbsX2 = ctx.prevPathX + x2;
+			double oldAbsY2 = ctx.prevPathY + y2;
+			ctx.prevPathX += x;
+			ctx.prevPathY += y;
 			double newAbsX = oldAbsX * tr[0] + oldAbsY * tr[2] + tr[4];
 			double newAbsY = oldAbsX * tr[1] + oldAbsY * tr[3] + tr[5];
 			double newAbsX1 = oldAbsX1 * tr[0] + oldAbsY1 * tr[2] + tr[4];
@@ -1293,382 +1085,186 @@ public class Shape2Xml
 			double newAbsX2 = oldAbsX2 * tr[0] + oldAbsY2 * tr[2] + tr[4];
 			double newAbsY2 = oldAbsX2 * tr[1] + oldAbsY2 * tr[3] + tr[5];
 
-			double newRelX = newAbsX - lastPathX;
-			double newRelY = newAbsY - lastPathY;
-			double newRelX1 = newAbsX1 - lastPathX;
-			double newRelY1 = newAbsY1 - lastPathY;
-			double newRelX2 = newAbsX2 - lastPathX;
-			double newRelY2 = newAbsY2 - lastPathY;
+			double newRelX = newAbsX - ctx.lastPathX;
+			double newRelY = newAbsY - ctx.lastPathY;
+			double newRelX1 = newAbsX1 - ctx.lastPathX;
+			double newRelY1 = newAbsY1 - ctx.lastPathY;
+			double newRelX2 = newAbsX2 - ctx.lastPathX;
+			double newRelY2 = newAbsY2 - ctx.lastPathY;
 
-			currPathString = "c " + newRelX1 + " " + newRelY1 + " " + newRelX2 + " " + newRelY2 + " " + newRelX + " " + newRelY + " ";
+			out.addCommand('c');
+			out.addParam(newRelX1);
+			out.addParam(newRelY1);
+			out.addParam(newRelX2);
+			out.addParam(newRelY2);
+			out.addParam(newRelX);
+			out.addParam(newRelY);
 
-			lastPathX += newRelX;
-			lastPathY += newRelY;
+			ctx.lastPathX += newRelX;
+			ctx.lastPathY += newRelY;
 		}
-
-		return currPathString;
 	}
 
 	//for internal use only
-	private static String matrixTransformPathPartVerLine(String currPathString,	Double[] tr, boolean isAbs)
+	private static void matrixTransformPathPartVerLine(PathReader lexer, double[] tr, boolean isAbs, TransformContext ctx, PathData out)
 	{
 		double x = 0;
-		double y = getPathParam(currPathString, 1);
+		double y = lexer.getParam(0);
 
 		if (isAbs)
 		{
-			x = prevPathX;
-			prevPathX = x;
-			prevPathY = y;
+			x = ctx.prevPathX;
+			ctx.prevPathX = x;
+			ctx.prevPathY = y;
 			double xNew = x * tr[0] + y * tr[2] + tr[4];
 			double yNew = x * tr[1] + y * tr[3] + tr[5];
 
-			currPathString = "L " + xNew + " " + yNew + " ";
-			lastPathX = xNew;
-			lastPathY = yNew;
+			out.addCommand('L');
+			out.addParam(xNew);
+			out.addParam(yNew);
+			ctx.lastPathX = xNew;
+			ctx.lastPathY = yNew;
 		}
 		else
 		{
-			double oldAbsX = prevPathX + x;
-			double oldAbsY = prevPathY + y;
-			prevPathX += x;
-			prevPathY += y;
+			double oldAbsX = ctx.prevPathX + x;
+			double oldAbsY = ctx.prevPathY + y;
+			ctx.prevPathX += x;
+			ctx.prevPathY += y;
 			double newAbsX = oldAbsX * tr[0] + oldAbsY * tr[2] + tr[4];
 			double newAbsY = oldAbsX * tr[1] + oldAbsY * tr[3] + tr[5];
-			double newRelX = newAbsX - lastPathX;
-			double newRelY = newAbsY - lastPathY;
+			double newRelX = newAbsX - ctx.lastPathX;
+			double newRelY = newAbsY - ctx.lastPathY;
 
-			currPathString = "l " + newRelX + " " + newRelY + " ";
-			lastPathX += newRelX;
-			lastPathY += newRelY;
+			out.addCommand('l');
+			out.addParam(newRelX);
+			out.addParam(newRelY);
+			ctx.lastPathX += newRelX;
+			ctx.lastPathY += newRelY;
 		}
-
-		return currPathString;
 	}
 
 	//for internal use only
-	private static String matrixTransformPathPartHorLine(String currPathString, Double[] tr, boolean isAbs)
+	private static void matrixTransformPathPartHorLine(PathReader lexer, double[] tr, boolean isAbs, TransformContext ctx, PathData out)
 	{
-		double x = getPathParam(currPathString, 1);
+		double x = lexer.getParam(0);
 		double y = 0;
 
 
 		if (isAbs)
 		{
-			y = prevPathY;
-			prevPathX = x;
-			prevPathY = y;
+			y = ctx.prevPathY;
+			ctx.prevPathX = x;
+			ctx.prevPathY = y;
 			double xNew = x * tr[0] + y * tr[2] + tr[4];
 			double yNew = x * tr[1] + y * tr[3] + tr[5];
 
-			currPathString = "L " + xNew + " " + yNew + " ";
-			lastPathX = xNew;
-			lastPathY = yNew;
+			out.addCommand('L');
+			out.addParam(xNew);
+			out.addParam(yNew);
+			ctx.lastPathX = xNew;
+			ctx.lastPathY = yNew;
 		}
 		else
 		{
-			double oldAbsX = prevPathX + x;
-			double oldAbsY = prevPathY + y;
-			prevPathX += x;
-			prevPathY += y;
+			double oldAbsX = ctx.prevPathX + x;
+			double oldAbsY = ctx.prevPathY + y;
+			ctx.prevPathX += x;
+			ctx.prevPathY += y;
 			double newAbsX = oldAbsX * tr[0] + oldAbsY * tr[2] + tr[4];
 			double newAbsY = oldAbsX * tr[1] + oldAbsY * tr[3] + tr[5];
-			double newRelX = newAbsX - lastPathX;
-			double newRelY = newAbsY - lastPathY;
+			double newRelX = newAbsX - ctx.lastPathX;
+			double newRelY = newAbsY - ctx.lastPathY;
 
-			currPathString = "l " + newRelX + " " + newRelY + " ";
-			lastPathX += newRelX;
-			lastPathY += newRelY;
+			out.addCommand('l');
+			out.addParam(newRelX);
+			out.addParam(newRelY);
+			ctx.lastPathX += newRelX;
+			ctx.lastPathY += newRelY;
 		}
-
-		return currPathString;
 	}
 
 	//for internal use only
-	private static String matrixTransformPathPartLine(String currPathString, Double[] tr, boolean isAbs)
+	private static void matrixTransformPathPartLine(PathReader lexer, double[] tr, boolean isAbs, TransformContext ctx, PathData out)
 	{
-		double x = getPathParam(currPathString, 1);
-		double y = getPathParam(currPathString, 2);
+		double x = lexer.getParam(0);
+		double y = lexer.getParam(1);
 
 
 		if (isAbs)
 		{
-			prevPathX = x;
-			prevPathY = y;
+			ctx.prevPathX = x;
+			ctx.prevPathY = y;
 			double xNew = x * tr[0] + y * tr[2] + tr[4];
 			double yNew = x * tr[1] + y * tr[3] + tr[5];
 
-			currPathString = "L " + xNew + " " + yNew + " ";
-			lastPathX = xNew;
-			lastPathY = yNew;
+			out.addCommand('L');
+			out.addParam(xNew);
+			out.addParam(yNew);
+			ctx.lastPathX = xNew;
+			ctx.lastPathY = yNew;
 		}
 		else
 		{
-			double oldAbsX = prevPathX + x;
-			double oldAbsY = prevPathY + y;
-			prevPathX += x;
-			prevPathY += y;
+			double oldAbsX = ctx.prevPathX + x;
+			double oldAbsY = ctx.prevPathY + y;
+			ctx.prevPathX += x;
+			ctx.prevPathY += y;
 			double newAbsX = oldAbsX * tr[0] + oldAbsY * tr[2] + tr[4];
 			double newAbsY = oldAbsX * tr[1] + oldAbsY * tr[3] + tr[5];
-			double newRelX = newAbsX - lastPathX;
-			double newRelY = newAbsY - lastPathY;
+			double newRelX = newAbsX - ctx.lastPathX;
+			double newRelY = newAbsY - ctx.lastPathY;
 
-			currPathString = "l " + newRelX + " " + newRelY + " ";
-			lastPathX += newRelX;
-			lastPathY += newRelY;
+			out.addCommand('l');
+			out.addParam(newRelX);
+			out.addParam(newRelY);
+			ctx.lastPathX += newRelX;
+			ctx.lastPathY += newRelY;
 		}
-
-		return currPathString;
 	}
 
 	//for internal use only
-	private static String matrixTransformPathPartMove(String currPathString, Double[] tr, boolean isAbs)
+	private static void matrixTransformPathPartMove(PathReader lexer, double[] tr, boolean isAbs, TransformContext ctx, PathData out)
 	{
-		double x = getPathParam(currPathString, 1);
-		double y = getPathParam(currPathString, 2);
+		double x = lexer.getParam(0);
+		double y = lexer.getParam(1);
 
 		if (isAbs)
 		{
-			prevPathX = x;
-			prevPathY = y;
-			prevMoveX = prevPathX;
-			prevMoveY = prevPathY;
+			ctx.prevPathX = x;
+			ctx.prevPathY = y;
+			ctx.prevMoveX = ctx.prevPathX;
+			ctx.prevMoveY = ctx.prevPathY;
 			
 			double xNew = x * tr[0] + y * tr[2] + tr[4];
 			double yNew = x * tr[1] + y * tr[3] + tr[5];
 
-			currPathString = "M " + xNew + " " + yNew + " ";
-			lastPathX = xNew;
-			lastPathY = yNew;
+			out.addCommand('M');
+			out.addParam(xNew);
+			out.addParam(yNew);
+			ctx.lastPathX = xNew;
+			ctx.lastPathY = yNew;
 		}
 		else
 		{
-			double oldAbsX = prevPathX + x;
-			double oldAbsY = prevPathY + y;
-			prevPathX += x;
-			prevPathY += y;
-			prevMoveX = prevPathX;
-			prevMoveY = prevPathY;
+			double oldAbsX = ctx.prevPathX + x;
+			double oldAbsY = ctx.prevPathY + y;
+			ctx.prevPathX += x;
+			ctx.prevPathY += y;
+			ctx.prevMoveX = ctx.prevPathX;
+			ctx.prevMoveY = ctx.prevPathY;
 			double newAbsX = oldAbsX * tr[0] + oldAbsY * tr[2] + tr[4];
 			double newAbsY = oldAbsX * tr[1] + oldAbsY * tr[3] + tr[5];
 
-			currPathString = "M " + newAbsX + " " + newAbsY + " ";
-			lastPathX = newAbsX;
-			lastPathY = newAbsY;
+			out.addCommand('M');
+			out.addParam(newAbsX);
+			out.addParam(newAbsY);
+			ctx.lastPathX = newAbsX;
+			ctx.lastPathY = newAbsY;
 			
-			lastMoveX = lastPathX;
-			lastMoveY = lastPathY;
+			ctx.lastMoveX = ctx.lastPathX;
+			ctx.lastMoveY = ctx.lastPathY;
 		}
-
-		return currPathString;
-	}
-
-	//for internal use only
-	public static int nextPartIndex(String path, char lastPathType)
-	{
-		path = path.replaceAll(",", " ");
-		path = path.replaceAll("\\s{2,}", " ");
-		path = path.trim();
-		
-		char currPathType = path.charAt(0);
-		
-		if (!Character.isLetter(currPathType))
-		{
-			currPathType = lastPathType;
-		}
-
-		int numParams = 0;
-		CharSequence pathType = String.valueOf(currPathType);
-		String set = "HhVv";
-		
-		if (set.contains(pathType))
-		{
-			numParams = 1;
-		}
-		
-		set = "MmLlTt";
-		
-		if (set.contains(pathType))
-		{
-			numParams = 2;
-		}
-		
-		set = "SsQq";
-		
-		if (set.contains(pathType))
-		{
-			numParams = 4;
-		}
-		
-		set = "Cc";
-		
-		if (set.contains(pathType))
-		{
-			numParams = 6;
-		}
-		
-		set = "Aa";
-		
-		if (set.contains(pathType))
-		{
-			numParams = 7;
-		}
-		
-		int currIndex = 0;
-		
-		if (!(Character.isDigit(path.charAt(0)) || path.charAt(0) == '-'))
-		{
-			numParams++;
-		}
-		
-		for (int i = 0; i < numParams; ++i) 
-		{
-			currIndex = path.indexOf(" ", currIndex + 1);
-		};
-		
-		return currIndex;
-	}
-
-	//for internal use only
-	// param # starting from 1
-	public static double getPathParam(String pathString, int index)
-	{
-		pathString = pathString.replaceAll(",", ", ");
-		pathString = pathString.replaceAll("  ", " ");
-		pathString = pathString.replaceAll("E -", "E-");
-		pathString = pathString.replaceAll("e -", "e-");
-
-		int currIndex=0;
-		int currParamIndex = 0;
-
-		if (pathString.length() >= 2 && pathString.charAt(1) != ' ')
-		{
-			pathString = pathString.substring(0, 1) + " " + pathString.substring(1, pathString.length());
-		}
-
-		while (currIndex < index)
-		{
-			currParamIndex = pathString.indexOf(' ', currParamIndex + 1);
-			currIndex++;
-		}
-
-		int endIndex = pathString.indexOf(' ', currParamIndex + 1);
-
-		if (endIndex == -1)
-		{
-			endIndex = pathString.length();
-		}
-
-		double param;
-		
-		if (pathString.charAt(0) == 'L')
-		{
-			
-			String paramString = pathString.substring(currParamIndex, endIndex);
-
-			param = Double.valueOf(paramString);
-			
-		}
-		else if (pathString != null && pathString != "" && pathString.length() > 1)
-		{
-			if (pathString == null)
-			{
-				int i =1;
-				i++;
-			}
-			
-			String paramString = pathString.substring(currParamIndex, endIndex);
-
-			param = Double.valueOf(paramString);
-			
-		}
-		else
-		{
-			param = 0;
-		}
-
-		return param;
-	}
-
-	/**
-	 * sets the top left of the drawing to vector [x,y], to be used only with path parts
-	 * @param path path to transform
-	 * @param configDoc target config document 
-	 * @return transformed path
-	 */
-	private static String setPathRoot (String path, XmlConfig configDoc)
-	{
-		int dn = configDoc.getDecimalsToRound();
-		double x = configDoc.getStencilBoundsMinX();
-		double y = configDoc.getStencilBoundsMinY();
-
-		String xmlOut = setRootAttr(x, path, " x=\"", dn);
-		xmlOut = setRootAttr(x, xmlOut, " x1=\"", dn);
-		xmlOut = setRootAttr(x, xmlOut, " x2=\"", dn);
-		xmlOut = setRootAttr(x, xmlOut, " x3=\"", dn);
-		xmlOut = setRootAttr(y, xmlOut, " y=\"", dn);
-		xmlOut = setRootAttr(y, xmlOut, " y1=\"", dn);
-		xmlOut = setRootAttr(y, xmlOut, " y2=\"", dn);
-		xmlOut = setRootAttr(y, xmlOut, " y3=\"", dn);
-
-		return xmlOut;
-	}
-
-	/**
-	 * sets the top left of the drawing to vector [x,y]
-	 * @param coord source coord
-	 * @param xmlCode chuk of code where the translation is applied
-	 * @param lookFor what to replace
-	 * @param decimalsNum number of decimals to round
-	 * @return translated coordinate
-	 */
-	private static String setRootAttr (double coord, String xmlCode, String lookFor, int decimalsNum)
-	{
-		int startIndex= -1;
-		int startIndexOld = 0;
-		int endIndex = 0;
-		int endIndexOld = 0;
-		String xmlOut = "";
-
-		while ((startIndex = xmlCode.indexOf(lookFor, startIndexOld)) != -1)
-		{
-			if (startIndex>startIndexOld)
-			{
-				//find
-				startIndex+=lookFor.length();
-				endIndex = xmlCode.indexOf("\"", startIndex);
-				String doubleValueString = xmlCode.substring(startIndex, endIndex);
-
-				// translate
-				double doubleValue = Double.valueOf(doubleValueString);
-				doubleValue -= coord;
-				doubleValue = roundToDecimals(doubleValue, decimalsNum);
-				doubleValueString = String.valueOf(doubleValue);
-
-				Double valueDouble = new Double(doubleValue);
-				long valueLong = 0;
-
-				//compose
-				if (doubleValue - valueDouble.intValue() == 0)
-				{
-					doubleValue = roundToDecimals(doubleValue, 0);
-					valueLong = valueDouble.intValue();
-					xmlOut += xmlCode.substring(endIndexOld, startIndex) + valueLong; 
-				}
-				else
-				{
-					xmlOut += xmlCode.substring(endIndexOld, startIndex) + doubleValue; 
-				}
-
-				endIndexOld = endIndex;
-				startIndexOld = startIndex;
-			}
-		}
-		xmlOut += xmlCode.substring(endIndex, xmlCode.length());
-
-		xmlCode = xmlOut;
-
-		return xmlCode;
 	}
 
 	public static String getFirstLevelTextContent(Node node) 
@@ -1775,16 +1371,4 @@ public class Shape2Xml
 		Double[] result = {a, b, c, d, e, f};
 		return result;
 	}
-
-	private static Double getDoubleAttribute(Element element, String attrName)
-	{
-		if (element.getAttribute(attrName).length() > 0)
-		{
-			return Double.valueOf(element.getAttribute(attrName));
-		}
-		else
-		{
-			return 0.0;
-		}
-	}
 }
@@ -0,0 +1,466 @@
+/**
+ * Copyright (c) 2013, JGraph
+ */
+
+package com.mxgraph.svg2xml;
+
+import java.awt.geom.Rectangle2D;
+
+/**
+ * Computes the bounding box of the geometry of a stencil, the same geometry Shape2Xml converts. The matrix transform
+ * of an element is applied, as Shape2Xml does. The bounds are tight: curves add their extrema instead of their control
+ * points, and arcs and ellipses add the extrema of the (transformed) ellipse that lie on them. Text isn't measured, and
+ * the stroke width isn't added.
+ * <p>
+ * The shapes are read from StencilGeometry, so the SVG doesn't have to be parsed into another shape model first.
+ */
+public class StencilBounds
+{
+	private double minX = Double.POSITIVE_INFINITY;
+	private double minY = Double.POSITIVE_INFINITY;
+	private double maxX = Double.NEGATIVE_INFINITY;
+	private double maxY = Double.NEGATIVE_INFINITY;
+
+	// matrix of the current element as a b c d e f, null if it isn't transformed
+	private Double[] tr = null;
+
+	/**
+	 * @return the bounding box of the elements added so far, or null if none of them has geometry
+	 */
+	public Rectangle2D getBounds()
+	{
+		if (minX > maxX)
+		{
+			return null;
+		}
+
+		return new Rectangle2D.Double(minX, minY, maxX - minX, maxY - minY);
+	}
+
+	/**
+	 * Adds the geometry of a shape
+	 * @param shape shape of a flattened SVG element
+	 */
+	public void add(StencilGeometry.Shape shape)
+	{
+		tr = shape.tr;
+		double[] v = shape.values;
+
+		switch (shape.kind)
+		{
+			case StencilGeometry.RECT:
+				if (tr != null && (v[4] != 0 || v[5] != 0))
+				{
+					// the corners of a transformed roundrect are arcs, see Shape2Xml.getRectPath
+					addPath(shape.path);
+				}
+				else
+				{
+					addPoint(v[0], v[1]);
+					addPoint(v[0] + v[2], v[1]);
+					addPoint(v[0], v[1] + v[3]);
+					addPoint(v[0] + v[2], v[1] + v[3]);
+				}
+				break;
+			case StencilGeometry.PATH:
+				addPath(shape.path);
+				break;
+			case StencilGeometry.POLY:
+				// the points are transformed already
+				for (int i = 0; i < shape.valueCount; i += 2)
+				{
+					addTransformed(v[i], v[i + 1]);
+				}
+				break;
+			case StencilGeometry.ELLIPSE:
+				// not converted either
+				if (v[2] >= 0 && v[3] >= 0)
+				{
+					addEllipse(v[0], v[1], v[2], v[3]);
+				}
+				break;
+			default:
+				break;
+		}
+	}
+
+	/**
+	 * Adds the geometry of a SVG path
+	 * @param path commands of the path
+	 */
+	private void addPath(PathData path)
+	{
+		PathReader reader = path.getReader();
+		double x = 0;
+		double y = 0;
+		double moveX = 0;
+		double moveY = 0;
+
+		// control point of the previous curve, reflected by the smooth curves
+		double ctrlX = 0;
+		double ctrlY = 0;
+		char prevCommand = ' ';
+
+		while (reader.next())
+		{
+			char command = reader.getCommand();
+			boolean isRel = Character.isLowerCase(command);
+			double ox = (isRel) ? x : 0;
+			double oy = (isRel) ? y : 0;
+			char prev = Character.toUpperCase(prevCommand);
+
+			switch (Character.toUpperCase(command))
+			{
+				case 'M':
+					x = ox + reader.getParam(0);
+					y = oy + reader.getParam(1);
+					moveX = x;
+					moveY = y;
+					addPoint(x, y);
+					break;
+				case 'L':
+					x = ox + reader.getParam(0);
+					y = oy + reader.getParam(1);
+					addPoint(x, y);
+					break;
+				case 'H':
+					x = ox + reader.getParam(0);
+					addPoint(x, y);
+					break;
+				case 'V':
+					y = oy + reader.getParam(0);
+					addPoint(x, y);
+					break;
+				case 'C':
+				{
+					double x2 = ox + reader.getParam(2);
+					double y2 = oy + reader.getParam(3);
+					double ex = ox + reader.getParam(4);
+					double ey = oy + reader.getParam(5);
+					addCubic(x, y, ox + reader.getParam(0), oy + reader.getParam(1), x2, y2, ex, ey);
+					ctrlX = x2;
+					ctrlY = y2;
+					x = ex;
+					y = ey;
+					break;
+				}
+				case 'S':
+				{
+					double x1 = (prev == 'C' || prev == 'S') ? 2 * x - ctrlX : x;
+					double y1 = (prev == 'C' || prev == 'S') ? 2 * y - ctrlY : y;
+					double x2 = ox + reader.getParam(0);
+					double y2 = oy + reader.getParam(1);
+					double ex = ox + reader.getParam(2);
+					double ey = oy + reader.getParam(3);
+					addCubic(x, y, x1, y1, x2, y2, ex, ey);
+					ctrlX = x2;
+					ctrlY = y2;
+					x = ex;
+					y = ey;
+					break;
+				}
+				case 'Q':
+				{
+					double x1 = ox + reader.getParam(0);
+					double y1 = oy + reader.getParam(1);
+					double ex = ox + reader.getParam(2);
+					double ey = oy + reader.getParam(3);
+					addQuad(x, y, x1, y1, ex, ey);
+					ctrlX = x1;
+					ctrlY = y1;
+					x = ex;
+					y = ey;
+					break;
+				}
+				case 'T':
+				{
+					double x1 = (prev == 'Q' || prev == 'T') ? 2 * x - ctrlX : x;
+					double y1 = (prev == 'Q' || prev == 'T') ? 2 * y - ctrlY : y;
+					double ex = ox + reader.getParam(0);
+					double ey = oy + reader.getParam(1);
+					addQuad(x, y, x1, y1, ex, ey);
+					ctrlX = x1;
+					ctrlY = y1;
+					x = ex;
+					y = ey;
+					break;
+				}
+				case 'A':
+				{
+					double ex = ox + reader.getParam(5);
+					double ey = oy + reader.getParam(6);
+					addArc(x, y, reader.getParam(0), reader.getParam(1), reader.getParam(2), reader.getParam(3) != 0, reader.getParam(4) != 0, ex, ey);
+					x = ex;
+					y = ey;
+					break;
+				}
+				case 'Z':
+					x = moveX;
+					y = moveY;
+					break;
+				default:
+					break;
+			}
+
+			prevCommand = command;
+		}
+	}
+
+	/**
+	 * Adds a point in the coordinates of the element
+	 */
+	private void addPoint(double x, double y)
+	{
+		if (tr != null)
+		{
+			double tx = tr[0] * x + tr[2] * y + tr[4];
+			y = tr[1] * x + tr[3] * y + tr[5];
+			x = tx;
+		}
+
+		addTransformed(x, y);
+	}
+
+	/**
+	 * Adds a point that is already transformed
+	 */
+	private void addTransformed(double x, double y)
+	{
+		minX = Math.min(minX, x);
+		minY = Math.min(minY, y);
+		maxX = Math.max(maxX, x);
+		maxY = Math.max(maxY, y);
+	}
+
+	/**
+	 * Adds a cubic curve, an affine transform of a curve is the curve of the transformed control points
+	 */
+	private void addCubic(double x0, double y0, double x1, double y1, double x2, double y2, double x3, double y3)
+	{
+		if (tr != null)
+		{
+			double[] p = {x0, y0, x1, y1, x2, y2, x3, y3};
+
+			for (int i = 0; i < p.length; i += 2)
+			{
+				double tx = tr[0] * p[i] + tr[2] * p[i + 1] + tr[4];
+				p[i + 1] = tr[1] * p[i] + tr[3] * p[i + 1] + tr[5];
+				p[i] = tx;
+			}
+
+			x0 = p[0];
+			y0 = p[1];
+			x1 = p[2];
+			y1 = p[3];
+			x2 = p[4];
+			y2 = p[5];
+			x3 = p[6];
+			y3 = p[7];
+		}
+
+		addTransformed(x0, y0);
+		addTransformed(x3, y3);
+
+		// the derivative of each coordinate is a * t^2 + b * t + c
+		double[] roots = new double[2];
+		int count = solveQuadratic(-x0 + 3 * x1 - 3 * x2 + x3, 2 * (x0 - 2 * x1 + x2), x1 - x0, roots);
+
+		for (int i = 0; i < count; i++)
+		{
+			double t = roots[i];
+			double u = 1 - t;
+			addTransformed(u * u * u * x0 + 3 * u * u * t * x1 + 3 * u * t * t * x2 + t * t * t * x3,
+					u * u * u * y0 + 3 * u * u * t * y1 + 3 * u * t * t * y2 + t * t * t * y3);
+		}
+
+		count = solveQuadratic(-y0 + 3 * y1 - 3 * y2 + y3, 2 * (y0 - 2 * y1 + y2), y1 - y0, roots);
+
+		for (int i = 0; i < count; i++)
+		{
+			double t = roots[i];
+			double u = 1 - t;
+			addTransformed(u * u * u * x0 + 3 * u * u * t * x1 + 3 * u * t * t * x2 + t * t * t * x3,
+					u * u * u * y0 + 3 * u * u * t * y1 + 3 * u * t * t * y2 + t * t * t * y3);
+		}
+	}
+
+	/**
+	 * Adds a quadratic curve as the cubic curve with the same shape
+	 */
+	private void addQuad(double x0, double y0, double x1, double y1, double x2, double y2)
+	{
+		addCubic(x0, y0, x0 + 2.0 / 3.0 * (x1 - x0), y0 + 2.0 / 3.0 * (y1 - y0),
+				x2 + 2.0 / 3.0 * (x1 - x2), y2 + 2.0 / 3.0 * (y1 - y2), x2, y2);
+	}
+
+	/**
+	 * Adds a whole ellipse
+	 */
+	private void addEllipse(double cx, double cy, double rx, double ry)
+	{
+		addEllipseArc(cx, cy, rx, 0, 0, ry, 0, 2 * Math.PI);
+	}
+
+	/**
+	 * Adds a SVG arc from (<b>x0</b>, <b>y0</b>) to (<b>x</b>, <b>y</b>), see the implementation notes of the SVG
+	 * specification for the conversion to the center of the ellipse and the angles
+	 */
+	private void addArc(double x0, double y0, double rx, double ry, double angle, boolean largeArc, boolean sweep, double x, double y)
+	{
+		rx = Math.abs(rx);
+		ry = Math.abs(ry);
+
+		if (rx == 0 || ry == 0)
+		{
+			// a straight line, as Shape2Xml writes it
+			addPoint(x, y);
+			return;
+		}
+
+		if (x0 == x && y0 == y)
+		{
+			return;
+		}
+
+		double phi = Math.toRadians(angle);
+		double cos = Math.cos(phi);
+		double sin = Math.sin(phi);
+		double dx = (x0 - x) / 2;
+		double dy = (y0 - y) / 2;
+		double x1p = cos * dx + sin * dy;
+		double y1p = -sin * dx + cos * dy;
+
+		// radii that are too small are scaled up until the ellipse reaches the end point
+		double lambda = (x1p * x1p) / (rx * rx) + (y1p * y1p) / (ry * ry);
+
+		if (lambda > 1)
+		{
+			rx *= Math.sqrt(lambda);
+			ry *= Math.sqrt(lambda);
+		}
+
+		double num = rx * rx * ry * ry - rx * rx * y1p * y1p - ry * ry * x1p * x1p;
+		double den = rx * rx * y1p * y1p + ry * ry * x1p * x1p;
+		double coef = Math.sqrt(Math.max(0, num / den));
+
+		if (largeArc == sweep)
+		{
+			coef = -coef;
+		}
+
+		double cxp = coef * rx * y1p / ry;
+		double cyp = -coef * ry * x1p / rx;
+		double cx = cos * cxp - sin * cyp + (x0 + x) / 2;
+		double cy = sin * cxp + cos * cyp + (y0 + y) / 2;
+
+		double start = Math.atan2((y1p - cyp) / ry, (x1p - cxp) / rx);
+		double end = Math.atan2((-y1p - cyp) / ry, (-x1p - cxp) / rx);
+		double extent = end - start;
+
+		if (sweep && extent < 0)
+		{
+			extent += 2 * Math.PI;
+		}
+		else if (!sweep && extent > 0)
+		{
+			extent -= 2 * Math.PI;
+		}
+
+		addPoint(x0, y0);
+		addPoint(x, y);
+		addEllipseArc(cx, cy, rx * cos, rx * sin, -ry * sin, ry * cos, start, extent);
+	}
+
+	/**
+	 * Adds the extrema of the arc <b>c + u * cos(t) + v * sin(t)</b> for t from <b>start</b> to
+	 * <b>start + extent</b>, the end points of the arc must be added by the caller
+	 */
+	private void addEllipseArc(double cx, double cy, double ux, double uy, double vx, double vy, double start, double extent)
+	{
+		if (tr != null)
+		{
+			double tcx = tr[0] * cx + tr[2] * cy + tr[4];
+			cy = tr[1] * cx + tr[3] * cy + tr[5];
+			cx = tcx;
+			double tux = tr[0] * ux + tr[2] * uy;
+			uy = tr[1] * ux + tr[3] * uy;
+			ux = tux;
+			double tvx = tr[0] * vx + tr[2] * vy;
+			vy = tr[1] * vx + tr[3] * vy;
+			vx = tvx;
+		}
+
+		// x and y are extreme where their derivative, -u * sin(t) + v * cos(t), is 0
+		double tx = Math.atan2(vx, ux);
+		double ty = Math.atan2(vy, uy);
+		double[] candidates = {tx, tx + Math.PI, ty, ty + Math.PI};
+
+		for (double t : candidates)
+		{
+			if (isOnArc(t, start, extent))
+			{
+				addTransformed(cx + ux * Math.cos(t) + vx * Math.sin(t), cy + uy * Math.cos(t) + vy * Math.sin(t));
+			}
+		}
+	}
+
+	/**
+	 * @return true if the angle <b>t</b> lies between <b>start</b> and <b>start + extent</b>
+	 */
+	private static boolean isOnArc(double t, double start, double extent)
+	{
+		double d = (extent >= 0) ? t - start : start - t;
+		d = d % (2 * Math.PI);
+
+		if (d < 0)
+		{
+			d += 2 * Math.PI;
+		}
+
+		return d <= Math.abs(extent);
+	}
+
+	/**
+	 * @return the number of roots of <b>a * t^2 + b * t + c</b> strictly between 0 and 1, written to <b>roots</b>
+	 */
+	private static int solveQuadratic(double a, double b, double c, double[] roots)
+	{
+		int count = 0;
+
+		if (a == 0)
+		{
+			if (b != 0)
+			{
+				count = addRoot(-c / b, roots, count);
+			}
+		}
+		else
+		{
+			double disc = b * b - 4 * a * c;
+
+			if (disc >= 0)
+			{
+				// this form doesn't lose the small root when a is almost 0, as for quadratic curves
+				double q = -0.5 * (b + Math.copySign(Math.sqrt(disc), b));
+				count = addRoot(q / a, roots, count);
+
+				if (q != 0)
+				{
+					count = addRoot(c / q, roots, count);
+				}
+			}
+		}
+
+		return count;
+	}
+
+	private static int addRoot(double t, double[] roots, int count)
+	{
+		if (t > 0 && t < 1)
+		{
+			roots[count++] = t;
+		}
+
+		return count;
+	}
+}
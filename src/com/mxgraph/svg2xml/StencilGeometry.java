@@ -0,0 +1,241 @@
+/**
+ * Copyright (c) 2013, JGraph
+ */
+
+package com.mxgraph.svg2xml;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.w3c.dom.Element;
+
+/**
+ * Geometry of the flattened elements of a SVG, read once into numbers in the coordinates of the SVG. The bounds are
+ * computed from it, and Shape2Xml writes the stencil from it, translating by the bounds, scaling and rounding as it
+ * writes. Nothing in it depends on the conversion options, so it can be written again with other options.
+ * <p>
+ * Text is kept as its element, Shape2Xml.parseText reads the text, the tspans and their styles from the element.
+ */
+public class StencilGeometry
+{
+	/** element without geometry */
+	public static final int NONE = 0;
+
+	/** rect, values are x, y, width, height, rx and ry. If the element is transformed the rect is in <b>path</b> too */
+	public static final int RECT = 1;
+
+	/** path or line, the path is in <b>path</b> */
+	public static final int PATH = 2;
+
+	/** polyline or polygon, the transformed points are in <b>values</b> as x, y pairs */
+	public static final int POLY = 3;
+
+	/** circle or ellipse, values are cx, cy, rx and ry (r for both radii of a circle) */
+	public static final int ELLIPSE = 4;
+
+	/** text, only the element is kept */
+	public static final int TEXT = 5;
+
+	/**
+	 * Geometry of a single element
+	 */
+	public static class Shape
+	{
+		final Element element;
+
+		final int kind;
+
+		// the matrix transform of the element as a b c d e f, null if it has none. Applied to polylines while reading.
+		final Double[] tr;
+
+		// true if the element has a transform attribute, even if it isn't a matrix
+		final boolean transformed;
+
+		final double[] values;
+
+		// number of values, the array can be longer
+		final int valueCount;
+
+		final PathData path;
+
+		// true for polygons
+		final boolean closed;
+
+		Shape(Element element, int kind, Double[] tr, double[] values, int valueCount, PathData path, boolean closed)
+		{
+			this.element = element;
+			this.kind = kind;
+			this.tr = tr;
+			this.transformed = element.getAttribute("transform").length() > 0;
+			this.values = values;
+			this.valueCount = valueCount;
+			this.path = path;
+			this.closed = closed;
+		}
+
+		/**
+		 * @return the element the shape was read from, its style is read from there
+		 */
+		public Element getElement()
+		{
+			return element;
+		}
+
+		/**
+		 * @return NONE, RECT, PATH, POLY, ELLIPSE or TEXT
+		 */
+		public int getKind()
+		{
+			return kind;
+		}
+	}
+
+	private final ArrayList<Shape> shapes = new ArrayList<Shape>();
+
+	/**
+	 * Reads the geometry of <b>elements</b>
+	 * @param elements the flattened elements of a SVG, in drawing order
+	 * @throws NumberFormatException if a coordinate isn't a number, the stencil can't be converted then
+	 */
+	public StencilGeometry(List<Element> elements)
+	{
+		for (Element element : elements)
+		{
+			shapes.add(createShape(element));
+		}
+	}
+
+	/**
+	 * @return the number of shapes, the same as the number of elements
+	 */
+	public int size()
+	{
+		return shapes.size();
+	}
+
+	/**
+	 * @param i index of the shape, the same as the index of its element
+	 */
+	public Shape getShape(int i)
+	{
+		return shapes.get(i);
+	}
+
+	/**
+	 * @return the bounding box of the shapes, see StencilBounds, or null if none of them has geometry
+	 */
+	public Rectangle2D getBounds()
+	{
+		StencilBounds bounds = new StencilBounds();
+
+		for (Shape shape : shapes)
+		{
+			bounds.add(shape);
+		}
+
+		return bounds.getBounds();
+	}
+
+	/**
+	 * Reads the geometry of a single element
+	 * @param element flattened SVG element
+	 * @return the geometry of <b>element</b>
+	 * @throws NumberFormatException if a coordinate isn't a number
+	 */
+	public static Shape createShape(Element element)
+	{
+		String name = element.getNodeName();
+		boolean isGeometry = name.equals("rect") || name.equals("line") || name.equals("path") || name.equals("polyline")
+				|| name.equals("polygon") || name.equals("circle") || name.equals("ellipse");
+		Double[] tr = (isGeometry) ? Shape2Xml.getTransform(element) : null;
+
+		if (name.equals("rect"))
+		{
+			double[] values = {getDouble(element, "x"), getDouble(element, "y"), getDouble(element, "width"),
+					getDouble(element, "height"), getDouble(element, "rx"), getDouble(element, "ry")};
+			PathData path = (element.getAttribute("transform").length() > 0)
+					? Shape2Xml.getRectPath(values[0], values[1], values[2], values[3], values[4], values[5]) : null;
+
+			return new Shape(element, RECT, tr, values, values.length, path, false);
+		}
+		else if (name.equals("line"))
+		{
+			PathData path = new PathData();
+			path.addCommand('M');
+			path.addParam(getDouble(element, "x1"));
+			path.addParam(getDouble(element, "y1"));
+			path.addCommand('L');
+			path.addParam(getDouble(element, "x2"));
+			path.addParam(getDouble(element, "y2"));
+
+			return new Shape(element, PATH, tr, null, 0, path, false);
+		}
+		else if (name.equals("path"))
+		{
+			PathData path = PathData.parse(element.getAttribute("d"));
+
+			return new Shape(element, PATH, tr, null, 0, path, false);
+		}
+		else if (name.equals("polyline") || name.equals("polygon"))
+		{
+			PathReader reader = PathLexer.forPoints(element.getAttribute("points"));
+			double[] values = new double[16];
+			int count = 0;
+
+			while (reader.next())
+			{
+				double x = reader.getParam(0);
+				double y = reader.getParam(1);
+
+				if (tr != null)
+				{
+					double xNew = x * tr[0] + y * tr[2] + tr[4];
+					y = x * tr[1] + y * tr[3] + tr[5];
+					x = xNew;
+				}
+
+				if (count + 2 > values.length)
+				{
+					double[] newValues = new double[values.length * 2];
+					System.arraycopy(values, 0, newValues, 0, count);
+					values = newValues;
+				}
+
+				values[count++] = x;
+				values[count++] = y;
+			}
+
+			return new Shape(element, POLY, tr, values, count, null, name.equals("polygon"));
+		}
+		else if (name.equals("circle"))
+		{
+			double r = getDouble(element, "r");
+			double[] values = {getDouble(element, "cx"), getDouble(element, "cy"), r, r};
+
+			return new Shape(element, ELLIPSE, tr, values, values.length, null, false);
+		}
+		else if (name.equals("ellipse"))
+		{
+			double[] values = {getDouble(element, "cx"), getDouble(element, "cy"), getDouble(element, "rx"), getDouble(element, "ry")};
+
+			return new Shape(element, ELLIPSE, tr, values, values.length, null, false);
+		}
+		else if (name.equals("text"))
+		{
+			return new Shape(element, TEXT, tr, null, 0, null, false);
+		}
+
+		return new Shape(element, NONE, tr, null, 0, null, false);
+	}
+
+	/**
+	 * @return the attribute as a number, 0 if it's empty
+	 */
+	private static double getDouble(Element element, String name)
+	{
+		String value = element.getAttribute(name);
+
+		return (value.length() > 0) ? Double.parseDouble(value) : 0;
+	}
+}
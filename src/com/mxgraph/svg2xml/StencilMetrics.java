@@ -0,0 +1,182 @@
+/**
+ * Copyright (c) 2013, JGraph
+ */
+
+package com.mxgraph.svg2xml;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Wall time and allocated bytes of the stages of a single stencil conversion. The stages follow each other, every
+ * call of lap ends the current stage and starts the next one. A stencil is converted on a single thread, so the
+ * allocations of that thread are the allocations of the stencil.
+ */
+public class StencilMetrics
+{
+	/** reading and parsing the group and stencil config files */
+	public static final int CONFIG = 0;
+
+	/** reading the SVG file */
+	public static final int READ_FILE = 1;
+
+	/** parsing the SVG into a DOM (in streaming mode parsing is part of flattenSvg) */
+	public static final int PARSE_XML = 2;
+
+	/** flattening the SVG and extracting its connections */
+	public static final int FLATTEN_SVG = 3;
+
+	/** calculating the bounding box */
+	public static final int BOUNDS = 4;
+
+	/** translating the elements and their styles (Shape2Xml.parse and parseText) */
+	public static final int SHAPES = 5;
+
+	/** writing the stencil XML */
+	public static final int WRITE = 6;
+
+	public static final String[] STAGE_NAMES = {"config", "readFile", "parseXml", "flattenSvg", "bounds", "shapes", "write"};
+
+	private static final com.sun.management.ThreadMXBean ALLOCATION_BEAN = getAllocationBean();
+
+	private final String name;
+	private final long[] nanos = new long[STAGE_NAMES.length];
+	private final long[] allocatedBytes = new long[STAGE_NAMES.length];
+
+	private long lastNanos;
+	private long lastAllocatedBytes;
+
+	// true if the conversion threw, the stages after the failing one have no time
+	private boolean failed = false;
+
+	/**
+	 * Starts the first stage
+	 * @param name name of the stencil, used in the reports
+	 */
+	public StencilMetrics(String name)
+	{
+		this.name = name;
+		lastAllocatedBytes = getAllocatedBytes();
+		lastNanos = System.nanoTime();
+	}
+
+	/**
+	 * Ends <b>stage</b> and starts the next one. The time since the previous lap is added to <b>stage</b>.
+	 * @param stage one of the stage constants
+	 */
+	public void lap(int stage)
+	{
+		long now = System.nanoTime();
+		long allocated = getAllocatedBytes();
+
+		nanos[stage] += now - lastNanos;
+
+		if (allocated >= 0)
+		{
+			allocatedBytes[stage] += allocated - lastAllocatedBytes;
+		}
+
+		lastNanos = now;
+		lastAllocatedBytes = allocated;
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+
+	public boolean isFailed()
+	{
+		return failed;
+	}
+
+	public void setFailed(boolean failed)
+	{
+		this.failed = failed;
+	}
+
+	/**
+	 * @param stage one of the stage constants
+	 * @return wall time of <b>stage</b> in nanoseconds
+	 */
+	public long getNanos(int stage)
+	{
+		return nanos[stage];
+	}
+
+	/**
+	 * @param stage one of the stage constants
+	 * @return bytes allocated during <b>stage</b>, or -1 if the JVM can't measure allocations
+	 */
+	public long getAllocatedBytes(int stage)
+	{
+		return (ALLOCATION_BEAN != null) ? allocatedBytes[stage] : -1;
+	}
+
+	/**
+	 * @return wall time of all stages in nanoseconds
+	 */
+	public long getTotalNanos()
+	{
+		long total = 0;
+
+		for (int i = 0; i < nanos.length; i++)
+		{
+			total += nanos[i];
+		}
+
+		return total;
+	}
+
+	/**
+	 * @return bytes allocated during all stages, or -1 if the JVM can't measure allocations
+	 */
+	public long getTotalAllocatedBytes()
+	{
+		if (ALLOCATION_BEAN == null)
+		{
+			return -1;
+		}
+
+		long total = 0;
+
+		for (int i = 0; i < allocatedBytes.length; i++)
+		{
+			total += allocatedBytes[i];
+		}
+
+		return total;
+	}
+
+	private static long getAllocatedBytes()
+	{
+		return (ALLOCATION_BEAN != null) ? ALLOCATION_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId()) : -1;
+	}
+
+	// allocations can only be measured on JVMs with the com.sun.management extension (HotSpot, OpenJ9)
+	private static com.sun.management.ThreadMXBean getAllocationBean()
+	{
+		try
+		{
+			ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+			if (bean instanceof com.sun.management.ThreadMXBean)
+			{
+				com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) bean;
+
+				if (allocationBean.isThreadAllocatedMemorySupported())
+				{
+					allocationBean.setThreadAllocatedMemoryEnabled(true);
+
+					return allocationBean;
+				}
+			}
+		}
+		catch (Throwable e)
+		{
+			// no allocation measurement then
+		}
+
+		return null;
+	}
+}
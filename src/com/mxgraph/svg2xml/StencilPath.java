@@ -0,0 +1,144 @@
+/**
+ * Copyright (c) 2013, JGraph
+ */
+
+package com.mxgraph.svg2xml;
+
+/**
+ * The segments of a stencil path element, as opcodes and coordinates in two primitive arrays. The parsers collect a
+ * path here with coordinates that are already rounded, and StencilWriter.Block.path writes it as XML in one go.
+ */
+public class StencilPath
+{
+	/** move, coordinates are x and y */
+	public static final byte MOVE = 0;
+
+	/** line, coordinates are x and y */
+	public static final byte LINE = 1;
+
+	/** quadratic curve, coordinates are x1, y1, x2 and y2 */
+	public static final byte QUAD = 2;
+
+	/** cubic curve, coordinates are x1, y1, x2, y2, x3 and y3 */
+	public static final byte CURVE = 3;
+
+	/** arc, coordinates are rx, ry, x-axis-rotation, large-arc-flag, sweep-flag, x and y */
+	public static final byte ARC = 4;
+
+	/** close, without coordinates */
+	public static final byte CLOSE = 5;
+
+	// number of coordinates of every opcode
+	private static final int[] COORD_COUNTS = {2, 2, 4, 6, 7, 0};
+
+	private byte[] ops = new byte[16];
+	private int opCount = 0;
+
+	private double[] coords = new double[64];
+	private int coordCount = 0;
+
+	public void moveTo(double x, double y)
+	{
+		add(MOVE);
+		coords[coordCount++] = x;
+		coords[coordCount++] = y;
+	}
+
+	public void lineTo(double x, double y)
+	{
+		add(LINE);
+		coords[coordCount++] = x;
+		coords[coordCount++] = y;
+	}
+
+	public void quadTo(double x1, double y1, double x2, double y2)
+	{
+		add(QUAD);
+		coords[coordCount++] = x1;
+		coords[coordCount++] = y1;
+		coords[coordCount++] = x2;
+		coords[coordCount++] = y2;
+	}
+
+	public void curveTo(double x1, double y1, double x2, double y2, double x3, double y3)
+	{
+		add(CURVE);
+		coords[coordCount++] = x1;
+		coords[coordCount++] = y1;
+		coords[coordCount++] = x2;
+		coords[coordCount++] = y2;
+		coords[coordCount++] = x3;
+		coords[coordCount++] = y3;
+	}
+
+	public void arcTo(double rx, double ry, double rotation, double largeArc, double sweep, double x, double y)
+	{
+		add(ARC);
+		coords[coordCount++] = rx;
+		coords[coordCount++] = ry;
+		coords[coordCount++] = rotation;
+		coords[coordCount++] = largeArc;
+		coords[coordCount++] = sweep;
+		coords[coordCount++] = x;
+		coords[coordCount++] = y;
+	}
+
+	public void close()
+	{
+		add(CLOSE);
+	}
+
+	// adds an opcode and makes room for its coordinates
+	private void add(byte op)
+	{
+		if (opCount == ops.length)
+		{
+			byte[] newOps = new byte[opCount * 2];
+			System.arraycopy(ops, 0, newOps, 0, opCount);
+			ops = newOps;
+		}
+
+		ops[opCount++] = op;
+
+		if (coordCount + COORD_COUNTS[op] > coords.length)
+		{
+			double[] newCoords = new double[coords.length * 2];
+			System.arraycopy(coords, 0, newCoords, 0, coordCount);
+			coords = newCoords;
+		}
+	}
+
+	/**
+	 * @return the number of segments
+	 */
+	public int getOpCount()
+	{
+		return opCount;
+	}
+
+	/**
+	 * @param i index of a segment
+	 * @return MOVE, LINE, QUAD, CURVE, ARC or CLOSE
+	 */
+	public byte getOp(int i)
+	{
+		return ops[i];
+	}
+
+	/**
+	 * @param op an opcode
+	 * @return the number of coordinates of <b>op</b>
+	 */
+	public static int getCoordCount(byte op)
+	{
+		return COORD_COUNTS[op];
+	}
+
+	/**
+	 * @param i index in the coordinates of all segments, the coordinates of a segment follow the ones of the segment before
+	 */
+	public double getCoord(int i)
+	{
+		return coords[i];
+	}
+}
@@ -0,0 +1,562 @@
+/**
+ * Copyright (c) 2013, JGraph
+ */
+
+package com.mxgraph.svg2xml;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Writes the XML of a single stencil without building a DOM document. The elements of the connections, background
+ * and foreground blocks are written as text when they are added, numbers are formatted directly.
+ * The output has the same layout as the former Transformer output (4 space indent, attributes sorted by name),
+ * and the trailing ".0" of the values is dropped at write time.
+ */
+public class StencilWriter
+{
+	private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+	private final Attributes shapeAttributes = new Attributes();
+	private final Block connections = new Block(2);
+	private final Block background;
+	private final Block foreground = new Block(2);
+
+	// the saves are always inserted in front of the first block, so only their number is needed
+	private int saveCount = 0;
+
+	/**
+	 * @param hasBackground if true, the stencil gets a background block
+	 */
+	public StencilWriter(boolean hasBackground)
+	{
+		background = (hasBackground) ? new Block(2) : null;
+	}
+
+	/**
+	 * Sets an attribute of the shape element
+	 */
+	public void setAttribute(String name, String value)
+	{
+		shapeAttributes.set(name, value);
+	}
+
+	/**
+	 * Sets a numeric attribute of the shape element
+	 */
+	public void setAttribute(String name, double value)
+	{
+		shapeAttributes.set(name, formatNumber(value));
+	}
+
+	public Block getConnections()
+	{
+		return connections;
+	}
+
+	/**
+	 * @return the background block or null if the stencil has no background
+	 */
+	public Block getBackground()
+	{
+		return background;
+	}
+
+	public Block getForeground()
+	{
+		return foreground;
+	}
+
+	/**
+	 * Adds a save to the beginning of the background block, or of the foreground block if there is no background
+	 */
+	public void addSave()
+	{
+		saveCount++;
+	}
+
+	/**
+	 * @return the number of saves added with addSave
+	 */
+	int getSaveCount()
+	{
+		return saveCount;
+	}
+
+	/**
+	 * Replaces the saves added with addSave, used when the blocks are rewritten
+	 */
+	void setSaveCount(int saveCount)
+	{
+		this.saveCount = saveCount;
+	}
+
+	/**
+	 * @param name element name
+	 * @return the text of an element without attributes and children at the top level of a block
+	 */
+	static String getElementText(String name)
+	{
+		Block block = new Block(2);
+		block.element(name);
+
+		return block.buffer.toString();
+	}
+
+	/**
+	 * Writes the stencil to <b>out</b>
+	 * @param out destination of the stencil XML
+	 * @throws IOException
+	 */
+	public void writeTo(Appendable out) throws IOException
+	{
+		out.append("<shape");
+		shapeAttributes.writeTo(out);
+		out.append('>').append(LINE_SEPARATOR);
+		writeBlock(out, "connections", connections, 0);
+
+		if (background != null)
+		{
+			writeBlock(out, "background", background, saveCount);
+			writeBlock(out, "foreground", foreground, 0);
+		}
+		else
+		{
+			writeBlock(out, "foreground", foreground, saveCount);
+		}
+
+		out.append("</shape>").append(LINE_SEPARATOR);
+	}
+
+	/**
+	 * @return the stencil XML
+	 */
+	public String toString()
+	{
+		StringBuilder out = new StringBuilder();
+
+		try
+		{
+			writeTo(out);
+		}
+		catch (IOException e)
+		{
+			// StringBuilder doesn't throw
+			e.printStackTrace();
+		}
+
+		return out.toString();
+	}
+
+	private static void writeBlock(Appendable out, String name, Block block, int saves) throws IOException
+	{
+		block.close();
+
+		if (block.isEmpty() && saves == 0)
+		{
+			out.append("    <").append(name).append("/>").append(LINE_SEPARATOR);
+			return;
+		}
+
+		out.append("    <").append(name).append('>').append(LINE_SEPARATOR);
+
+		for (int i = 0; i < saves; i++)
+		{
+			out.append("        <save/>").append(LINE_SEPARATOR);
+		}
+
+		out.append(block.buffer);
+		out.append("    </").append(name).append('>').append(LINE_SEPARATOR);
+	}
+
+	/**
+	 * Formats a number for the stencil XML, the same as Double.toString without a trailing ".0"
+	 * @param value number to format
+	 * @return <b>value</b> in text form
+	 */
+	public static String formatNumber(double value)
+	{
+		return trimZeroDecimal(Double.toString(value));
+	}
+
+	/**
+	 * Drops a trailing ".0" (or "..0") from <b>value</b>, like the former post-processing of the library XML did with every attribute value
+	 */
+	private static String trimZeroDecimal(String value)
+	{
+		int length = value.length();
+
+		if (length >= 2 && value.charAt(length - 1) == '0' && value.charAt(length - 2) == '.')
+		{
+			int end = length - 2;
+
+			while (end > 0 && value.charAt(end - 1) == '.')
+			{
+				end--;
+			}
+
+			return value.substring(0, end);
+		}
+
+		return value;
+	}
+
+	private static void appendEscaped(Appendable out, String value) throws IOException
+	{
+		for (int i = 0; i < value.length(); i++)
+		{
+			char c = value.charAt(i);
+
+			switch (c)
+			{
+				case '&':
+					out.append("&amp;");
+					break;
+				case '<':
+					out.append("&lt;");
+					break;
+				case '>':
+					out.append("&gt;");
+					break;
+				case '"':
+					out.append("&quot;");
+					break;
+				default:
+					if (c < 0x20)
+					{
+						out.append("&#").append(Integer.toString(c)).append(';');
+					}
+					else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1)))
+					{
+						out.append("&#").append(Integer.toString(Character.toCodePoint(c, value.charAt(++i)))).append(';');
+					}
+					else
+					{
+						out.append(c);
+					}
+			}
+		}
+	}
+
+	/**
+	 * Attributes of an element, written sorted by name
+	 */
+	private static class Attributes
+	{
+		private final ArrayList<String> names = new ArrayList<String>(6);
+		private final ArrayList<String> values = new ArrayList<String>(6);
+
+		void set(String name, String value)
+		{
+			int index = names.indexOf(name);
+
+			if (index >= 0)
+			{
+				values.set(index, value);
+				return;
+			}
+
+			// insertion keeps the names sorted
+			index = names.size();
+
+			while (index > 0 && names.get(index - 1).compareTo(name) > 0)
+			{
+				index--;
+			}
+
+			names.add(index, name);
+			values.add(index, value);
+		}
+
+		void writeTo(Appendable out) throws IOException
+		{
+			for (int i = 0; i < names.size(); i++)
+			{
+				out.append(' ').append(names.get(i)).append("=\"");
+				appendEscaped(out, trimZeroDecimal(values.get(i)));
+				out.append('"');
+			}
+		}
+
+		void clear()
+		{
+			names.clear();
+			values.clear();
+		}
+	}
+
+	/**
+	 * A sequence of elements inside the stencil, like the content of the foreground. An element is written as soon as its
+	 * first child is started or it's ended, so attributes must be set right after startElement.
+	 */
+	public static class Block
+	{
+		private final StringBuilder buffer = new StringBuilder();
+		private final ArrayList<String> openElements = new ArrayList<String>();
+		private final Attributes attributes = new Attributes();
+		private final int depth;
+
+		// names and buffer offsets of the top level elements
+		private final ArrayList<String> elementNames = new ArrayList<String>();
+		private final ArrayList<Integer> elementStarts = new ArrayList<Integer>();
+
+		// name of the started element that isn't written yet
+		private String pending = null;
+
+		private Block(int depth)
+		{
+			this.depth = depth;
+		}
+
+		/**
+		 * Starts a new element, as the child of the current element if there is one
+		 * @param name element name
+		 * @return this block
+		 */
+		public Block startElement(String name)
+		{
+			if (pending != null)
+			{
+				writePending(false);
+			}
+
+			if (openElements.isEmpty())
+			{
+				elementNames.add(name);
+				elementStarts.add(buffer.length());
+			}
+
+			pending = name;
+			openElements.add(name);
+
+			return this;
+		}
+
+		/**
+		 * Sets an attribute of the element started last
+		 */
+		public Block attribute(String name, String value)
+		{
+			attributes.set(name, value);
+
+			return this;
+		}
+
+		/**
+		 * Sets a numeric attribute of the element started last
+		 */
+		public Block attribute(String name, double value)
+		{
+			attributes.set(name, formatNumber(value));
+
+			return this;
+		}
+
+		/**
+		 * Ends the current element
+		 * @return this block
+		 */
+		public Block endElement()
+		{
+			String name = openElements.remove(openElements.size() - 1);
+
+			if (pending != null)
+			{
+				writePending(true);
+			}
+			else
+			{
+				indent(openElements.size());
+				buffer.append("</").append(name).append('>').append(LINE_SEPARATOR);
+			}
+
+			return this;
+		}
+
+		/**
+		 * Adds an element without attributes and children
+		 * @param name element name
+		 * @return this block
+		 */
+		public Block element(String name)
+		{
+			return startElement(name).endElement();
+		}
+
+		/**
+		 * Adds a path element with the segments of <b>path</b> as its children. The segments are written straight into
+		 * the block, with their attributes in the sorted order and the numbers formatted like numeric attributes.
+		 * @param path segments of the path, with rounded coordinates
+		 * @return this block
+		 */
+		public Block path(StencilPath path)
+		{
+			if (path.getOpCount() == 0)
+			{
+				return element("path");
+			}
+
+			startElement("path");
+			writePending(false);
+			int level = openElements.size();
+			int c = 0;
+
+			for (int i = 0; i < path.getOpCount(); i++)
+			{
+				byte op = path.getOp(i);
+				indent(level);
+
+				switch (op)
+				{
+					case StencilPath.MOVE:
+					case StencilPath.LINE:
+						buffer.append((op == StencilPath.MOVE) ? "<move" : "<line");
+						appendAttribute("x", path.getCoord(c));
+						appendAttribute("y", path.getCoord(c + 1));
+						break;
+					case StencilPath.QUAD:
+						buffer.append("<quad");
+						appendAttribute("x1", path.getCoord(c));
+						appendAttribute("x2", path.getCoord(c + 2));
+						appendAttribute("y1", path.getCoord(c + 1));
+						appendAttribute("y2", path.getCoord(c + 3));
+						break;
+					case StencilPath.CURVE:
+						buffer.append("<curve");
+						appendAttribute("x1", path.getCoord(c));
+						appendAttribute("x2", path.getCoord(c + 2));
+						appendAttribute("x3", path.getCoord(c + 4));
+						appendAttribute("y1", path.getCoord(c + 1));
+						appendAttribute("y2", path.getCoord(c + 3));
+						appendAttribute("y3", path.getCoord(c + 5));
+						break;
+					case StencilPath.ARC:
+						buffer.append("<arc");
+						appendAttribute("large-arc-flag", path.getCoord(c + 3));
+						appendAttribute("rx", path.getCoord(c));
+						appendAttribute("ry", path.getCoord(c + 1));
+						appendAttribute("sweep-flag", path.getCoord(c + 4));
+						appendAttribute("x", path.getCoord(c + 5));
+						appendAttribute("x-axis-rotation", path.getCoord(c + 2));
+						appendAttribute("y", path.getCoord(c + 6));
+						break;
+					default:
+						buffer.append("<close");
+				}
+
+				buffer.append("/>").append(LINE_SEPARATOR);
+				c += StencilPath.getCoordCount(op);
+			}
+
+			return endElement();
+		}
+
+		// appends a numeric attribute without formatting it to a string first, the same text as attribute(name, value)
+		private void appendAttribute(String name, double value)
+		{
+			buffer.append(' ').append(name).append("=\"").append(value);
+			int length = buffer.length();
+
+			if (buffer.charAt(length - 1) == '0' && buffer.charAt(length - 2) == '.')
+			{
+				buffer.setLength(length - 2);
+			}
+
+			buffer.append('"');
+		}
+
+		/**
+		 * @return true if nothing was added to the block
+		 */
+		public boolean isEmpty()
+		{
+			return buffer.length() == 0 && pending == null;
+		}
+
+		/**
+		 * @return the number of top level elements
+		 */
+		int getElementCount()
+		{
+			return elementNames.size();
+		}
+
+		/**
+		 * @param index index of a top level element
+		 * @return the name of the element
+		 */
+		String getElementName(int index)
+		{
+			return elementNames.get(index);
+		}
+
+		/**
+		 * The block must be closed.
+		 * @param index index of a top level element
+		 * @return the text of the element with its children, as it's written
+		 */
+		String getElementText(int index)
+		{
+			int end = (index + 1 < elementStarts.size()) ? elementStarts.get(index + 1) : buffer.length();
+
+			return buffer.substring(elementStarts.get(index), end);
+		}
+
+		/**
+		 * Replaces the content of the block
+		 * @param names names of the new top level elements
+		 * @param texts texts of the new top level elements, see getElementText
+		 */
+		void setElements(ArrayList<String> names, ArrayList<String> texts)
+		{
+			close();
+			buffer.setLength(0);
+			elementNames.clear();
+			elementStarts.clear();
+
+			for (int i = 0; i < names.size(); i++)
+			{
+				elementNames.add(names.get(i));
+				elementStarts.add(buffer.length());
+				buffer.append(texts.get(i));
+			}
+		}
+
+		// ends the elements that were left open
+		void close()
+		{
+			while (!openElements.isEmpty())
+			{
+				endElement();
+			}
+		}
+
+		private void writePending(boolean isEmpty)
+		{
+			indent(openElements.size() - ((isEmpty) ? 0 : 1));
+			buffer.append('<').append(pending);
+
+			try
+			{
+				attributes.writeTo(buffer);
+			}
+			catch (IOException e)
+			{
+				// StringBuilder doesn't throw
+				e.printStackTrace();
+			}
+
+			buffer.append((isEmpty) ? "/>" : ">").append(LINE_SEPARATOR);
+			attributes.clear();
+			pending = null;
+		}
+
+		private void indent(int level)
+		{
+			for (int i = 0; i < (depth + level) * 4; i++)
+			{
+				buffer.append(' ');
+			}
+		}
+	}
+}
@@ -0,0 +1,250 @@
+/**
+ * Copyright (c) 2013, JGraph
+ */
+
+package com.mxgraph.svg2xml;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+/**
+ * Rewrites the style elements and the save/restore points of a stencil's foreground. The conversion writes the style
+ * difference to the previous shape, and when a shape drops a style property, it restores the default style and
+ * writes the complete style of the shape again.
+ * <p>
+ * The optimizer first computes the canvas state every drawing element of the foreground sees. Then it writes the
+ * foreground again, with only the style elements that change the state between two drawing elements. When a
+ * property must be dropped, it restores to whichever earlier state needs the fewest style elements afterwards, by
+ * inserting a save at the point where the canvas had that state. Every drawing element sees the same state as before,
+ * so the stencil is drawn the same. If the result isn't smaller, the stencil is left as it is.
+ */
+public class StyleOptimizer
+{
+	// style elements, in the order appendStyle writes them. Each one sets a single property of the canvas state.
+	private static final String[] STYLE_NAMES = {"strokecolor", "fillcolor", "strokewidth", "linejoin", "linecap",
+			"miterlimit", "dashpattern", "dashed", "alpha", "strokealpha", "fillalpha", "fontcolor", "fontsize",
+			"fontfamily", "fontstyle"};
+
+	private static final HashSet<String> STYLE_NAME_SET = new HashSet<String>(Arrays.asList(STYLE_NAMES));
+
+	// cost of a restore: the save, the restore and the shadow workaround (rect and stroke) after it
+	private static final int RESTORE_COST = 4;
+
+	// number of recent save points that are considered for a restore, besides the default style
+	private static final int MAX_SAVE_POINTS = 32;
+
+	/**
+	 * An earlier position in the rewritten foreground where a save can be inserted
+	 */
+	private static class SavePoint
+	{
+		// index of the element before which the save is inserted, -1 for the saves in front of the first block
+		final int index;
+
+		// canvas state at that position
+		final Map<String, String> state;
+
+		SavePoint(int index, Map<String, String> state)
+		{
+			this.index = index;
+			this.state = state;
+		}
+	}
+
+	/**
+	 * Rewrites the foreground of <b>writer</b>, see the class description
+	 * @param writer stencil with all of its elements added
+	 */
+	public static void optimize(StencilWriter writer)
+	{
+		StencilWriter.Block foreground = writer.getForeground();
+		StencilWriter.Block background = writer.getBackground();
+		foreground.close();
+
+		// the style set in the background is the state at the beginning of the foreground, the restores go back to the default style
+		Map<String, String> startState = new HashMap<String, String>();
+
+		if (background != null)
+		{
+			background.close();
+
+			for (int i = 0; i < background.getElementCount(); i++)
+			{
+				if (STYLE_NAME_SET.contains(background.getElementName(i)))
+				{
+					startState.put(background.getElementName(i), background.getElementText(i));
+				}
+			}
+		}
+
+		// the drawing elements and the state each of them sees
+		ArrayList<String> drawNames = new ArrayList<String>();
+		ArrayList<String> drawTexts = new ArrayList<String>();
+		ArrayList<Map<String, String>> drawStates = new ArrayList<Map<String, String>>();
+		Map<String, String> state = startState;
+		boolean isShared = true;
+		String workaroundRect = StencilWriter.getElementText("rect");
+		String workaroundStroke = StencilWriter.getElementText("stroke");
+
+		for (int i = 0; i < foreground.getElementCount(); i++)
+		{
+			String name = foreground.getElementName(i);
+
+			if (STYLE_NAME_SET.contains(name))
+			{
+				if (isShared)
+				{
+					state = new HashMap<String, String>(state);
+					isShared = false;
+				}
+
+				state.put(name, foreground.getElementText(i));
+			}
+			else if (name.equals("restore"))
+			{
+				state = new HashMap<String, String>();
+				isShared = false;
+
+				// the shadow workaround is written again after every restore
+				if (i + 2 < foreground.getElementCount() && foreground.getElementText(i + 1).equals(workaroundRect)
+						&& foreground.getElementText(i + 2).equals(workaroundStroke))
+				{
+					i += 2;
+				}
+			}
+			else if (name.equals("save"))
+			{
+				// not written by the conversion
+				return;
+			}
+			else
+			{
+				drawNames.add(name);
+				drawTexts.add(foreground.getElementText(i));
+				drawStates.add(state);
+				isShared = true;
+			}
+		}
+
+		ArrayList<String> names = new ArrayList<String>();
+		ArrayList<String> texts = new ArrayList<String>();
+		ArrayList<SavePoint> savePoints = new ArrayList<SavePoint>();
+		SavePoint defaultStyle = new SavePoint(-1, new HashMap<String, String>());
+		int defaultSaves = 0;
+		state = startState;
+		savePoints.add(new SavePoint(0, startState));
+
+		for (int d = 0; d < drawTexts.size(); d++)
+		{
+			Map<String, String> required = drawStates.get(d);
+
+			if (!state.equals(required))
+			{
+				int bestCost = getSetCount(state, required);
+				SavePoint best = null;
+				int bestIndex = savePoints.size();
+
+				for (int i = savePoints.size() - 1; i >= Math.max(savePoints.size() - MAX_SAVE_POINTS, 0); i--)
+				{
+					int cost = RESTORE_COST + getSetCount(savePoints.get(i).state, required);
+
+					if (cost < bestCost)
+					{
+						bestCost = cost;
+						best = savePoints.get(i);
+						bestIndex = i;
+					}
+				}
+
+				if (RESTORE_COST + getSetCount(defaultStyle.state, required) < bestCost)
+				{
+					best = defaultStyle;
+				}
+
+				if (best != null)
+				{
+					if (best == defaultStyle)
+					{
+						defaultSaves++;
+						savePoints.clear();
+					}
+					else
+					{
+						names.add(best.index, "save");
+						texts.add(best.index, StencilWriter.getElementText("save"));
+
+						// the later save points are inside the restored part, the save point itself can be used again
+						while (savePoints.size() > bestIndex + 1)
+						{
+							savePoints.remove(savePoints.size() - 1);
+						}
+					}
+
+					names.add("restore");
+					texts.add(StencilWriter.getElementText("restore"));
+
+					//NOTE the shadow workaround of the conversion, remove it once the bug is fixed
+					names.add("rect");
+					texts.add(workaroundRect);
+					names.add("stroke");
+					texts.add(workaroundStroke);
+					state = best.state;
+				}
+
+				savePoints.add(new SavePoint(names.size(), state));
+
+				for (String name : STYLE_NAMES)
+				{
+					String text = required.get(name);
+
+					if (text != null && !text.equals(state.get(name)))
+					{
+						names.add(name);
+						texts.add(text);
+					}
+				}
+
+				state = required;
+			}
+
+			names.add(drawNames.get(d));
+			texts.add(drawTexts.get(d));
+		}
+
+		if (names.size() + defaultSaves < foreground.getElementCount() + writer.getSaveCount())
+		{
+			foreground.setElements(names, texts);
+			writer.setSaveCount(defaultSaves);
+		}
+	}
+
+	/**
+	 * @return the number of style elements that turn <b>state</b> into <b>required</b>, or a very high number
+	 * if <b>state</b> has a property <b>required</b> doesn't have, as that can't be removed without a restore
+	 */
+	private static int getSetCount(Map<String, String> state, Map<String, String> required)
+	{
+		int count = 0;
+
+		for (String name : state.keySet())
+		{
+			if (!required.containsKey(name))
+			{
+				return Integer.MAX_VALUE / 2;
+			}
+		}
+
+		for (Map.Entry<String, String> entry : required.entrySet())
+		{
+			if (!entry.getValue().equals(state.get(entry.getKey())))
+			{
+				count++;
+			}
+		}
+
+		return count;
+	}
+}
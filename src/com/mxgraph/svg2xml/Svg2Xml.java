@@ -5,33 +5,22 @@
 
 package com.mxgraph.svg2xml;
 
-import java.awt.Color;
 import java.awt.geom.Rectangle2D;
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
-import java.io.StringReader;
 import java.util.ArrayList;
-import java.util.Hashtable;
-import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.swing.JOptionPane;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 
@@ -40,9 +29,7 @@ import org.w3c.dom.Element;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
-import org.xml.sax.InputSource;
 
-import com.mxgraph.shape.mxStencilShape;
 import com.mxgraph.svg2xml.XmlConfig.aspectType;
 
 /**
@@ -50,26 +37,52 @@ import com.mxgraph.svg2xml.XmlConfig.aspectType;
  */
 public class Svg2Xml
 {
-	// source SVG document that is parsed
-	private Document srcSVGDoc;
-
-	// config doc of the stencil group
-	private Document groupConfigDoc;
-
-	// config doc of the individual stencil that is currently parsed
-	private Document stencilConfigDoc;
-
-	// configuration of the stencil XML that is currently generated
-	private XmlConfig destConfigDoc = null;
+	// settings of the conversion, every stencil gets its own XmlConfig based on these
+	private Svg2XmlOptions options;
 
 	//user identifier, mxGraph is default, but every user should come up with his own identifier, to avoid conflicts with mxGraph standard stencils and shapes
 	private final String stencilUserMarker = "mxgraph";
 	
 	private String sourceFolder = "";
 
+	// folders where the libraries were written
+	private ArrayList<File> destPaths = new ArrayList<File>();
+
+	// SVG files that couldn't be converted, they are missing from their libraries
+	private ArrayList<File> failedFiles = new ArrayList<File>();
+
+	// cache of converted stencils, null if not used
+	private ConversionCache cache = null;
+
+	// parsed config files, shared by the stencils
+	private final ConfigRegistry configs = new ConfigRegistry();
+
+	// style properties that need a restore of the default style if a shape drops them
+	private static final int RESTORE_PROPERTIES = XmlStyle.STROKE_COLOR | XmlStyle.FILL_COLOR | XmlStyle.STROKE_WIDTH
+			| XmlStyle.LINE_JOIN | XmlStyle.LINE_CAP | XmlStyle.MITER_LIMIT | XmlStyle.DASH_PATTERN | XmlStyle.DASHED
+			| XmlStyle.ALPHA | XmlStyle.STROKE_ALPHA | XmlStyle.FILL_ALPHA | XmlStyle.FONT_COLOR | XmlStyle.BOLD
+			| XmlStyle.ITALIC | XmlStyle.UNDERLINE | XmlStyle.FONT_SIZE | XmlStyle.FONT_FAMILY;
+
+	/**
+	 * Converts the files selected in <b>gui</b> and reports the result in a dialog
+	 * @param gui the GUI holding the selection and the settings
+	 */
 	public Svg2Xml(Svg2XmlGui gui)
 	{
-		destConfigDoc = new XmlConfig(gui);
+		this(gui.getOptions());
+
+		JOptionPane.showMessageDialog(gui.getFrame(), "Conversion completed.\nThe libraries are genereted in:" + getDestFolders());
+	}
+
+	/**
+	 * Converts <b>options.getSourceFiles()</b> to stencil libraries in <b>options.getDestPath()</b>. Doesn't need a GUI.
+	 * If <b>options.getThreads()</b> is more than 1, the stencils are converted in parallel, but the libraries are
+	 * assembled in the original file order, so the result is the same as with a single thread.
+	 * @param options conversion settings
+	 */
+	public Svg2Xml(Svg2XmlOptions options)
+	{
+		this.options = options;
 		// order of actions:
 		//1. Config settings are given default values combined with the settings from the UI.
 		//2. check if additional config files exist. Those are the group config and individual stencil config files in XML format. If they exist, they are combined and the config settings are altered accordingly.
@@ -94,19 +107,20 @@ public class Svg2Xml
 
 		// TODO add SVG viewbox support, or manual setting of viewbox 
 
-		ArrayList<File> destPaths = new ArrayList<File>();
-
 		boolean isLastInGroup = true;
 		boolean isNewGroup = true;
-		String groupXml = new String();
-		ByteArrayOutputStream groupBaos = new ByteArrayOutputStream(); 
+		ArrayList<ScaleTarget> targets = options.getScaleTargets();
+		LibraryWriter[] libraries = new LibraryWriter[targets.size()];
 		String groupName = stencilUserMarker;
 		boolean areFiles = false;
 		
 		//checks if files are selected too, or only folders
-		for (int i = 0; i < gui.sourceFileListComponent.getSelectedFiles().length; i++)
+		File[] selectedFiles = options.getSelectedFiles();
+		final File[] sourceFiles = options.getSourceFiles();
+
+		for (int i = 0; i < selectedFiles.length; i++)
 		{
-			if (gui.sourceFileListComponent.getSelectedFiles()[i].isFile())
+			if (selectedFiles[i].isFile())
 			{
 				areFiles = true;
 			}
@@ -115,82 +129,390 @@ public class Svg2Xml
 		//if files are selected too, the parent folder is the root of the group naming
 		if (areFiles)
 		{
-			sourceFolder = gui.sourceFileListComponent.getSelectedFiles()[0].getParentFile().getParent();
+			sourceFolder = selectedFiles[0].getParentFile().getParent();
 		}
 		else
 		{
-			sourceFolder = gui.sourceFileListComponent.getSelectedFiles()[0].getParent();
+			sourceFolder = selectedFiles[0].getParent();
 		}
 		
-		boolean isGroupNameInConfig = false;
-		String lastGroupName = "";
+		ExecutorService pool = null;
+		ArrayList<Future<ConvertedStencil>> pending = new ArrayList<Future<ConvertedStencil>>();
+		int submitted = 0;
 
-		// construct destConfigDoc based on default values, groupConfigDoc and stencilConfigDoc
-		for (int i = 0; i < gui.sourceFiles.length; i++)
+		if (options.getThreads() > 1)
 		{
-			groupBaos = new ByteArrayOutputStream(); 
-			isLastInGroup = false;
-			isNewGroup = true;
+			pool = Executors.newFixedThreadPool(options.getThreads());
+		}
 
-			groupName = stencilUserMarker;
-			
-			String shapeName = gui.sourceFiles[i].getName();
-			shapeName = shapeName.substring(0, shapeName.lastIndexOf("."));
-			int configCount = 0;
+		if (options.getCacheFolder() != null)
+		{
+			cache = new ConversionCache(options.getCacheFolder());
+		}
+
+		ConversionMetrics metrics = (options.getMetricsFormat() != null) ? new ConversionMetrics() : null;
+
+		try
+		{
+			for (int i = 0; i < sourceFiles.length; i++)
+			{
+				ConvertedStencil stencil = null;
+
+				if (pool != null)
+				{
+					// keeps a limited number of stencils ahead of the one being assembled, so the finished but not yet written stencils don't pile up
+					while (submitted < sourceFiles.length && submitted < i + options.getThreads() * 4)
+					{
+						final File sourceFile = sourceFiles[submitted++];
+
+						pending.add(pool.submit(new Callable<ConvertedStencil>()
+						{
+							public ConvertedStencil call()
+							{
+								return convertCachedStencil(sourceFile);
+							}
+						}));
+					}
+
+					try
+					{
+						stencil = pending.set(i, null).get();
+					}
+					catch (Exception e)
+					{
+						e.printStackTrace();
+						stencil = new ConvertedStencil();
+					}
+				}
+				else
+				{
+					stencil = convertCachedStencil(sourceFiles[i]);
+				}
+
+				if (stencil.xml == null)
+				{
+					failedFiles.add(sourceFiles[i]);
+				}
+
+				if (metrics != null)
+				{
+					if (stencil.metrics != null)
+					{
+						metrics.add(stencil.metrics);
+					}
+					else if (stencil.xml == null)
+					{
+						// the thread converting it threw before the stencil had metrics
+						metrics.addFailed(sourceFiles[i].getPath());
+					}
+					else
+					{
+						metrics.addCached();
+					}
+				}
+
+				//21. write the document to a file
+				//check if a new group is started
+				if (i == 0)
+				{
+					isNewGroup = true;
+				}
+				else
+				{
+					String currParent = sourceFiles[i].getParent();
+					String oldParent = sourceFiles[i-1].getParent();
+
+					if(currParent.equals(oldParent) && i!=0)
+					{
+						isNewGroup = false;
+					}
+					else
+					{
+						isNewGroup = true;
+					}
+				}
+
+				//if this is the last file in the group
+				if (i + 1 == sourceFiles.length)
+				{
+					isLastInGroup = true;
+				}
+				else
+				{
+					String currParent = sourceFiles[i].getParent();
+					String nextParent = sourceFiles[i+1].getParent();
+
+					if(currParent.equals(nextParent))
+					{
+						isLastInGroup = false;
+					}
+					else
+					{
+						isLastInGroup = true;
+					}
+				}
+
+				File currFile = new File(sourceFiles[i].getAbsolutePath());
+
+				if (isNewGroup)
+				{
+					groupName = stencil.groupName;
+
+					//if group name wasn't in config, generate it based on folder structure
+					if (groupName == null)
+					{
+						String fullStr = currFile.getParent().toLowerCase();
+						String currName = fullStr.replace(sourceFolder.toLowerCase(), "");
+						currName = currName.replace(File.separator, ".");
+						
+						groupName = stencilUserMarker + currName;
+					}
+
+					for (int t = 0; t < targets.size(); t++)
+					{
+						libraries[t] = openLibrary(groupName, targets.get(t));
+					}
+				}
+
+				for (int t = 0; t < targets.size(); t++)
+				{
+					// the stencil goes to the library file right away, so the library isn't kept in memory
+					if (libraries[t] != null && stencil.xml != null)
+					{
+						try
+						{
+							libraries[t].append(stencil.xml[t]);
+						}
+						catch (IOException e)
+						{
+							e.printStackTrace();
+						}
+					}
+
+					if (isLastInGroup && libraries[t] != null)
+					{
+						try
+						{
+							libraries[t].close();
+						}
+						catch (IOException e)
+						{
+							e.printStackTrace();
+						}
 
-			// looking for a group config file
-			String groupConfigString = null;
+						libraries[t] = null;
+					}
+				}
+			}
+		}
+		finally
+		{
+			// the workers aren't daemon threads, they would keep the JVM running if the loop above fails
+			if (pool != null)
+			{
+				pool.shutdown();
+			}
+		}
 
-			String configNameString = gui.sourceFiles[i].getParent();
-			configNameString += "_config.xml";
-			File testFile = new File(configNameString);
+		if (metrics != null)
+		{
+			metrics.finish();
+			File metricsFile = new File(options.getDestPath(), "conversion-metrics." + options.getMetricsFormat());
 
-			if (testFile.exists())
+			try
 			{
-				groupConfigString = readFile(configNameString);
-				configCount++;
+				metrics.write(metricsFile, options.getMetricsFormat());
+				System.out.println("metrics written to " + metricsFile.getAbsolutePath());
+			}
+			catch (IOException e)
+			{
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Creates the library file of a group in the destination folder, or in the folder of the target if the run has
+	 * several targets
+	 * @param groupName name of the group, its parts are used as folders
+	 * @param target scale target the library is written at
+	 * @return writer of the library, or null if the file couldn't be created
+	 */
+	private LibraryWriter openLibrary(String groupName, ScaleTarget target)
+	{
+		File destRoot = options.getDestPath();
+
+		if (!options.getTargets().isEmpty())
+		{
+			destRoot = new File(destRoot, target.getName());
+		}
+
+		String currentDestPath = destRoot.getAbsolutePath() + File.separator + groupName.replace(".", File.separator) + ".xml";
+
+		currentDestPath = currentDestPath.toLowerCase();
+		currentDestPath = currentDestPath.replaceAll("\\s", "_");
+		File myDestFile = new File(currentDestPath);
+
+		try
+		{
+			LibraryWriter library = new LibraryWriter(myDestFile, groupName, options.getDedupMode());
+			File myDestRoot = myDestFile.getParentFile();
+
+			if (!destPaths.contains(myDestRoot))
+			{
+				destPaths.add(myDestRoot);
+			}
+
+			return library;
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+
+		return null;
+	}
+
+	/**
+	 * Takes the stencil from the cache if it's there, else converts it and stores it in the cache.
+	 * Works like convertStencil if there is no cache.
+	 * @param sourceFile SVG file
+	 * @return the stencil XML and the group name from the group config. The XML is null if the conversion failed.
+	 */
+	private ConvertedStencil convertCachedStencil(File sourceFile)
+	{
+		if (cache == null)
+		{
+			return convertStencil(sourceFile);
+		}
+
+		// every target has its own entry, the stencil is converted again if one of them is missing
+		ArrayList<ScaleTarget> targets = options.getScaleTargets();
+		String[] keys = new String[targets.size()];
+
+		try
+		{
+			ConvertedStencil cached = new ConvertedStencil();
+			cached.xml = new String[targets.size()];
+			boolean isCached = true;
+
+			for (int t = 0; t < targets.size(); t++)
+			{
+				keys[t] = cache.getKey(sourceFile, configs.get(getGroupConfigFile(sourceFile)), configs.get(getStencilConfigFile(sourceFile)), options, targets.get(t));
+				ConvertedStencil entry = cache.get(keys[t]);
+
+				if (entry != null)
+				{
+					cached.groupName = entry.groupName;
+					cached.xml[t] = entry.xml[0];
+				}
+				else
+				{
+					isCached = false;
+				}
+			}
+
+			if (isCached)
+			{
+				System.out.println("using cached " + sourceFile.getName());
+				return cached;
+			}
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+			keys = null;
+		}
+
+		ConvertedStencil result = convertStencil(sourceFile);
+
+		if (keys != null && result.xml != null)
+		{
+			for (int t = 0; t < targets.size(); t++)
+			{
+				cache.put(keys[t], result, t);
 			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * @param sourceFile SVG file
+	 * @return the group config file of <b>sourceFile</b> (it may not exist)
+	 */
+	private static File getGroupConfigFile(File sourceFile)
+	{
+		return new File(sourceFile.getParent() + "_config.xml");
+	}
 
-			testFile = null;
+	/**
+	 * @param sourceFile SVG file
+	 * @return the stencil config file of <b>sourceFile</b> (it may not exist)
+	 */
+	private static File getStencilConfigFile(File sourceFile)
+	{
+		String configNameString = sourceFile.getAbsolutePath();
+		int pointIndex = configNameString.lastIndexOf('.');
+
+		return new File(configNameString.substring(0, pointIndex) + "_config.xml");
+	}
+
+	/**
+	 * Converts a single SVG file, using its group and stencil config files if they exist.
+	 * Only local state is used, so stencils can be converted in parallel.
+	 * @param sourceFile SVG file
+	 * @return the stencil XML and the group name from the group config. The XML is null if the conversion failed.
+	 */
+	private ConvertedStencil convertStencil(File sourceFile)
+	{
+		ConvertedStencil result = new ConvertedStencil();
+		StencilMetrics metrics = new StencilMetrics(sourceFile.getPath());
+		result.metrics = metrics;
 
-			// looking for a stencil config file
-			String stencilConfigString = null;
+		// every stencil starts from the settings of the run, so config files don't affect the following stencils
+		XmlConfig destConfigDoc = new XmlConfig(options);
 
-			configNameString = gui.sourceFiles[i].getAbsolutePath();
-			int pointIndex = configNameString.lastIndexOf('.');
-			configNameString = configNameString.substring(0, pointIndex) + "_config.xml";
+		try
+		{
+			String shapeName = sourceFile.getName();
+			shapeName = shapeName.substring(0, shapeName.lastIndexOf("."));
+			int configCount = 0;
 
-			testFile = new File(configNameString);
+			// the group config is shared by all SVGs of the folder, the registry parses it only once
+			ConfigFile groupConfig = configs.get(getGroupConfigFile(sourceFile));
 
-			if (testFile.exists())
+			if (groupConfig != null)
 			{
-				stencilConfigString = readFile(configNameString);
 				configCount++;
 			}
 
-			testFile = null;
+			ConfigFile stencilConfig = configs.get(getStencilConfigFile(sourceFile));
+
+			if (stencilConfig != null)
+			{
+				configCount++;
+			}
 
-			// now we have potentially both config files in String format
 			System.out.println("parsing " + shapeName + " using " + configCount + " configs");
 
 			ArrayList<Connection> groupConnection = null;
 
-			if (groupConfigString != null)
+			if (groupConfig != null)
 			{
-				groupConfigDoc = parseXml(groupConfigString);
-
-				if (groupConfigDoc.getElementsByTagName("shape").getLength() > 0)
+				if (!groupConfig.isValid())
 				{
-					Node groupConfigRoot = groupConfigDoc.getElementsByTagName("shape").item(0);
-
-					Element groupConfigRootElement = (Element) groupConfigRoot;
+					throw new IllegalArgumentException("the group config of " + shapeName + " can't be parsed");
+				}
 
-					if (groupConfigRootElement.getAttribute("background").equals("1"))
+				if (groupConfig.hasShape())
+				{
+					if (groupConfig.getBackground().equals("1"))
 					{
 						destConfigDoc.setBackground(true);
 					}
 
-					String aspectRatio = groupConfigRootElement.getAttribute("aspect");
+					String aspectRatio = groupConfig.getAspect();
 
 					if (aspectRatio.toLowerCase().equals("fixed"))
 					{
@@ -201,38 +523,33 @@ public class Svg2Xml
 						destConfigDoc.setAspect(aspectType.VARIABLE);
 					}
 
-					if (groupConfigRootElement.getAttribute("groupname") != null && groupConfigRootElement.getAttribute("groupname") != "")
+					if (!groupConfig.getGroupName().equals(""))
 					{
-						groupName = groupConfigRootElement.getAttribute("groupname");
-						isGroupNameInConfig = true;
+						result.groupName = groupConfig.getGroupName();
 					}
 					//TODO implement strokewidth reading
 					//					strokeWidth = groupConfigRootElement.getAttribute("strokewidth");
-					groupConnection = getConstraintsFromXml(groupConfigString);
+					// copies, so the shared group connections aren't changed when local connections are added
+					groupConnection = groupConfig.getConnections();
 				}
 			}
 
 			ArrayList<Connection> stencilConnection = null;
 
-			if (stencilConfigString != null)
+			if (stencilConfig != null)
 			{
-				stencilConfigDoc = parseXml(stencilConfigString);
-
-				if (stencilConfigDoc != null && stencilConfigDoc.getElementsByTagName("shape").getLength() > 0)
+				if (stencilConfig.hasShape())
 				{
-					Node stencilConfigRoot = stencilConfigDoc.getElementsByTagName("shape").item(0);
-					Element stencilConfigRootElement = (Element) stencilConfigRoot;
-
-					if (stencilConfigRootElement.getAttribute("background").equals("1"))
+					if (stencilConfig.getBackground().equals("1"))
 					{
 						destConfigDoc.setBackground(true);
 					}
-					else if (stencilConfigRootElement.getAttribute("background").equals("0"))
+					else if (stencilConfig.getBackground().equals("0"))
 					{
 						destConfigDoc.setBackground(false);
 					}
 
-					String aspectRatio = stencilConfigRootElement.getAttribute("aspect");
+					String aspectRatio = stencilConfig.getAspect();
 
 					if (aspectRatio.toLowerCase().equals("fixed"))
 					{
@@ -246,7 +563,7 @@ public class Svg2Xml
 					//TODO implement strokewidth reading
 					//					strokeWidth = groupConfigRootElement.getAttribute("strokewidth");
 
-					stencilConnection = getConstraintsFromXml(stencilConfigString);
+					stencilConnection = stencilConfig.getConnections();
 				}
 			}
 
@@ -299,42 +616,55 @@ public class Svg2Xml
 			destConfigDoc.setConnection(finalConnection);
 
 			//3. the SVG needs to be flattened. This consists of parsing <defs> blocks and explicitly put them where needed. The second part is flattening groups. Inherit explicit style to all elements that are part of a group. After style inheritance remove group and put back element as individual shapes.
-			//TODO probably done more elegantly via DOM
-			String srcXmlString;
+			// flattening also reads out and removes the connection points
+			metrics.lap(StencilMetrics.CONFIG);
+			byte[] srcBytes = XmlInput.readBytes(sourceFile);
+			metrics.lap(StencilMetrics.READ_FILE);
+			SvgFlattener flattener = null;
 
-			srcXmlString = readFile(gui.sourceFiles[i].getAbsolutePath());
-			int doctypeIndex = srcXmlString.indexOf("<!DOCTYPE");
+			if (options.isStreamInput())
+			{
+				try
+				{
+					flattener = SvgStreamReader.read(srcBytes);
+				}
+				catch (Exception e)
+				{
+					System.out.println("can't stream " + shapeName + " (" + e.getMessage() + "), reading it as a document");
+				}
+			}
 
-			if (doctypeIndex>-1)
+			if (flattener == null)
 			{
-				// we have the <!DOCTYPE entry>
-				int doctypeEndIndex = srcXmlString.indexOf(">", doctypeIndex);
-				String tempXml = srcXmlString.substring(0, doctypeIndex) + srcXmlString.substring(doctypeEndIndex+1, srcXmlString.length());
-				srcXmlString = tempXml;
+				// the parser reads the bytes directly and skips the external DTD of a DOCTYPE
+				Document srcDoc = XmlInput.parse(srcBytes);
+				metrics.lap(StencilMetrics.PARSE_XML);
+				flattener = new SvgFlattener(srcDoc);
+				flattener.flatten();
 			}
 
-			srcSVGDoc = parseXml(srcXmlString);
-			srcSVGDoc = flattenSvg(srcSVGDoc);
-			
-			//TODO remove connection points
-			Connection svgConnects = getConnections(srcSVGDoc);
-			srcSVGDoc = removeConnections(srcSVGDoc);
+			Document srcSVGDoc = flattener.getDocument();
+			ArrayList<Element> srcElements = flattener.getElements();
+			Connection svgConnects = flattener.getConnection();
+			metrics.lap(StencilMetrics.FLATTEN_SVG);
 
 			//DEBUG printing source SVG after flattening
-//						System.out.println("************************************************");
-//						System.out.println("Document after flattening:");
-//						Svg2Xml.printDocument(srcSVGDoc, System.out);
+	//						System.out.println("************************************************");
+	//						System.out.println("Document after flattening:");
+	//						Svg2Xml.printDocument(srcSVGDoc, System.out);
 
-			mxStencilShape newShape = new mxStencilShape(srcSVGDoc);
-			Rectangle2D bounds = newShape.getBoundingBox();
+			// the geometry is read once, the bounds and the stencil elements are computed from it
+			StencilGeometry geometry = new StencilGeometry(srcElements);
+			Rectangle2D bounds = geometry.getBounds();
+			metrics.lap(StencilMetrics.BOUNDS);
 
 			//recalculate connections to relative coords
 			ArrayList<Constraint> constraints = svgConnects.getConstraints();
-			
+		
 			for (int j=0; j < constraints.size(); j++)
 			{
 				Constraint currConstraint = constraints.get(j);
-				
+			
 				double x = currConstraint.getX() - bounds.getMinX();
 				x = Math.round(x * 1000.0 / bounds.getWidth()) / 1000.0;
 				currConstraint.setX(x);
@@ -343,7 +673,7 @@ public class Svg2Xml
 				y = Math.round(y * 1000.0 / bounds.getHeight()) / 1000.0;
 				currConstraint.setY(y);
 			}
-			
+		
 			double stencilBoundsMinX = 0;
 			double stencilBoundsMinY = 0;
 			double stencilBoundsMaxX = 5;
@@ -384,268 +714,193 @@ public class Svg2Xml
 			destConfigDoc.setStencilBoundsMinX(stencilBoundsMinX);
 			destConfigDoc.setStencilBoundsMinY(stencilBoundsMinY);
 
-			//4. The destination XML backbone is created.
-			//5. The connections are parsed from the optional config files and they are added to the destination XML.
-			try
-			{
-				DocumentBuilderFactory docBuilderFactory = DocumentBuilderFactory.newInstance();
-				DocumentBuilder docBuild = docBuilderFactory.newDocumentBuilder();
+			// everything above is read once, the stencil is written at every target from it
+			ArrayList<ScaleTarget> targets = options.getScaleTargets();
+			String[] xml = new String[targets.size()];
 
-				Document destDoc = docBuild.newDocument();
-				createBackbone(destDoc, destConfigDoc, shapeName, srcSVGDoc, constraints);
+			for (int t = 0; t < targets.size(); t++)
+			{
+				destConfigDoc.setScaleTarget(targets.get(t));
+				xml[t] = writeStencil(destConfigDoc, shapeName, srcSVGDoc, srcElements, geometry, constraints, metrics);
+			}
 
-				//6. the default style is formed. (the style settings that are default if nothing is specified otherwise)
-				//7. get the first element from the SVG.
-				Node srcRoot = srcSVGDoc.getElementsByTagName("svg").item(0);
-				Element currElement = getFirstChildElement(srcRoot);
+			result.xml = xml;
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			metrics.setFailed(true);
+		}
 
-				//8. determine its style
-				XmlStyle defStyle = new XmlStyle();
-				XmlStyle currStyle = getStyle(currElement);
-				Map<String, String> styleDiff = getStyleDiff(defStyle, currStyle);
+		return result;
+	}
 
-				//9. add the needed style changes to the XML
-				if (currElement.getNodeName().equals("text") && destConfigDoc.isBackground())
-				{
-					appendStyle(destDoc.getElementsByTagName("background").item(0), styleDiff, destConfigDoc, currElement);
-				}
-				else
-				{
-					appendStyle(destDoc.getElementsByTagName("foreground").item(0), styleDiff, destConfigDoc, currElement);
-				}
+	/**
+	 * Writes a stencil from the geometry of its SVG. Only reads the SVG and the geometry, so it can be called again with
+	 * another scaling in <b>destConfigDoc</b>.
+	 * @param destConfigDoc settings of the stencil, with the stencil bounds and the scaling set
+	 * @param shapeName name of the stencil
+	 * @param srcSVGDoc the flattened SVG
+	 * @param srcElements the flattened elements of the SVG
+	 * @param geometry the geometry of <b>srcElements</b>
+	 * @param constraints connection constraints of the SVG, relative to the stencil bounds
+	 * @param metrics the shapes and write stages are added here
+	 * @return the stencil XML
+	 */
+	private String writeStencil(XmlConfig destConfigDoc, String shapeName, Document srcSVGDoc, ArrayList<Element> srcElements,
+			StencilGeometry geometry, ArrayList<Constraint> constraints, StencilMetrics metrics)
+	{
+		//4. The destination XML backbone is created.
+		//5. The connections are parsed from the optional config files and they are added to the destination XML.
+		StencilWriter destWriter = createBackbone(destConfigDoc, shapeName, srcSVGDoc, constraints);
 
-				//11. translate the element into XML format.
-				//12. if the stencil has a background then add it to the XML doc in the background block. Else, add it to the foreground block.
-				if (destConfigDoc.isBackground())
-				{
-					if (!currElement.getNodeName().equals("text"))
-					{
-						Node newChild = Shape2Xml.parse(currElement, destDoc, destConfigDoc);
+		//6. the default style is formed. (the style settings that are default if nothing is specified otherwise)
+		//7. get the first element from the SVG.
+		Element currElement = (srcElements.isEmpty()) ? null : srcElements.get(0);
 
-						if (newChild != null)
-						{
-							destDoc.getElementsByTagName("background").item(0).appendChild(newChild);
-							String str = getStrokeString(currStyle);
+		//8. determine its style
+		XmlStyle defStyle = new XmlStyle();
+		XmlStyle currStyle = getStyle(currElement);
+		int styleDiff = getStyleDiff(defStyle, currStyle);
 
-							if (str != null)
-							{
-								destDoc.getElementsByTagName("foreground").item(0).appendChild(destDoc.createElement(str));
-							}
-						}
-					}
-					else
+		//9. add the needed style changes to the XML
+		if (currElement.getNodeName().equals("text") && destConfigDoc.isBackground())
+		{
+			appendStyle(destWriter.getBackground(), currStyle, styleDiff, destConfigDoc, currElement);
+		}
+		else
+		{
+			appendStyle(destWriter.getForeground(), currStyle, styleDiff, destConfigDoc, currElement);
+		}
+
+		//11. translate the element into XML format.
+		//12. if the stencil has a background then add it to the XML doc in the background block. Else, add it to the foreground block.
+		if (destConfigDoc.isBackground())
+		{
+			if (!currElement.getNodeName().equals("text"))
+			{
+				if (Shape2Xml.parse(geometry.getShape(0), destWriter.getBackground(), destConfigDoc))
+				{
+					String str = getStrokeString(currStyle);
+
+					if (str != null)
 					{
-						//text node
-						Shape2Xml.parseText(currElement, destDoc, destConfigDoc, true);
+						destWriter.getForeground().element(str);
 					}
 				}
-				else
+			}
+			else
+			{
+				//text node
+				Shape2Xml.parseText(currElement, destWriter, destConfigDoc, true);
+			}
+		}
+		else
+		{
+			if (!currElement.getNodeName().equals("text"))
+			{
+				if (Shape2Xml.parse(geometry.getShape(0), destWriter.getForeground(), destConfigDoc))
 				{
-					if (!currElement.getNodeName().equals("text"))
-					{
-						Element el = Shape2Xml.parse(currElement, destDoc, destConfigDoc);
-						if (el != null)
-						{
-							destDoc.getElementsByTagName("foreground").item(0).appendChild(el);
-							String str = getStrokeString(currStyle);
+					String str = getStrokeString(currStyle);
 
-							if (str != null)
-							{
-								destDoc.getElementsByTagName("foreground").item(0).appendChild(destDoc.createElement(str));
-							}
-						}
-					}
-					else
+					if (str != null)
 					{
-						//text node
-						Shape2Xml.parseText(currElement, destDoc, destConfigDoc, false);
+						destWriter.getForeground().element(str);
 					}
 				}
+			}
+			else
+			{
+				//text node
+				Shape2Xml.parseText(currElement, destWriter, destConfigDoc, false);
+			}
+		}
 
-				//13. here should begin the loop of translating all other shapes.
-				//14. get the next element
-				Element nextElement = getNextSiblingElement(currElement);
-
-				while (nextElement != null)
-				{
-					//15. determine its style
-					//17. the new style becomes the old style
-					XmlStyle oldStyle = currStyle;
-					currStyle = getStyle(nextElement);
+		//13. here should begin the loop of translating all other shapes.
+		//14. get the next element
+		for (int j = 1; j < srcElements.size(); j++)
+		{
+			Element nextElement = srcElements.get(j);
 
-					if (isRestoreNeeded(oldStyle, currStyle))
-					{
-						Node bg = destDoc.getElementsByTagName("background").item(0); 
-						Node fg = destDoc.getElementsByTagName("foreground").item(0);
+			//15. determine its style
+			//17. the new style becomes the old style
+			XmlStyle oldStyle = currStyle;
+			currStyle = getStyle(nextElement);
 
-						if (bg != null)
-						{
-							bg.insertBefore(destDoc.createElement("save"), bg.getFirstChild());
-						}
-						else
-						{
-							fg.insertBefore(destDoc.createElement("save"), fg.getFirstChild());
-						}
+			if (isRestoreNeeded(oldStyle, currStyle))
+			{
+				StencilWriter.Block fg = destWriter.getForeground();
 
-						fg.appendChild(destDoc.createElement("restore"));
+				// the save goes to the beginning of the background, or of the foreground if there is no background
+				destWriter.addSave();
+				fg.element("restore");
 
-						//NOTE next two lines are a workaround for a shadow bug, remove them once the bug is fixed
-						fg.appendChild(destDoc.createElement("rect"));
-						fg.appendChild(destDoc.createElement("stroke"));
+				//NOTE next two lines are a workaround for a shadow bug, remove them once the bug is fixed
+				fg.element("rect");
+				fg.element("stroke");
 
-						styleDiff = getStyleDiff(defStyle, currStyle);
-					}
-					else
-					{
-						//16. compare the new style with the old one, and add the differences to the XML
-						styleDiff = getStyleDiff(oldStyle, currStyle);
-					}
-					
+				styleDiff = getStyleDiff(defStyle, currStyle);
+			}
+			else
+			{
+				//16. compare the new style with the old one, and add the differences to the XML
+				styleDiff = getStyleDiff(oldStyle, currStyle);
+			}
+		
 //					if (currStyle.getStrokeColor() == "")
 //					{
 //						currStyle.setStrokeColor("none");
 //					}
-					
-					appendStyle(destDoc.getElementsByTagName("foreground").item(0), styleDiff, destConfigDoc, nextElement);
-
-					//18. translate the SVG element into XML
-					//20. add the new element to the XML
-					if (!nextElement.getNodeName().equals("text"))
-					{
-						Node newChild = Shape2Xml.parse(nextElement, destDoc, destConfigDoc);
-
-						if (newChild != null)
-						{
-							destDoc.getElementsByTagName("foreground").item(0).appendChild(newChild);
-							String str = getStrokeString(currStyle);
-
-							if (str != null)
-							{
-								destDoc.getElementsByTagName("foreground").item(0).appendChild(destDoc.createElement(str));
-							}
-						}
-					}
-					else
-					{
-						//text node
-						Shape2Xml.parseText(nextElement, destDoc, destConfigDoc, false);
-					}
-
-					Element secondElement = getNextSiblingElement(nextElement);
-					nextElement = secondElement;
-				}
-
-				//21. write the document to a file
-				//check if a new group is started
-				if (i == 0)
-				{
-					isNewGroup = true;
-				}
-				else
-				{
-					String currParent = gui.sourceFiles[i].getParent();
-					String oldParent = gui.sourceFiles[i-1].getParent();
-
-					if(currParent.equals(oldParent) && i!=0)
-					{
-						isNewGroup = false;
-					}
-					else
-					{
-						isNewGroup = true;
-					}
-				}
+		
+			appendStyle(destWriter.getForeground(), currStyle, styleDiff, destConfigDoc, nextElement);
 
-				//if this is the last file in the group
-				if (i + 1 == gui.sourceFiles.length)
-				{
-					isLastInGroup = true;
-				}
-				else
+			//18. translate the SVG element into XML
+			//20. add the new element to the XML
+			if (!nextElement.getNodeName().equals("text"))
+			{
+				if (Shape2Xml.parse(geometry.getShape(j), destWriter.getForeground(), destConfigDoc))
 				{
-					String currParent = gui.sourceFiles[i].getParent();
-					String nextParent = gui.sourceFiles[i+1].getParent();
+					String str = getStrokeString(currStyle);
 
-					if(currParent.equals(nextParent))
+					if (str != null)
 					{
-						isLastInGroup = false;
-					}
-					else
-					{
-						isLastInGroup = true;
+						destWriter.getForeground().element(str);
 					}
 				}
+			}
+			else
+			{
+				//text node
+				Shape2Xml.parseText(nextElement, destWriter, destConfigDoc, false);
+			}
+		}
 
-				// group naming check
-				String currentPath = gui.sourceFiles[i].getAbsolutePath();
-				currentPath = currentPath.substring(2, currentPath.lastIndexOf("."));
+		metrics.lap(StencilMetrics.SHAPES);
 
-				File currFile = new File(gui.sourceFiles[i].getAbsolutePath());
-				
-				if (isNewGroup)
-				{
-					//if group name wasn't in config, generate it based on folder structure
-					if (!isGroupNameInConfig)
-					{
-						String fullStr = currFile.getParent().toLowerCase();
-						String currName = fullStr.replace(sourceFolder.toLowerCase(), "");
-						currName = currName.replace(File.separator, ".");
-						
-						groupName = stencilUserMarker + currName;
-					}
+		if (options.isOptimizeStyles())
+		{
+			StyleOptimizer.optimize(destWriter);
+		}
 
-					lastGroupName = groupName;
-					groupXml = "<shapes name=\"" + groupName + "\">" + System.getProperty("line.separator");
-					String tmp = Svg2Xml.printDocumentString(destDoc, groupBaos);
-					tmp = tmp.replaceAll("\\.0\"", "\"");
-					groupXml += tmp;
-				}
-				else
-				{
-					// if not a new group, just add the xml to the group xml
-					groupXml += Svg2Xml.printDocumentString(destDoc, groupBaos);
-				}
+		String xml = destWriter.toString();
+		metrics.lap(StencilMetrics.WRITE);
 
-				// save the xml
-				if(isLastInGroup)
-				{
-					groupXml += "</shapes>";
+		return xml;
+	}
 
-					groupXml = groupXml.replaceAll("\\.+0\"", "\"");
+	/**
+	 * @return the SVG files that couldn't be converted, in the order of the source files
+	 */
+	public ArrayList<File> getFailedFiles()
+	{
+		return failedFiles;
+	}
 
-					try
-					{
-						String currentDestPath = gui.destPath.getAbsolutePath() + File.separator + lastGroupName.replace(".", File.separator) + ".xml";
-						
-						currentDestPath = currentDestPath.toLowerCase();
-						currentDestPath = currentDestPath.replaceAll("\\s", "_");
-						File myDestFile = new File(currentDestPath);
-						File myDestRoot = new File(myDestFile.getParent());
-						myDestRoot.mkdirs();
-						FileWriter fileWriter = new FileWriter(myDestFile);
-						BufferedWriter writer = new BufferedWriter(fileWriter);
-						writer.write(groupXml);
-						writer.close();
-
-						if (!destPaths.contains(myDestRoot))
-						{
-							destPaths.add(myDestRoot);
-						}
-						
-					} 
-					catch(Exception ex) 
-					{
-						ex.printStackTrace();
-					}
-				}
-				
-			}
-			catch (Exception e)
-			{
-				e.printStackTrace();
-			}
-		}
-		
+	/**
+	 * @return the folders where the libraries were written, one per line
+	 */
+	public String getDestFolders()
+	{
 		String destFolders = new String();
 		
 		for (int i = 0; i < destPaths.size(); i++)
@@ -657,8 +912,8 @@ public class Svg2Xml
 				destFolders = destFolders + "\n" + currPath;
 			}
 		}
-		
-		JOptionPane.showMessageDialog(gui.getFrame(), "Conversion completed.\nThe libraries are genereted in:" + destFolders);
+
+		return destFolders;
 	}
 
 	/**
@@ -691,160 +946,138 @@ public class Svg2Xml
 	}
 
 	/**
-	 * @param node reference node
-	 * @return next sibling of <b>node</b> that is <b>Node.ELEMENT_NODE</b>
+	 * Adds style changes to the stencil XML, based on <b>styleDiff</b>
+	 * @param block stencil XML block where the style is written
+	 * @param styleDiff needed style changes
 	 */
-	private Element getNextSiblingElement(Element node)
+	public static void appendStyle(StencilWriter.Block block, XmlStyle style, int styleDiff, XmlConfig configDoc, Element element)
 	{
-		Node nextSibling = node.getNextSibling();
-
-		while(nextSibling != null)
+		if (styleDiff == 0)
 		{
-			if(nextSibling.getNodeType() == Node.ELEMENT_NODE)
-			{
-				return (Element) nextSibling;
-			}
-
-			nextSibling = nextSibling.getNextSibling();
+			return;
 		}
 
-		return null;
-	}
-
-	/**
-	 * Adds style changes to the stencil XML, based on <b>styleDiff</b>
-	 * @param node stencil XML node which last chilld will the style be 
-	 * @param styleDiff needed style changes
-	 */
-	public static void appendStyle(Node node, Map<String, String> styleDiff, XmlConfig configDoc, Element element)
-	{
-		Document doc = node.getOwnerDocument();
 		String elementName = element.getNodeName(); 
 
-		if (styleDiff.containsKey("strokecolor") && !styleDiff.get("strokecolor").equals(""))
+		if ((styleDiff & XmlStyle.STROKE_COLOR) != 0 && !style.getStrokeColor().equals(""))
 		{
-			Element el = null;
-
 			if (elementName.equals("text") || elementName.equals("tspan") )
 			{
-				if(!styleDiff.containsKey("fillcolor") || styleDiff.get("fillcolor").equals(""))
+				if((styleDiff & XmlStyle.FILL_COLOR) == 0 || style.getFillColor().equals(""))
 				{
-					el = doc.createElement("fontcolor");
-					el.setAttribute("color", styleDiff.get("strokecolor"));
-					node.appendChild(el);
+					block.startElement("fontcolor");
+					block.attribute("color", style.getStrokeColor());
+					block.endElement();
 				}
 			}
-			else if(!styleDiff.get("strokecolor").equals("none"))
+			else if(!style.getStrokeColor().equals("none"))
 			{
-				el = doc.createElement("strokecolor");
-				el.setAttribute("color", styleDiff.get("strokecolor"));
-				node.appendChild(el);
+				block.startElement("strokecolor");
+				block.attribute("color", style.getStrokeColor());
+				block.endElement();
 			}
 		}
 
-		if (styleDiff.containsKey("fillcolor") && !styleDiff.get("fillcolor").equals(""))
+		if ((styleDiff & XmlStyle.FILL_COLOR) != 0 && !style.getFillColor().equals(""))
 		{
-			Element el = null;
-
 			if (elementName.equals("text") || elementName.equals("tspan") )
 			{
-				el = doc.createElement("fontcolor");
-				el.setAttribute("color", styleDiff.get("fillcolor"));
-				node.appendChild(el);
+				block.startElement("fontcolor");
+				block.attribute("color", style.getFillColor());
+				block.endElement();
 			}
-			else  if(!styleDiff.get("fillcolor").equals("none"))
+			else  if(!style.getFillColor().equals("none"))
 			{
-				el = doc.createElement("fillcolor");
-				el.setAttribute("color", styleDiff.get("fillcolor"));
-				node.appendChild(el);
+				block.startElement("fillcolor");
+				block.attribute("color", style.getFillColor());
+				block.endElement();
 			}
 
 		}
 
-		if (styleDiff.containsKey("strokewidth"))
+		if ((styleDiff & XmlStyle.STROKE_WIDTH) != 0)
 		{
-			Element el = doc.createElement("strokewidth");
-			el.setAttribute("width", styleDiff.get("strokewidth"));
-			node.appendChild(el);
+			block.startElement("strokewidth");
+			block.attribute("width", style.getStrokeWidth());
+			block.endElement();
 		}
 
-		if (styleDiff.containsKey("linejoin"))
+		if ((styleDiff & XmlStyle.LINE_JOIN) != 0)
 		{
-			Element el = doc.createElement("linejoin");
-			el.setAttribute("join", styleDiff.get("linejoin"));
-			node.appendChild(el);
+			block.startElement("linejoin");
+			block.attribute("join", style.getLineJoin());
+			block.endElement();
 		}
 
-		if (styleDiff.containsKey("linecap"))
+		if ((styleDiff & XmlStyle.LINE_CAP) != 0)
 		{
-			Element el = doc.createElement("linecap");
-			el.setAttribute("cap", styleDiff.get("linecap"));
-			node.appendChild(el);
+			block.startElement("linecap");
+			block.attribute("cap", style.getLineCap());
+			block.endElement();
 		}
 
-		if (styleDiff.containsKey("miterlimit"))
+		if ((styleDiff & XmlStyle.MITER_LIMIT) != 0)
 		{
-			Element el = doc.createElement("miterlimit");
-			el.setAttribute("limit", styleDiff.get("miterlimit"));
-			node.appendChild(el);
+			block.startElement("miterlimit");
+			block.attribute("limit", style.getMiterLimit());
+			block.endElement();
 		}
 
-		if (styleDiff.containsKey("dashpattern"))
+		if ((styleDiff & XmlStyle.DASH_PATTERN) != 0)
 		{
-			Element el = doc.createElement("dashpattern");
-			String pattern = styleDiff.get("dashpattern");
+			block.startElement("dashpattern");
+			String pattern = style.getDashPattern();
 			pattern = pattern.replaceAll(",", " ");
-			el.setAttribute("pattern", pattern);
-			node.appendChild(el);
+			block.attribute("pattern", pattern);
+			block.endElement();
 		}
 
-		if (styleDiff.containsKey("dashed"))
+		if ((styleDiff & XmlStyle.DASHED) != 0)
 		{
-			Element el = doc.createElement("dashed");
-			if (styleDiff.get("dashed").equals("true"))
+			block.startElement("dashed");
+			if (style.isDashed().equals("true"))
 			{
-				el.setAttribute("dashed", "1");
+				block.attribute("dashed", "1");
 			}
 			else
 			{
-				el.setAttribute("dashed", "0");
+				block.attribute("dashed", "0");
 			}
 			
-			node.appendChild(el);
+			block.endElement();
 		}
 
-		if (styleDiff.containsKey("alpha"))
+		if ((styleDiff & XmlStyle.ALPHA) != 0)
 		{
-			Element el = doc.createElement("alpha");
-			el.setAttribute("alpha", styleDiff.get("alpha"));
-			node.appendChild(el);
+			block.startElement("alpha");
+			block.attribute("alpha", style.getAlpha());
+			block.endElement();
 		}
 
-		if (styleDiff.containsKey("strokealpha"))
+		if ((styleDiff & XmlStyle.STROKE_ALPHA) != 0)
 		{
-			Element el = doc.createElement("strokealpha");
-			el.setAttribute("alpha", styleDiff.get("strokealpha"));
-			node.appendChild(el);
+			block.startElement("strokealpha");
+			block.attribute("alpha", style.getStrokeAlpha());
+			block.endElement();
 		}
 
-		if (styleDiff.containsKey("fillalpha"))
+		if ((styleDiff & XmlStyle.FILL_ALPHA) != 0)
 		{
-			Element el = doc.createElement("fillalpha");
-			el.setAttribute("alpha", styleDiff.get("fillalpha"));
-			node.appendChild(el);
+			block.startElement("fillalpha");
+			block.attribute("alpha", style.getFillAlpha());
+			block.endElement();
 		}
 
-		if (styleDiff.containsKey("fontcolor"))
+		if ((styleDiff & XmlStyle.FONT_COLOR) != 0)
 		{
-			Element el = doc.createElement("fontcolor");
-			el.setAttribute("color", styleDiff.get("fontcolor"));
-			node.appendChild(el);
+			block.startElement("fontcolor");
+			block.attribute("color", style.getFontColor());
+			block.endElement();
 		}
 
-		if (styleDiff.containsKey("fontsize"))
+		if ((styleDiff & XmlStyle.FONT_SIZE) != 0)
 		{
-			Element el = doc.createElement("fontsize");
-			String fontSizeStr = styleDiff.get("fontsize");
+			String fontSizeStr = style.getFontSize();
 
 			if (!fontSizeStr.equals(""))
 			{
@@ -853,7 +1086,7 @@ public class Svg2Xml
 				
 				if (isNumeric(fontSizeStr))
 				{
-					fs = Double.parseDouble(fontSizeStr) * configDoc.getRelativeScalingRatio();
+					fs = Shape2Xml.roundToDecimals(Double.parseDouble(fontSizeStr) * Shape2Xml.getScale(configDoc), configDoc.getDecimalsToRound());
 				}
 				else
 				{
@@ -882,49 +1115,50 @@ public class Svg2Xml
 					}
 					
 				}
-				el.setAttribute("size", Double.toString(fs));
-				node.appendChild(el);
+				block.startElement("fontsize");
+				block.attribute("size", fs);
+				block.endElement();
 			}
 		}
 
-		if (styleDiff.containsKey("fontfamily"))
+		if ((styleDiff & XmlStyle.FONT_FAMILY) != 0)
 		{
-			Element el = doc.createElement("fontfamily");
-			el.setAttribute("family", styleDiff.get("fontfamily"));
-			node.appendChild(el);
+			block.startElement("fontfamily");
+			block.attribute("family", style.getFontFamily());
+			block.endElement();
 		}
 
-		if (styleDiff.containsKey("bold") || styleDiff.containsKey("underline") || styleDiff.containsKey("italic"))
+		if ((styleDiff & XmlStyle.BOLD) != 0 || (styleDiff & XmlStyle.UNDERLINE) != 0 || (styleDiff & XmlStyle.ITALIC) != 0)
 		{
-			Integer style = 0;
+			Integer fontStyle = 0;
 
-			if (styleDiff.containsKey("bold"))
+			if ((styleDiff & XmlStyle.BOLD) != 0)
 			{
-				if(styleDiff.get("bold").equals("true"))
+				if(style.isFontStyleBold().equals("true"))
 				{
-					style = style + 1;
+					fontStyle = fontStyle + 1;
 				}
 			}
 
-			if (styleDiff.containsKey("italic"))
+			if ((styleDiff & XmlStyle.ITALIC) != 0)
 			{
-				if(styleDiff.get("italic").equals("true"))
+				if(style.isFontStyleItalic().equals("true"))
 				{
-					style = style + 2;
+					fontStyle = fontStyle + 2;
 				}
 			}
 
-			if (styleDiff.containsKey("underline"))
+			if ((styleDiff & XmlStyle.UNDERLINE) != 0)
 			{
-				if(styleDiff.get("underline").equals("true"))
+				if(style.isFontStyleUnderline().equals("true"))
 				{
-					style = style + 4;
+					fontStyle = fontStyle + 4;
 				}
 			}
 
-			Element el = doc.createElement("fontstyle");
-			el.setAttribute("style", style.toString());
-			node.appendChild(el);
+			block.startElement("fontstyle");
+			block.attribute("style", fontStyle.toString());
+			block.endElement();
 		}
 	}
 
@@ -933,138 +1167,23 @@ public class Svg2Xml
 	 * NOTE: don't swap the two parameters, you'll get a different result.
 	 * @param prevStyle previous style
 	 * @param currStyle current style
-	 * @return the changes that <b>currStyle</b> introduced, compared to <b>prevStyle</b>
+	 * @return the properties (XmlStyle constants) that <b>currStyle</b> changed, compared to <b>prevStyle</b>
 	 */
-	public static Map<String, String> getStyleDiff(XmlStyle prevStyle, XmlStyle currStyle)
+	public static int getStyleDiff(XmlStyle prevStyle, XmlStyle currStyle)
 	{
-		Map<String, String> styleDiff = new Hashtable<String, String>();
-
-		if (currStyle.getStrokeColor() != null && !prevStyle.getStrokeColor().equals(currStyle.getStrokeColor()))
-		{
-			styleDiff.put("strokecolor", currStyle.getStrokeColor());
-		}
-
-		if (currStyle.getFillColor() != null && !prevStyle.getFillColor().equals(currStyle.getFillColor()))
-		{
-			styleDiff.put("fillcolor", currStyle.getFillColor());
-		}
-
-		if (currStyle.getStrokeWidth() != null && !prevStyle.getStrokeWidth().equals(currStyle.getStrokeWidth()))
-		{
-			styleDiff.put("strokewidth", currStyle.getStrokeWidth());
-		}
-
-		if (currStyle.getLineJoin() != null && !prevStyle.getLineJoin().equals(currStyle.getLineJoin()))
-		{
-			styleDiff.put("linejoin", currStyle.getLineJoin());
-		}
-
-		if (currStyle.getLineCap() != null && !prevStyle.getLineCap().equals(currStyle.getLineCap()))
-		{
-			styleDiff.put("linecap", currStyle.getLineCap());
-		}
-
-		if (currStyle.getMiterLimit() != null && !prevStyle.getMiterLimit().equals(currStyle.getMiterLimit()))
-		{
-			styleDiff.put("miterlimit", currStyle.getMiterLimit());
-		}
-
-		if (currStyle.getDashPattern() != null && !prevStyle.getDashPattern().equals(currStyle.getDashPattern()))
-		{
-			styleDiff.put("dashpattern", currStyle.getDashPattern());
-		}
-
-		if (currStyle.isDashed() != null && !prevStyle.isDashed().equals(currStyle.isDashed()))
-		{
-			styleDiff.put("dashed", currStyle.isDashed());
-		}
-
-		if (currStyle.getAlpha() != null && !prevStyle.getAlpha().equals(currStyle.getAlpha()))
-		{
-			styleDiff.put("alpha", currStyle.getAlpha());
-		}
-
-		if (currStyle.getStrokeAlpha() != null && !prevStyle.getStrokeAlpha().equals(currStyle.getStrokeAlpha()))
-		{
-			styleDiff.put("strokealpha", currStyle.getStrokeAlpha());
-		}
-
-		if (currStyle.getFillAlpha() != null && !prevStyle.getFillAlpha().equals(currStyle.getFillAlpha()))
-		{
-			styleDiff.put("fillalpha", currStyle.getFillAlpha());
-		}
-
-		if (currStyle.getFontColor() != null && !prevStyle.getFontColor().equals(currStyle.getFontColor()))
-		{
-			styleDiff.put("fontcolor", currStyle.getFontColor());
-		}
-
-		if (currStyle.isFontStyleBold() != null && !prevStyle.isFontStyleBold().equals(currStyle.isFontStyleBold()))
-		{
-			styleDiff.put("bold", currStyle.isFontStyleBold());
-		}
-
-		if (currStyle.isFontStyleItalic() != null && !prevStyle.isFontStyleItalic().equals(currStyle.isFontStyleItalic()))
-		{
-			styleDiff.put("italic", currStyle.isFontStyleItalic());
-		}
-
-		if (currStyle.isFontStyleUnderline() != null && !prevStyle.isFontStyleUnderline().equals(currStyle.isFontStyleUnderline()))
-		{
-			styleDiff.put("underline", currStyle.isFontStyleUnderline());
-		}
-
-		if (currStyle.getFontSize() != null && !prevStyle.getFontSize().equals(currStyle.getFontSize()))
-		{
-			styleDiff.put("fontsize", currStyle.getFontSize());
-		}
-
-		if (currStyle.getFontFamily() != null && !prevStyle.getFontFamily().equals(currStyle.getFontFamily()))
-		{
-			styleDiff.put("fontfamily", currStyle.getFontFamily());
-		}
-
-		if (currStyle.getAlign() != null && !prevStyle.getAlign().equals(currStyle.getAlign()))
-		{
-			styleDiff.put("align", currStyle.getAlign());
-		}
-
-		return styleDiff;
+		return currStyle.getDiff(prevStyle);
 	}
 
 	/**
-	 * Calculates the style difference between styles for two shapes. For use between the current shape and the previous one.
-	 * NOTE: don't swap the two parameters, you'll get a different result.
+	 * Checks if <b>currStyle</b> drops a property that <b>prevStyle</b> defines. That property can only be reset
+	 * by restoring the default style.
 	 * @param prevStyle previous style
 	 * @param currStyle current style
-	 * @return the changes that <b>currStyle</b> introduced, compared to <b>prevStyle</b>
+	 * @return true if the default style has to be restored before <b>currStyle</b> is applied
 	 */
 	private boolean isRestoreNeeded(XmlStyle prevStyle, XmlStyle currStyle)
 	{
-		if ((currStyle.getStrokeColor().equals("") && !prevStyle.getStrokeColor().equals("")) ||
-				(currStyle.getFillColor().equals("") && !prevStyle.getFillColor().equals("")) ||
-				(currStyle.getStrokeWidth().equals("") && !prevStyle.getStrokeWidth().equals("")) ||
-				(currStyle.getLineJoin().equals("") && !prevStyle.getLineJoin().equals("")) ||
-				(currStyle.getLineCap().equals("") && !prevStyle.getLineCap().equals("")) ||
-				(currStyle.getMiterLimit().equals("") && !prevStyle.getMiterLimit().equals("")) ||
-				(currStyle.getDashPattern().equals("") && !prevStyle.getDashPattern().equals("")) ||
-				(currStyle.isDashed().equals("") && !prevStyle.isDashed().equals("")) ||
-				(currStyle.getAlpha().equals("") && !prevStyle.getAlpha().equals("")) ||
-				(currStyle.getStrokeAlpha().equals("") && !prevStyle.getStrokeAlpha().equals("")) ||
-				(currStyle.getFillAlpha().equals("") && !prevStyle.getFillAlpha().equals("")) ||
-				(currStyle.getFontColor().equals("") && !prevStyle.getFontColor().equals("")) ||
-				(currStyle.isFontStyleBold().equals("") && !prevStyle.isFontStyleBold().equals("")) ||
-				(currStyle.isFontStyleItalic().equals("") && !prevStyle.isFontStyleItalic().equals("")) ||
-				(currStyle.isFontStyleUnderline().equals("") && !prevStyle.isFontStyleUnderline().equals("")) ||
-				(currStyle.getFontSize().equals("") && !prevStyle.getFontSize().equals("")) ||
-				(currStyle.getFontFamily().equals("") && !prevStyle.getFontFamily().equals("")))
-		{
-			return true;
-		}
-		else
-		{
-			return false;
-		}
+		return (prevStyle.getDefined() & ~currStyle.getDefined() & RESTORE_PROPERTIES) != 0;
 	}
 
 	/**
@@ -1084,7 +1203,7 @@ public class Svg2Xml
 				Node currAtt = attributes.item(i);
 
 				String currName = currAtt.getNodeName();
-				String nv = currAtt.getNodeValue().replaceAll(";", "");
+				String nv = currAtt.getNodeValue().replace(";", "");
 
 				if (currName.equals("stroke"))
 				{
@@ -1220,947 +1339,109 @@ public class Svg2Xml
 	}
 
 	/**
-	 * Reads the file (defined by <b>filename</b>) into a string
-	 * @param filename file to be read
-	 * @return the file content in a string
+	 * Headless batch conversion, see Svg2XmlOptions.USAGE for the arguments
+	 * @param args
 	 */
-	public static String readFile(String filename)
+	public static void main(String[] args)
 	{
-		BufferedReader reader;
+		System.setProperty("java.awt.headless", "true");
+		Svg2XmlOptions options = null;
+
 		try
 		{
-			reader = new BufferedReader(new InputStreamReader(new FileInputStream(filename)));
-			StringBuffer result = new StringBuffer();
-			String tmp;
-
-			try
-			{
-				tmp = reader.readLine();
-
-				while (tmp != null)
-				{
-					result.append(tmp + System.getProperty("line.separator"));
-					try
-					{
-						tmp = reader.readLine();
-					}
-					catch (IOException e)
-					{
-						e.printStackTrace();
-					}
-				}
-
-				try
-				{
-					reader.close();
-				}
-				catch (IOException e)
-				{
-					e.printStackTrace();
-				}
-
-				return result.toString();
-			}
-			catch (IOException e)
-			{
-				e.printStackTrace();
-			}
-		}
-		catch (FileNotFoundException e1)
-		{
-			e1.printStackTrace();
-		}
-
-		return null;
-	}
-
-	/**
-	 * @param args
-	 */
-	public static void main(String[] args)
-	{
-	}
-
-	/**
-	 * Removes all defs and makes them inline, if visuals are in question, gradient fills are removed and a single color is put inline.
-	 * Group style is inherited into individual element and groups are removed.
-	 * NOTE: not implemented yet
-	 */
-	private Document flattenSvg(Document svgDoc)
-	{
-		Node root = svgDoc.getElementsByTagName("svg").item(0);
-		//translate grouped style attributes to singular style attributes
-		breakGroupStyle(root);
-		// look for defs elements
-		Map<String, Node> defsTable = parseDefs(root);
-		//parse for fill defs and make them inline where needed
-		parseFills(root, root);
-		parseStrokes(root, root);
-		// look for use elements
-		parseUses(root, defsTable);
-		flattenGroupsStyle(root);
-		removeGroupsSvg(root);
-		return svgDoc;
-	}
-
-	private void parseFills(Node root, Node svgRoot)
-	{
-		if (root != null)
-		{
-			Map<String, String> fillTable = parseFillDefs(svgRoot);
-			NodeList children = root.getChildNodes();
-
-			if (children.getLength() > 0)
-			{
-				for (int i = 0; i < children.getLength(); i++)
-				{
-					Node currChild = children.item(i);
-
-					//					if (currChild.getNodeType() == Node.ELEMENT_NODE || currChild.getNodeName().equals("text"))
-					if (currChild.getNodeType() == Node.ELEMENT_NODE)
-					{
-						Element currEl = (Element) currChild;
-						String currFill = currEl.getAttribute("fill");
-
-						if (currFill.contains("url(#"))
-						{
-							currFill = currFill.replaceAll("url\\(\\#", "");
-							currFill = currFill.replaceAll("\\)", "");
-							currFill = currFill.replaceAll(" ", "");
-							currEl.setAttribute("fill", fillTable.get(currFill));
-						}
-
-						parseFills(currChild, svgRoot);
-					}
-				}
-			}
-		}
-	}
-
-	private void parseStrokes(Node root, Node svgRoot)
-	{
-		if (root != null)
-		{
-			Map<String, String> strokeTable = parseStrokeDefs(svgRoot);
-			NodeList children = root.getChildNodes();
-
-			if (children.getLength() > 0)
-			{
-				for (int i = 0; i < children.getLength(); i++)
-				{
-					Node currChild = children.item(i);
-
-					//					if (currChild.getNodeType() == Node.ELEMENT_NODE || currChild.getNodeType() == Node.TEXT_NODE)
-					if (currChild.getNodeType() == Node.ELEMENT_NODE)
-					{
-						Element currEl = (Element) currChild;
-						String currStroke = currEl.getAttribute("stroke");
-
-						if (currStroke.contains("url(#"))
-						{
-							currStroke = currStroke.replaceAll("url\\(\\#", "");
-							currStroke = currStroke.replaceAll("\\)", "");
-							currStroke = currStroke.replaceAll(" ", "");
-							currEl.setAttribute("stroke", strokeTable.get(currStroke));
-						}
-
-						parseStrokes(currChild, svgRoot);
-					}
-				}
-			}
-		}
-	}
-
-	private Map<String, String> parseFillDefs(Node root)
-	{
-		if (root != null)
-		{
-			Map<String, String> fillTable = new Hashtable<String, String>();
-			NodeList children = root.getChildNodes();
-
-			if (children.getLength() > 0)
-			{
-				for (int i = 0; i < children.getLength(); i++)
-				{
-					Node currChild = children.item(i);
-
-					if (currChild.getNodeType() == Node.ELEMENT_NODE)
-					{
-						Element currEl = (Element) currChild;
-
-						if (currEl.getNodeName().equals("linearGradient") || currEl.getNodeName().equals("radialGradient"))
-						{
-							String avgColor = getAvgGradientColor(currEl); 
-							if (avgColor != null)
-							{
-								fillTable.put(currEl.getAttribute("id"), avgColor);
-							}
-						}
-
-						fillTable.putAll(parseFillDefs(currChild));
-					}
-				}
-			}
-
-			return fillTable;
-		}
-		else
-		{
-			return null;
-		}
-	}
-
-	private Map<String, String> parseStrokeDefs(Node root)
-	{
-		if (root != null)
-		{
-			Map<String, String> strokeTable = new Hashtable<String, String>();
-			NodeList children = root.getChildNodes();
-
-			if (children.getLength() > 0)
-			{
-				for (int i = 0; i < children.getLength(); i++)
-				{
-					Node currChild = children.item(i);
-
-					if (currChild.getNodeType() == Node.ELEMENT_NODE)
-					{
-						Element currEl = (Element) currChild;
-
-						if (currEl.getNodeName().equals("linearGradient") || currEl.getNodeName().equals("radialGradient"))
-						{
-							String avgColor = getAvgGradientColor(currEl); 
-							if (avgColor != null)
-							{
-								strokeTable.put(currEl.getAttribute("id"), avgColor);
-							}
-						}
-
-						strokeTable.putAll(parseStrokeDefs(currChild));
-					}
-				}
-			}
-
-			return strokeTable;
-		}
-		else
-		{
-			return null;
-		}
-	}
-
-	private String getAvgGradientColor(Element element)
-	{
-		if (element != null)
-		{
-			String finalColor;
-			ArrayList<Integer> arrR = new ArrayList<Integer>();
-			ArrayList<Integer> arrG = new ArrayList<Integer>();
-			ArrayList<Integer> arrB = new ArrayList<Integer>();
-
-			NodeList children = element.getChildNodes();
-
-			for (int i = 0; i < children.getLength(); i++)
-			{
-				Node currChild = children.item(i);
-
-				if (currChild.getNodeType() == Node.ELEMENT_NODE)
-				{
-					Element currEl = (Element) currChild;
-
-					if (currChild.getNodeName().equals("stop"))
-					{
-						Color col = new Color(0, 0, 0);
-						String colS = currEl.getAttribute("stop-color");
-
-						if (colS == null || colS.equals("")) 
-						{
-							return null;
-						}
-						else if (colS.charAt(0) == '#')
-						{
-							col = Color.decode(colS);
-						}
-						else 
-						{
-							col = stringToColor(colS);
-						}
-
-						if (col != null)
-						{
-							arrR.add(0, col.getRed());
-							arrG.add(0, col.getGreen());
-							arrB.add(0, col.getBlue());
-						}
-					}
-				}
-			}
-
-			int r = 0;
-			int g = 0;
-			int b = 0;
-
-			for (int i = 0; i < arrR.size(); i++)
-			{
-				r = r + arrR.get(i);
-				g = g + arrG.get(i);
-				b = b + arrB.get(i);
-			}
-
-			if (arrR.size() > 0)
-			{
-				r = r / arrR.size();
-			}
-			else
-			{
-				r = 0;
-			}
-			
-			if (arrR.size() > 0)
-			{
-				g = g / arrG.size();
-			}
-			else
-			{
-				g = 0;
-			}
-			
-			if (arrR.size() > 0)
-			{
-				b = b / arrB.size();
-			}
-			else
-			{
-				b = 0;
-			}
-			
-
-			//		finalColor = "#" + Integer.toString(r) + Integer.toString(g) + Integer.toString(b);
-			finalColor = "#";
-
-			StringBuilder sbr = new StringBuilder();
-			sbr.append(Integer.toHexString(r));
-
-			if (sbr.length() < 2) 
-			{
-				sbr.insert(0, '0'); // pad with leading zero if needed
-			}
-
-			finalColor = finalColor + sbr.toString();
-
-			StringBuilder sbg = new StringBuilder();
-			sbg.append(Integer.toHexString(g));
-
-			if (sbg.length() < 2) 
-			{
-				sbg.insert(0, '0'); // pad with leading zero if needed
-			}
-
-			finalColor = finalColor + sbg.toString();
-
-			StringBuilder sbb = new StringBuilder();
-			sbb.append(Integer.toHexString(b));
-
-			if (sbb.length() < 2) 
-			{
-				sbb.insert(0, '0'); // pad with leading zero if needed
-			}
-
-			finalColor = finalColor + sbb.toString();
-
-			return finalColor;
-		}
-		else
-		{
-			return "";
-		}
-	}
-
-	private Color stringToColor(String col)
-	{
-		//TODO either add the extended color set too, or find a better solution
-		if (col.equals("black"))
-		{
-			return Color.BLACK;
-		}
-		else if (col.equals("blue"))
-		{
-			return Color.BLUE;
-		}
-		else if (col.equals("cyan"))
-		{
-			return Color.CYAN;
-		}
-		else if (col.equals("darkGray"))
-		{
-			return Color.DARK_GRAY;
-		}
-		else if (col.equals("gray"))
-		{
-			return Color.gray;
-		}
-		else if (col.equals("green"))
-		{
-			return Color.GREEN;
-		}
-		else if (col.equals("yellow"))
-		{
-			return Color.YELLOW;
-		}
-		else if (col.equals("lightGray"))
-		{
-			return Color.LIGHT_GRAY;
-		}
-		else if (col.equals("magenta"))
-		{
-			return Color.MAGENTA;
-		}
-		else if (col.equals("orange"))
-		{
-			return Color.ORANGE;
-		}
-		else if (col.equals("pink"))
-		{
-			return Color.PINK;
-		}
-		else if (col.equals("red"))
-		{
-			return Color.RED;
-		}
-		else if (col.equals("white"))
-		{
-			return Color.WHITE;
-		}
-		else
-		{
-			return null;
-		}
-	}
-
-	private void breakGroupStyle(Node root)
-	{
-		NodeList children = null;
-
-		if (root != null && root.hasChildNodes())
-		{
-			children = root.getChildNodes();
-
-			for (int i = 0; i < children.getLength(); i++)
-			{
-				Node currChild = children.item(i);
-
-				if (currChild.getNodeType() == Node.ELEMENT_NODE)
-				{
-					breakGroupStyle(currChild);
-					Element currEl = (Element) currChild;
-					Map<String, String> styles = getStylenames(currEl.getAttribute("style"));
-					currEl.removeAttribute("style");
-
-					if (styles != null)
-					{
-						for (Map.Entry<String, String> entry : styles.entrySet())
-						{
-							currEl.setAttribute(entry.getKey(), entry.getValue());
-						}
-					}
-				}
-			}
-		}
-	}
-
-	/**
-	 * Returns the stylenames in a style of the form stylename[;key=value] or an
-	 * empty array if the given style does not contain any stylenames.
-	 * 
-	 * @param style
-	 *            String of the form stylename[;stylename][;key=value].
-	 * @return Returns the stylename from the given formatted string.
-	 */
-	protected static Map<String, String> getStylenames(String style)
-	{
-		if (style != null && style.length() > 0)
-		{
-			Map<String, String> result = new Hashtable<String, String>();
-
-			if (style != null)
-			{
-				String[] pairs = style.split(";");
-
-				for (int i = 0; i < pairs.length; i++)
-				{
-					String[] keyValue = pairs[i].split(":");
-
-					if (keyValue.length == 2)
-					{
-						result.put(keyValue[0].trim().replaceAll(";", ""), keyValue[1].trim().replaceAll(";", ""));
-					}
-				}
-			}
-			return result;
-		}
-
-		return null;
-	}
-
-	/**
-	 * Recursively appends all styles and transformations of parents to all their children
-	 * NOTE: for now, only styles as attributes and matrix transformations are applied (which are the most common)  
-	 * @param parent
-	 */
-	private static void flattenGroupsStyle (Node parent)
-	{
-		if (parent != null)
-		{
-			NodeList children = parent.getChildNodes();
-			XmlStyle parentStyle = getStyle(parent);
-			Element parEl = (Element) parent;
-			String parTr = parEl.getAttribute("transform");
-
-			for (int i = 0; i < children.getLength(); i++)
-			{
-				Node currChild = children.item(i);
-
-				if(currChild.getNodeType() == Node.ELEMENT_NODE)
-				{
-					XmlStyle currStyle = getStyle(currChild);
-
-					if (currStyle.getStrokeColor().equals(""))
-					{
-						currStyle.setStrokeColor(parentStyle.getStrokeColor());
-					}
-
-					if (currStyle.getFillColor().equals(""))
-					{
-						currStyle.setFillColor(parentStyle.getFillColor());
-					}
-
-					if (currStyle.getStrokeWidth().equals(""))
-					{
-						currStyle.setStrokeWidth(parentStyle.getStrokeWidth());
-					}
-
-					if (currStyle.getLineJoin().equals(""))
-					{
-						currStyle.setLineJoin(parentStyle.getLineJoin());
-					}
-
-					if (currStyle.getLineCap().equals(""))
-					{
-						currStyle.setLineCap(parentStyle.getLineCap());
-					}
-
-					if (currStyle.getMiterLimit().equals(""))
-					{
-						currStyle.setMiterLimit(parentStyle.getMiterLimit());
-					}
-
-					if (currStyle.getDashPattern().equals(""))
-					{
-						currStyle.setDashPattern(parentStyle.getDashPattern());
-					}
-
-					if (currStyle.isDashed().equals(""))
-					{
-						currStyle.setDashed(parentStyle.isDashed());
-					}
-
-					if (currStyle.getAlpha().equals(""))
-					{
-						currStyle.setAlpha(parentStyle.getAlpha());
-					}
-
-					if (currStyle.getStrokeAlpha().equals(""))
-					{
-						currStyle.setStrokeAlpha(parentStyle.getStrokeAlpha());
-					}
-
-					if (currStyle.getFillAlpha().equals(""))
-					{
-						currStyle.setFillAlpha(parentStyle.getFillAlpha());
-					}
-
-					if (currStyle.getFontColor().equals(""))
-					{
-						currStyle.setFontColor(parentStyle.getFontColor());
-					}
-
-					//TODO inherit font style too
-					//			if (currStyle.)
-
-					//TODO make sure <tspan> is handled correctly
-
-					if (currStyle.getFontSize().equals(""))
-					{
-						currStyle.setFontSize(parentStyle.getFontSize());
-					}
-
-					if (currStyle.getFontFamily().equals(""))
-					{
-						currStyle.setFontFamily(parentStyle.getFontFamily());
-					}
-
-					Element el = (Element) currChild;
-					setSvgStyle(el, currStyle);
-
-					//TODO merge possible transform matrices
-					if(parTr.contains("matrix"))
-					{
-						Element currEl = (Element) currChild;
-						String currTr = currEl.getAttribute("transform");
-
-						if(currTr.contains("matrix"))
-						{
-							//combine matrices
-							currEl.setAttribute("transform", multiplyStringMatrices(currTr, parTr, i));
-						}
-						else
-						{
-							//copy group matrix
-							currEl.setAttribute("transform", parTr);
-						}
-					}
-
-					if (currChild.getNodeName().equals("g"))
-					{
-						flattenGroupsStyle(currChild);
-					}
-				}
-			}
-
-			setSvgStyle((Element) parent, new XmlStyle());
-		}
-	}
-
-	/**
-	 * Removes groups from parent node and all of its children
-	 * @param parent parent node
-	 */
-	private static void removeGroupsSvg(Node parent)
-	{
-		if(parent != null)
-		{
-			boolean foundGroup = true;
-
-			while (foundGroup)
-			{
-				NodeList children = parent.getChildNodes();
-				foundGroup = false;
-
-				for (int i = 0; i < children.getLength(); i++)
-				{
-					Node currChild = children.item(i);
-
-					if (currChild.getNodeType() == Node.ELEMENT_NODE)
-					{
-						if(currChild.getNodeName().equals("g"))
-						{
-							foundGroup = true;
-							Node nextChild = currChild.getFirstChild();
-
-							while (nextChild != null)
-							{
-								Node childToMove = nextChild;
-								nextChild = childToMove.getNextSibling();
-								parent.insertBefore(childToMove, currChild);
-							}
-
-							parent.removeChild(currChild);
-						}
-					}
-				}
-			}
-		}
-	}
-
-	/**
-	 * Applies the desired style to the element, not overriding any existing attribute
-	 * @param element the element that the style will be applied to
-	 * @param style style being applied to the element
-	 */
-	private static void setSvgStyle(Element element, XmlStyle style)
-	{
-		// TODO Auto-generated method stub
-		String s = style.getStrokeColor();
-
-		if (s != "")
-		{
-			element.setAttribute("stroke", s);
-		}
-
-		s = style.getFillColor();
-
-		if (s != "")
-		{
-			element.setAttribute("fill", s);
-		}
-
-		s = style.getStrokeWidth();
-
-		if (s != "")
-		{
-			element.setAttribute("stroke-width", s);
-		}
-
-		s = style.getLineJoin();
-
-		if (s != "")
-		{
-			element.setAttribute("stroke-linejoin", s);
-		}
-
-		s = style.getLineCap();
-
-		if (s != "")
-		{
-			element.setAttribute("stroke-linecap", s);
-		}
-
-		s = style.getMiterLimit();
-
-		if (s != "")
-		{
-			element.setAttribute("stroke-miterlimit", s);
-		}
-
-		s = style.getDashPattern();
-
-		if (s != "")
-		{
-			element.setAttribute("stroke-dasharray", s);
-		}
-
-		s = style.getAlpha();
-
-		if (s != "")
-		{
-			element.setAttribute("opacity", s);
-		}
-
-		s = style.getStrokeAlpha();
-
-		if (s != "")
-		{
-			element.setAttribute("stroke-opacity", s);
+			options = Svg2XmlOptions.parseArgs(args);
 		}
-
-		s = style.getFillAlpha();
-
-		if (s != "")
+		catch (IllegalArgumentException e)
 		{
-			element.setAttribute("fill-opacity", s);
+			System.err.println(e.getMessage());
+			System.err.println(Svg2XmlOptions.USAGE);
+			System.exit(1);
 		}
 
-		//TODO make sure <tspan> is handled correctly
-		s = style.getFontColor();
-
-		if (s != "")
+		if (options == null)
 		{
-			Element e = (Element) element.getElementsByTagName("tspan").item(0);
-
-			if (e != null)
-			{
-				e.setAttribute("fill", s);
-			}
+			System.out.println(Svg2XmlOptions.USAGE);
+			return;
 		}
 
-		s = style.getFontSize();
-
-		if (s != "")
+		if (options.getSourceFiles().length == 0)
 		{
-			Element e = (Element) element.getElementsByTagName("tspan").item(0);
-
-			if (e != null)
-			{
-				e.setAttribute("font-size", s);
-			}
+			System.err.println("No SVG files found");
+			System.exit(1);
 		}
 
+		Svg2Xml converter = new Svg2Xml(options);
+		ArrayList<File> failedFiles = converter.getFailedFiles();
 
-	}
-
-	/**
-	 * @param root root element
-	 * @param defsTable
-	 * @return removes defs and inserts them inline in use places
-	 */
-	private static void parseUses(Node root, Map<String, Node> defsTable)
-	{
-		if (root != null)
-		{
-			NodeList children = root.getChildNodes();
-
-			if (children.getLength() > 0)
-			{
-				for (int i = 0; i < children.getLength(); i++)
-				{
-					Node currChild = children.item(i);
-
-					if (currChild.getNodeType() == Node.ELEMENT_NODE)
-					{
-						parseUses(currChild, defsTable);
-						Element currEl = (Element) currChild; 
-
-						if (currChild.getNodeName().toLowerCase().equals("use"))
-						{
-							NamedNodeMap attr = currChild.getAttributes();
-							Node defNode = attr.getNamedItem("xlink:href");
-							String defName = defNode.getNodeValue();
-							defName = defName.substring(1);
-							Node def = defsTable.get(defName);
-
-							Node newNode = def.cloneNode(true);
-							Element newGroup = root.getOwnerDocument().createElement("g");
-							String tr = "matrix(1 0 0 1 " + currEl.getAttribute("x") + " " + currEl.getAttribute("y") + ")";
-							newGroup.setAttribute("transform", tr);
-							Element newElement = (Element) newNode;
-
-							attr.removeNamedItem("xlink:href");
-
-							if (attr.getNamedItem("x") != null && !attr.getNamedItem("x").equals(""))
-							{
-								attr.removeNamedItem("x");
-							}
-
-							if (attr.getNamedItem("y") != null && !attr.getNamedItem("y").equals(""))
-							{
-								attr.removeNamedItem("y");
-							}
-
-							for (int j = 0; j < attr.getLength(); j++)
-							{
-								newElement.setAttribute(attr.item(j).getNodeName(), attr.item(j).getNodeValue());
-							}
-
-							newGroup.appendChild(newNode);
-							root.replaceChild(newGroup, currChild);
-						}
-					}
-				}
-			}
-		}
-	}
-
-	/**
-	 * @param root root element
-	 * @return map of defs found in the document
-	 */
-	private Map<String, Node> parseDefs(Node root)
-	{
-		if (root != null)
+		if (!failedFiles.isEmpty())
 		{
-			Map<String, Node> defsTable = new Hashtable<String, Node>();
-			NodeList children = root.getChildNodes();
+			// the libraries are written without these stencils, the exit status lets batch jobs notice
+			System.err.println("Conversion failed for " + failedFiles.size() + " of " + options.getSourceFiles().length + " SVG files:");
 
-			if (children.getLength() > 0)
+			for (int i = 0; i < failedFiles.size(); i++)
 			{
-				for (int i = 0; i < children.getLength(); i++)
-				{
-					Node currChild = children.item(i);
-
-					if (currChild.getNodeType() == Node.ELEMENT_NODE)
-					{
-						Element currEl = (Element) currChild;
-
-						if (!currEl.getAttribute("id").equals(""))
-						{
-							defsTable.put(currEl.getAttribute("id"), currEl);
-						}
-
-						defsTable.putAll(parseDefs(currChild));
-					}
-				}
+				System.err.println("  " + failedFiles.get(i).getPath());
 			}
 
-			return defsTable;
-		}
-
-		return null;
-	}
-
-	/**
-	 * Returns a new document for the given XML string.
-	 * 
-	 * @param xml
-	 *            String that represents the XML data.
-	 * @return Returns a new XML document.
-	 */
-	static Document parseXml(String xml)
-	{
-		try
-		{
-			DocumentBuilderFactory docBuilderFactory = DocumentBuilderFactory.newInstance();
-			DocumentBuilder docBuilder = docBuilderFactory.newDocumentBuilder();
-
-			return docBuilder.parse(new InputSource(new StringReader(xml)));
-		}
-		catch (Exception e)
-		{
-			e.printStackTrace();
+			System.err.println("The libraries are generated without them in:" + converter.getDestFolders());
+			System.exit(1);
 		}
 
-		return null;
+		System.out.println("Conversion completed.\nThe libraries are generated in:" + converter.getDestFolders());
 	}
 
 	/**
 	 * Reads constrainst from config doc
-	 * @param constraintsXml stencil config doc in string format
-	 * @return ArrayList<Connection> of data read from constraintsXml
+	 * @param configDoc parsed stencil config doc
+	 * @return ArrayList<Connection> of data read from configDoc
 	 */
-	public static ArrayList<Connection> getConstraintsFromXml(String constraintsXml)
+	public static ArrayList<Connection> getConstraintsFromXml(Document configDoc)
 	{
 		ArrayList<Connection> connectionList = new ArrayList<Connection>();
 
-		if (constraintsXml != null && !constraintsXml.equals(""))
-		{
-			Document configDoc = parseXml(constraintsXml);
-			NodeList connectionsRootList = configDoc.getElementsByTagName("connections");
+		NodeList connectionsRootList = configDoc.getElementsByTagName("connections");
 
-			if (connectionsRootList != null)
+		if (connectionsRootList != null)
+		{
+			for (int i = 0; i < connectionsRootList.getLength(); i++)
 			{
-				for (int i = 0; i < connectionsRootList.getLength(); i++)
-				{
-					Connection currConnection = new Connection();
-					Element connectionRoot = (Element) connectionsRootList.item(i);
-					currConnection.setName(connectionRoot.getAttribute("name"));
-					currConnection.setId(connectionRoot.getAttribute("id"));
-					NodeList constraintList = connectionRoot.getChildNodes();
+				Connection currConnection = new Connection();
+				Element connectionRoot = (Element) connectionsRootList.item(i);
+				currConnection.setName(connectionRoot.getAttribute("name"));
+				currConnection.setId(connectionRoot.getAttribute("id"));
+				NodeList constraintList = connectionRoot.getChildNodes();
 
-					if (constraintList != null)
+				if (constraintList != null)
+				{
+					for (int j = 0; j < constraintList.getLength(); j++)
 					{
-						for (int j = 0; j < constraintList.getLength(); j++)
-						{
-							Node currNode = constraintList.item(j);
-							Element currConstraint = null;
+						Node currNode = constraintList.item(j);
+						Element currConstraint = null;
 
-							if (currNode instanceof Element)
+						if (currNode instanceof Element)
+						{
+							currConstraint = (Element) currNode;
+							Constraint newConstraint = new Constraint();
+							newConstraint.setName(currConstraint.getAttribute("name"));
+							newConstraint.setX(Double.valueOf(currConstraint.getAttribute("x")));
+							newConstraint.setY(Double.valueOf(currConstraint.getAttribute("y")));
+							boolean perimeter = false;
+
+							if (currConstraint.getAttribute("perimeter").equals("1"))
 							{
-								currConstraint = (Element) currNode;
-								Constraint newConstraint = new Constraint();
-								newConstraint.setName(currConstraint.getAttribute("name"));
-								newConstraint.setX(Double.valueOf(currConstraint.getAttribute("x")));
-								newConstraint.setY(Double.valueOf(currConstraint.getAttribute("y")));
-								boolean perimeter = false;
-
-								if (currConstraint.getAttribute("perimeter").equals("1"))
-								{
-									perimeter = true;
-								}
-
-								newConstraint.setPerimeter(perimeter);
-								currConnection.addConstraint(newConstraint);
+								perimeter = true;
 							}
+
+							newConstraint.setPerimeter(perimeter);
+							currConnection.addConstraint(newConstraint);
 						}
 					}
-
-					connectionList.add(currConnection);
 				}
 
-				return connectionList;
-			}
-			else
-			{
-				return null;
+				connectionList.add(currConnection);
 			}
+
+			return connectionList;
 		}
 		else
 		{
@@ -2175,16 +1456,9 @@ public class Svg2Xml
 	 */
 	public static void printDocument(Document doc, OutputStream out) 
 	{
-		TransformerFactory tf = TransformerFactory.newInstance();
-		Transformer transformer;
 		try
 		{
-			transformer = tf.newTransformer();
-			transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
-			transformer.setOutputProperty(OutputKeys.METHOD, "xml");
-			transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-			transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
-			transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4");
+			Transformer transformer = XmlResources.getTransformer();
 
 			try
 			{
@@ -2213,16 +1487,9 @@ public class Svg2Xml
 	 */
 	public static String printDocumentString(Document doc, OutputStream out) 
 	{
-		TransformerFactory tf = TransformerFactory.newInstance();
-		Transformer transformer;
 		try
 		{
-			transformer = tf.newTransformer();
-			transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
-			transformer.setOutputProperty(OutputKeys.METHOD, "xml");
-			transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-			transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
-			transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4");
+			Transformer transformer = XmlResources.getTransformer();
 
 			try
 			{
@@ -2247,34 +1514,26 @@ public class Svg2Xml
 
 	/**
 	 * Creates the foundation XML for the stencil, based on destConfigDoc (which is generated from the group config XML and stencil config XML)
-	 * @param destDoc the backbone is created in destDoc 
 	 * @param destConfigDoc configuration of the destination doc
 	 * @param srcSVGDoc 
 	 * @param shapeName name of the stencil
+	 * @return writer of the stencil, with the shape attributes and connections already set
 	 */
-	private static void createBackbone(Document destDoc, XmlConfig destConfigDoc, String stencilName, Document srcSVGDoc, ArrayList <Constraint> svgConnections)
+	private static StencilWriter createBackbone(XmlConfig destConfigDoc, String stencilName, Document srcSVGDoc, ArrayList <Constraint> svgConnections)
 	{
-		Element root = destDoc.createElement("shape");
+		StencilWriter root = new StencilWriter(destConfigDoc.isBackground());
 		stencilName = stencilName.replaceAll("_", " ");
 		root.setAttribute("name", stencilName);
 		root.setAttribute("aspect", destConfigDoc.getAspectString());
 		root.setAttribute("strokewidth", destConfigDoc.getStrokewidth());
-		double s = destConfigDoc.getRelativeScalingRatio();
 
 		if (destConfigDoc.isCalculateBorder())
 		{
+			double s = Shape2Xml.getScale(destConfigDoc);
 			double w = Math.round(destConfigDoc.getStencilBoundsX() * s * 1000.0) / 1000.0;
 			double h = Math.round(destConfigDoc.getStencilBoundsY() * s * 1000.0) / 1000.0;
-			
-			if (!destConfigDoc.isRelativeScaling())
-			{
-				double sc = Math.min(destConfigDoc.getAbsoluteScalingX() / destConfigDoc.getStencilBoundsX(), destConfigDoc.getAbsoluteScalingY() / destConfigDoc.getStencilBoundsY());
-				w = Math.round(destConfigDoc.getStencilBoundsX() * sc * 1000.0) / 1000.0;
-				h = Math.round(destConfigDoc.getStencilBoundsY() * sc * 1000.0) / 1000.0;
-			}
-			
-			root.setAttribute("w", String.valueOf(w));
-			root.setAttribute("h", String.valueOf(h));
+			root.setAttribute("w", w);
+			root.setAttribute("h", h);
 		}
 		else
 		{
@@ -2283,16 +1542,14 @@ public class Svg2Xml
 			String height = svgEl.getAttribute("height");
 			width = removeUnits(width);
 			height = removeUnits(height);
+			double s = destConfigDoc.getRelativeScalingRatio();
 			double w = Double.valueOf(width) * s;
 			double h = Double.valueOf(height) * s;
-			root.setAttribute("w", Double.toString(w));
-			root.setAttribute("h", Double.toString(h));
+			root.setAttribute("w", w);
+			root.setAttribute("h", h);
 		}
 
-		destDoc.appendChild(root);
-
-		Element connRoot = destDoc.createElement("connections");
-		root.appendChild(connRoot);
+		StencilWriter.Block connRoot = root.getConnections();
 
 		Connection connection = destConfigDoc.getConnection();
 		ArrayList <Constraint> constraint = null;
@@ -2306,6 +1563,8 @@ public class Svg2Xml
 		{
 			if (constraint != null)
 			{
+				// a copy, so the connection of the config isn't changed when the stencil is written again at another scale
+				constraint = new ArrayList<Constraint>(constraint);
 				constraint.addAll(svgConnections);
 			}
 			else
@@ -2318,290 +1577,17 @@ public class Svg2Xml
 		{
 			for (int i = 0; i < constraint.size(); i++)
 			{
-				Element currConstraint = destDoc.createElement("constraint");
 				Constraint srcConstraint = constraint.get(i);
-				currConstraint.setAttribute("x", String.valueOf(srcConstraint.getX()));
-				currConstraint.setAttribute("y", String.valueOf(srcConstraint.getY()));
-				currConstraint.setAttribute("name", srcConstraint.getName());
-				currConstraint.setAttribute("perimeter", srcConstraint.getPerimeter());
-				connRoot.appendChild(currConstraint);
-			}
-		}
-		
-		root.appendChild(connRoot);
-
-		if (destConfigDoc.isBackground())
-		{
-			root.appendChild(destDoc.createElement("background"));
-		}
-
-		root.appendChild(destDoc.createElement("foreground"));
-	}
-
-	/**
-	 * 
-	 * @param node
-	 * @return first child element of <b>node</b> or null if no children
-	 */
-	private Element getFirstChildElement(Node node)
-	{
-		NodeList children = node.getChildNodes();
-
-		if (children.getLength() > 0)
-		{
-			for (int i = 0; i < children.getLength(); i++)
-			{
-				Node child = children.item(i);
-
-				if(child.getNodeType() == Node.ELEMENT_NODE)
-				{
-					return (Element) child;
-				}
-			}
-		}
-
-		return null;
-	}
-
-	/**
-	 * @param matrix1
-	 * @param matrix2
-	 * @param roundDec decimals to round to
-	 * @return matrix1 * matrix2
-	 */
-	private static String multiplyStringMatrices(String matrix1, String matrix2, int roundDec)
-	{
-		if ((matrix1 == null || !matrix1.contains("matrix")) || (matrix2 == null || !matrix2.contains("matrix")))
-		{
-			return null;
-		}
-
-		double a1=0;
-		double b1=0;
-		double c1=0;
-		double d1=0;
-		double e1=0;
-		double f1=0;
-		String a1String;
-		String b1String;
-		String c1String;
-		String d1String;
-		String e1String;
-		String f1String;
-
-		matrix1 = matrix1.replaceAll(",", " ");
-		matrix1 = matrix1.replaceAll("  ", " ");
-		int startCurrIndex = matrix1.indexOf("matrix(");
-		int endCurrIndex = matrix1.indexOf(" ", startCurrIndex);
-		a1String = matrix1.substring(startCurrIndex+7, endCurrIndex);
-
-		startCurrIndex = endCurrIndex + 1;
-		endCurrIndex = matrix1.indexOf(" ", startCurrIndex);
-		b1String = matrix1.substring(startCurrIndex, endCurrIndex);
-
-		startCurrIndex = endCurrIndex + 1;
-		endCurrIndex = matrix1.indexOf(" ", startCurrIndex);
-		c1String = matrix1.substring(startCurrIndex, endCurrIndex);
-
-		startCurrIndex = endCurrIndex + 1;
-		endCurrIndex = matrix1.indexOf(" ", startCurrIndex);
-		d1String = matrix1.substring(startCurrIndex, endCurrIndex);
-
-		startCurrIndex = endCurrIndex + 1;
-		endCurrIndex = matrix1.indexOf(" ", startCurrIndex);
-		e1String = matrix1.substring(startCurrIndex, endCurrIndex);
-
-		startCurrIndex = endCurrIndex + 1;
-		endCurrIndex = matrix1.indexOf(")", startCurrIndex);
-		f1String = matrix1.substring(startCurrIndex, endCurrIndex);
-
-		a1 = Double.valueOf(a1String);
-		b1 = Double.valueOf(b1String);
-		c1 = Double.valueOf(c1String);
-		d1 = Double.valueOf(d1String);
-		e1 = Double.valueOf(e1String);
-		f1 = Double.valueOf(f1String);
-
-		Double[][] A = new Double[3][3];
-		A[0][0] = a1;
-		A[0][1] = c1;
-		A[0][2] = e1;
-		A[1][0] = b1;
-		A[1][1] = d1;
-		A[1][2] = f1;
-		A[2][0] = 0.0;
-		A[2][1] = 0.0;
-		A[2][2] = 1.0;
-
-		double a2=0;
-		double b2=0;
-		double c2=0;
-		double d2=0;
-		double e2=0;
-		double f2=0;
-		String a2String;
-		String b2String;
-		String c2String;
-		String d2String;
-		String e2String;
-		String f2String;
-
-		matrix2 = matrix2.replaceAll(",", " ");
-		matrix2 = matrix2.replaceAll("  ", " ");
-		startCurrIndex = matrix2.indexOf("matrix(");
-		endCurrIndex = matrix2.indexOf(" ", startCurrIndex);
-		a2String = matrix2.substring(startCurrIndex+7, endCurrIndex);
-
-		startCurrIndex = endCurrIndex + 1;
-		endCurrIndex = matrix2.indexOf(" ", startCurrIndex);
-		b2String = matrix2.substring(startCurrIndex, endCurrIndex);
-
-		startCurrIndex = endCurrIndex + 1;
-		endCurrIndex = matrix2.indexOf(" ", startCurrIndex);
-		c2String = matrix2.substring(startCurrIndex, endCurrIndex);
-
-		startCurrIndex = endCurrIndex + 1;
-		endCurrIndex = matrix2.indexOf(" ", startCurrIndex);
-		d2String = matrix2.substring(startCurrIndex, endCurrIndex);
-
-		startCurrIndex = endCurrIndex + 1;
-		endCurrIndex = matrix2.indexOf(" ", startCurrIndex);
-		e2String = matrix2.substring(startCurrIndex, endCurrIndex);
-
-		startCurrIndex = endCurrIndex + 1;
-		endCurrIndex = matrix2.indexOf(")", startCurrIndex);
-		f2String = matrix2.substring(startCurrIndex, endCurrIndex);
-
-		a2 = Double.valueOf(a2String);
-		b2 = Double.valueOf(b2String);
-		c2 = Double.valueOf(c2String);
-		d2 = Double.valueOf(d2String);
-		e2 = Double.valueOf(e2String);
-		f2 = Double.valueOf(f2String);
-
-		Double[][] B = new Double[3][3];
-		B[0][0] = a2;
-		B[0][1] = c2;
-		B[0][2] = e2;
-		B[1][0] = b2;
-		B[1][1] = d2;
-		B[1][2] = f2;
-		B[2][0] = 0.0;
-		B[2][1] = 0.0;
-		B[2][2] = 1.0;
-
-		int mA = A.length;
-		int nA = A[0].length;
-		int mB = B.length;
-		int nB = A[0].length;
-
-		if (nA != mB)
-		{
-			throw new RuntimeException("Illegal matrix dimensions.");
-		}
-
-		double[][] C = new double[mA][nB];
-
-		for (int i = 0; i < mA; i++)
-		{
-			for (int j = 0; j < nB; j++)
-			{
-				for (int k = 0; k < nA; k++)
-				{
-					C[i][j] += (A[i][k] * B[k][j]);
-				}
-			}
-		}
-
-		B[0][0] = a2;
-		B[0][1] = c2;
-		B[0][2] = e2;
-		B[1][0] = b2;
-		B[1][1] = d2;
-		B[1][2] = f2;
-		B[2][0] = 0.0;
-		B[2][1] = 0.0;
-		B[2][2] = 1.0;
-
-		String result = "matrix(" + Shape2Xml.roundToDecimals(C[0][0], roundDec) + " " 
-				+ Shape2Xml.roundToDecimals(C[1][0], roundDec) + " "
-				+ Shape2Xml.roundToDecimals(C[0][1], roundDec) + " "
-				+ Shape2Xml.roundToDecimals(C[1][1], roundDec) + " "
-				+ Shape2Xml.roundToDecimals(C[0][2], roundDec) + " "
-				+ Shape2Xml.roundToDecimals(C[1][2], roundDec) + ")";
-		return result;
-	}
-	
-	/**
-	 * Reads out and removes the connection elements from svgDoc
-	 * @param svgDoc
-	 * @return all the connections (ellipse element with mxConnection="1" attribute)
-	 */
-	private Connection getConnections(Document svgDoc)
-	{
-		Connection connections = new Connection();
-		
-		if (svgDoc != null)
-		{
-			NodeList ellipseList = svgDoc.getElementsByTagName("ellipse");
-
-			if (ellipseList != null)
-			{
-				for (int i = 0; i < ellipseList.getLength(); i++)
-				{
-					Element currEllipse = (Element) ellipseList.item(i);
-					if (currEllipse.getAttribute("mxConnection").equals("1"))
-					{
-						Constraint newConstraint = new Constraint();
-						newConstraint.setName(currEllipse.getAttribute("mxName"));
-						newConstraint.setX(Double.valueOf(currEllipse.getAttribute("cx")));
-						newConstraint.setY(Double.valueOf(currEllipse.getAttribute("cy")));
-						boolean perimeter = false;
-
-						if (currEllipse.getAttribute("mxPerimeter").equals("1"))
-						{
-							perimeter = true;
-						}
-
-						newConstraint.setPerimeter(perimeter);
-						connections.addConstraint(newConstraint);
-					}
-				}
-
-				return connections;
-			}
-		}
-
-		return null;
-	}
-
-	/**
-	 * Reads out and removes the connection elements from svgDoc
-	 * @param svgDoc
-	 * @return all the connections (ellipse element with mxConnection="1" attribute)
-	 */
-	private Document removeConnections(Document svgDoc)
-	{
-		if (svgDoc != null)
-		{
-			NodeList ellipseList = svgDoc.getElementsByTagName("ellipse");
-
-			if (ellipseList != null)
-			{
-				for (int i = 0; i < ellipseList.getLength(); i++)
-				{
-					Element currEllipse = (Element) ellipseList.item(i);
-
-					if (currEllipse.getAttribute("mxConnection").equals("1"))
-					{
-						currEllipse.getParentNode().removeChild(currEllipse);
-						i--;
-					}
-				}
+				connRoot.startElement("constraint");
+				connRoot.attribute("x", srcConstraint.getX());
+				connRoot.attribute("y", srcConstraint.getY());
+				connRoot.attribute("name", srcConstraint.getName());
+				connRoot.attribute("perimeter", srcConstraint.getPerimeter());
+				connRoot.endElement();
 			}
 		}
 
-		return svgDoc;
+		return root;
 	}
 	
 	public static boolean isNumeric(String str) {
@@ -90,9 +90,9 @@ public class Svg2XmlGui implements ActionListener{
 		if (args.length>0)
 		{
 			Svg2Xml.main(args);
+			return;
 		}
 
-
 		JPanel filePanel = new JPanel(new GridLayout(1,2));
 		JPanel settingsPanel = new JPanel();
 		JPanel buttonsPanel = new JPanel();
@@ -217,30 +217,7 @@ public class Svg2XmlGui implements ActionListener{
 		applyValues();
 
 		// Get the selected file
-		File[] files = sourceFileListComponent.getSelectedFiles();
-		ArrayList <File> allFilesList = new ArrayList<File>();
-		
-		for ( File f : files )
-		{
-			if (!f.isDirectory())
-			{
-				// use next line for parsing only *.svg files - a temporary solution until the parser correctly handles a non-svg exception
-    			if (f.getName().toLowerCase().endsWith("svg"))
-    			{
-    				allFilesList.add(f);
-    			}
-			}
-		}
-
-		for ( File f : files )
-		{
-			if (f.isDirectory())
-			{
-				allFilesList.addAll(this.walk(f.getAbsolutePath()));
-			}
-		}
-
-		sourceFiles = allFilesList.toArray(new File[allFilesList.size()]);
+		sourceFiles = Svg2XmlOptions.collectSourceFiles(sourceFileListComponent.getSelectedFiles());
 		destPath = destinationComponent.getSelectedFile();
 		
 		if (destPath==null)
@@ -254,6 +231,25 @@ public class Svg2XmlGui implements ActionListener{
 	}
 
 
+	/**
+	 * @return the settings and the file selection of the GUI, for use by Svg2Xml
+	 */
+	public Svg2XmlOptions getOptions()
+	{
+		Svg2XmlOptions options = new Svg2XmlOptions();
+		options.setCalculateBorder(isCalculateBorder());
+		options.setRelativeScaling(isRelativeScaling());
+		options.setRelativeScaleRatio(getRelativeScaleRatio());
+		options.setAbsoluteScalingX(getAbsoluteScalingX());
+		options.setAbsoluteScalingY(getAbsoluteScalingY());
+		options.setRoundCoords(isRoundCoords());
+		options.setDecimalsToRound(getDecimalsToRound());
+		options.setSelectedFiles(sourceFileListComponent.getSelectedFiles());
+		options.setSourceFiles(sourceFiles);
+		options.setDestPath(destPath);
+		return options;
+	}
+
 	/**
 	 * 
 	 */
@@ -469,30 +465,6 @@ public class Svg2XmlGui implements ActionListener{
 	// reads all files from the selected path
 	public ArrayList<File> walk( String path ) 
 	{
-        File root = new File( path );
-        File[] list = root.listFiles();
-        ArrayList <File> endList = new ArrayList<File>();
-
-        for ( File f : list ) 
-        {
-            if (!f.isDirectory()) 
-            {
-				// use next line for parsing only *.svg files - a temporary solution until the parser correctly handles a non-svg exception
-    			if (f.getName().toLowerCase().endsWith("svg"))
-    			{
-                	endList.add(f);
-    			}
-            }
-        }
-        
-        for ( File f : list ) 
-        {
-            if ( f.isDirectory() ) 
-            {
-                endList.addAll(walk( f.getAbsolutePath()));
-            }
-        }
-        
-        return endList;
-    }
+		return Svg2XmlOptions.walk(path);
+	}
 }
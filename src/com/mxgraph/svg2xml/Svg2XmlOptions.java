@@ -0,0 +1,514 @@
+/**
+ * Copyright (c) 2013, JGraph
+ */
+
+package com.mxgraph.svg2xml;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Conversion settings for Svg2Xml, independent of any UI. Filled in either by
+ * Svg2XmlGui or from the command line arguments (see parseArgs)
+ */
+public class Svg2XmlOptions
+{
+	public static final String USAGE = "Usage: java -classpath classes com.mxgraph.svg2xml.Svg2Xml [options] <source>...\n"
+			+ "  <source>                     SVG file(s) or folder(s), folders are processed recursively\n"
+			+ "  -d, --dest <folder>          destination folder of the generated libraries (required)\n"
+			+ "  -s, --scale <ratio>          relative scaling, dest/src (default 1.0)\n"
+			+ "  -n, --normalize <x> <y>      normalize the stencil size to x*y px instead of relative scaling\n"
+			+ "      --targets <list>         write the libraries at several sizes from one read of the SVGs, each to its own subfolder: ratios and/or sizes, e.g. 1,0.5,100x100\n"
+			+ "  -r, --round <decimals>       round coordinates to the given number of decimals (default 3)\n"
+			+ "      --no-border              read the stencil size from the SVG instead of calculating the border\n"
+			+ "  -t, --threads <count>        number of conversion threads (default 1)\n"
+			+ "  -c, --cache <folder>         reuse the stencils converted by earlier runs from this folder, if nothing they depend on changed\n"
+			+ "      --stream                 read the SVGs with a streaming parser instead of building a document, if possible\n"
+			+ "      --optimize-styles        rewrite the style elements and save/restore points of the stencils to make them smaller\n"
+			+ "      --simplify               drop the points of straight runs of lines that are within the rounding precision\n"
+			+ "      --dedup <mode>           find stencils of a library that only differ in their name: report, collapse (keep the first) or alias (collapse and write an alias map)\n"
+			+ "  -m, --metrics <json|csv>     write the time and allocations of every conversion stage to conversion-metrics.json or .csv in the destination folder\n"
+			+ "  -h, --help                   prints this message";
+
+	//true: calculate border
+	//false: read from source SVG if false
+	private boolean calculateBorder = true;
+
+	//use relative scaling (used if you want to change the size of resulting XMLs)
+	private boolean relativeScaling = true;
+
+	// scaling ratio used if relativeScaling=true (source SVG / destination XML)
+	private double relativeScaleRatio = 1.0;
+
+	//every stencil will be absoluteScalingX in X size, if relativeScaling=false
+	private double absoluteScalingX = 100;
+
+	//every stencil will be absoluteScalingY in Y size, if relativeScaling=false
+	private double absoluteScalingY = 100;
+
+	//sizes the libraries are written at, each to its own subfolder of destPath. If empty, the scaling above is used and the libraries are written to destPath.
+	private ArrayList<ScaleTarget> targets = new ArrayList<ScaleTarget>();
+
+	//round coords to reduce XML size
+	private boolean roundCoords = true;
+
+	//round to decimals (used with roundCoords=true)
+	private int decimalsToRound = 3;
+
+	//number of threads used for the conversion
+	private int threads = 1;
+
+	//folder of the conversion cache, null if stencils are always converted
+	private File cacheFolder = null;
+
+	//read the SVGs with SvgStreamReader, falling back to a document if it's not possible
+	private boolean streamInput = false;
+
+	//rewrite the style elements of the stencils with StyleOptimizer
+	private boolean optimizeStyles = false;
+
+	//simplify the runs of lines of paths and polylines with PathSimplifier
+	private boolean simplifyPaths = false;
+
+	//handling of identical stencils in a library (LibraryWriter.DEDUP_REPORT, DEDUP_COLLAPSE or DEDUP_ALIAS), null if they aren't looked for
+	private String dedupMode = null;
+
+	//format of the metrics report (ConversionMetrics.FORMAT_JSON or FORMAT_CSV), null if no report is written
+	private String metricsFormat = null;
+
+	//the files and folders as they were selected, used as the root of group naming
+	private File[] selectedFiles = new File[0];
+
+	//every SVG file that will be converted, files of the same folder must follow each other
+	private File[] sourceFiles = new File[0];
+
+	private File destPath;
+
+	/**
+	 * Parses command line arguments into a new options object
+	 * @param args command line arguments, see USAGE
+	 * @return options read from <b>args</b>, or null if help was requested
+	 * @throws IllegalArgumentException if the arguments are invalid
+	 */
+	public static Svg2XmlOptions parseArgs(String[] args)
+	{
+		Svg2XmlOptions options = new Svg2XmlOptions();
+		ArrayList<File> selected = new ArrayList<File>();
+
+		for (int i = 0; i < args.length; i++)
+		{
+			String arg = args[i];
+
+			if (arg.equals("-h") || arg.equals("--help"))
+			{
+				return null;
+			}
+			else if (arg.equals("-d") || arg.equals("--dest"))
+			{
+				options.setDestPath(new File(getValue(args, ++i, arg)).getAbsoluteFile());
+			}
+			else if (arg.equals("-s") || arg.equals("--scale"))
+			{
+				options.setRelativeScaling(true);
+				options.setRelativeScaleRatio(getDouble(args, ++i, arg));
+			}
+			else if (arg.equals("-n") || arg.equals("--normalize"))
+			{
+				options.setRelativeScaling(false);
+				options.setAbsoluteScalingX(getDouble(args, ++i, arg));
+				options.setAbsoluteScalingY(getDouble(args, ++i, arg));
+			}
+			else if (arg.equals("--targets"))
+			{
+				ArrayList<ScaleTarget> targets = new ArrayList<ScaleTarget>();
+
+				ArrayList<String> names = new ArrayList<String>();
+
+				for (String target : getValue(args, ++i, arg).split(","))
+				{
+					ScaleTarget scaleTarget = ScaleTarget.parse(target.trim());
+
+					// two targets with the same name would write to the same library files
+					if (names.contains(scaleTarget.getName()))
+					{
+						throw new IllegalArgumentException("Duplicate scale target: " + target.trim());
+					}
+
+					names.add(scaleTarget.getName());
+					targets.add(scaleTarget);
+				}
+
+				options.setTargets(targets);
+			}
+			else if (arg.equals("-r") || arg.equals("--round"))
+			{
+				options.setRoundCoords(true);
+				options.setDecimalsToRound((int) getDouble(args, ++i, arg));
+			}
+			else if (arg.equals("--no-border"))
+			{
+				options.setCalculateBorder(false);
+			}
+			else if (arg.equals("-t") || arg.equals("--threads"))
+			{
+				options.setThreads((int) getDouble(args, ++i, arg));
+			}
+			else if (arg.equals("-c") || arg.equals("--cache"))
+			{
+				options.setCacheFolder(new File(getValue(args, ++i, arg)).getAbsoluteFile());
+			}
+			else if (arg.equals("--stream"))
+			{
+				options.setStreamInput(true);
+			}
+			else if (arg.equals("--optimize-styles"))
+			{
+				options.setOptimizeStyles(true);
+			}
+			else if (arg.equals("--simplify"))
+			{
+				options.setSimplifyPaths(true);
+			}
+			else if (arg.equals("--dedup"))
+			{
+				String mode = getValue(args, ++i, arg).toLowerCase();
+
+				if (!mode.equals(LibraryWriter.DEDUP_REPORT) && !mode.equals(LibraryWriter.DEDUP_COLLAPSE) && !mode.equals(LibraryWriter.DEDUP_ALIAS))
+				{
+					throw new IllegalArgumentException("Invalid dedup mode: " + mode);
+				}
+
+				options.setDedupMode(mode);
+			}
+			else if (arg.equals("-m") || arg.equals("--metrics"))
+			{
+				String format = getValue(args, ++i, arg).toLowerCase();
+
+				if (!format.equals(ConversionMetrics.FORMAT_JSON) && !format.equals(ConversionMetrics.FORMAT_CSV))
+				{
+					throw new IllegalArgumentException("Invalid metrics format: " + format);
+				}
+
+				options.setMetricsFormat(format);
+			}
+			else if (arg.startsWith("-") && arg.length() > 1)
+			{
+				throw new IllegalArgumentException("Unknown option: " + arg);
+			}
+			else
+			{
+				File file = new File(arg).getAbsoluteFile();
+
+				if (!file.exists())
+				{
+					throw new IllegalArgumentException("Source doesn't exist: " + arg);
+				}
+
+				selected.add(file);
+			}
+		}
+
+		if (options.getDestPath() == null)
+		{
+			throw new IllegalArgumentException("No destination folder given");
+		}
+
+		if (selected.isEmpty())
+		{
+			throw new IllegalArgumentException("No source file or folder given");
+		}
+
+		options.setSelectedFiles(selected.toArray(new File[selected.size()]));
+		options.setSourceFiles(collectSourceFiles(options.getSelectedFiles()));
+
+		return options;
+	}
+
+	private static String getValue(String[] args, int index, String option)
+	{
+		if (index >= args.length)
+		{
+			throw new IllegalArgumentException("Missing value for " + option);
+		}
+
+		return args[index];
+	}
+
+	private static double getDouble(String[] args, int index, String option)
+	{
+		String value = getValue(args, index, option);
+
+		try
+		{
+			return Double.parseDouble(value);
+		}
+		catch (NumberFormatException e)
+		{
+			throw new IllegalArgumentException("Invalid number for " + option + ": " + value);
+		}
+	}
+
+	/**
+	 * Lists the SVG files to convert. Selected files come first, then the content of selected folders.
+	 * @param selected selected files and folders
+	 * @return all SVG files, the files of a folder following each other
+	 */
+	public static File[] collectSourceFiles(File[] selected)
+	{
+		ArrayList <File> allFilesList = new ArrayList<File>();
+
+		for (File f : selected)
+		{
+			// use next line for parsing only *.svg files - a temporary solution until the parser correctly handles a non-svg exception
+			if (!f.isDirectory() && f.getName().toLowerCase().endsWith("svg"))
+			{
+				allFilesList.add(f);
+			}
+		}
+
+		for (File f : selected)
+		{
+			if (f.isDirectory())
+			{
+				allFilesList.addAll(walk(f.getAbsolutePath()));
+			}
+		}
+
+		return allFilesList.toArray(new File[allFilesList.size()]);
+	}
+
+	// reads all files from the selected path
+	public static ArrayList<File> walk(String path)
+	{
+		File root = new File(path);
+		File[] list = root.listFiles();
+		ArrayList <File> endList = new ArrayList<File>();
+
+		if (list == null)
+		{
+			return endList;
+		}
+
+		// sorted, so that batch runs produce the same libraries on every file system
+		Arrays.sort(list);
+
+		for (File f : list)
+		{
+			if (!f.isDirectory())
+			{
+				// use next line for parsing only *.svg files - a temporary solution until the parser correctly handles a non-svg exception
+				if (f.getName().toLowerCase().endsWith("svg"))
+				{
+					endList.add(f);
+				}
+			}
+		}
+
+		for (File f : list)
+		{
+			if (f.isDirectory())
+			{
+				endList.addAll(walk(f.getAbsolutePath()));
+			}
+		}
+
+		return endList;
+	}
+
+	public boolean isCalculateBorder()
+	{
+		return calculateBorder;
+	}
+
+	public void setCalculateBorder(boolean calculateBorder)
+	{
+		this.calculateBorder = calculateBorder;
+	}
+
+	public boolean isRelativeScaling()
+	{
+		return relativeScaling;
+	}
+
+	public void setRelativeScaling(boolean relativeScaling)
+	{
+		this.relativeScaling = relativeScaling;
+	}
+
+	public double getRelativeScaleRatio()
+	{
+		return relativeScaleRatio;
+	}
+
+	public void setRelativeScaleRatio(double relativeScaleRatio)
+	{
+		this.relativeScaleRatio = relativeScaleRatio;
+	}
+
+	public double getAbsoluteScalingX()
+	{
+		return absoluteScalingX;
+	}
+
+	public void setAbsoluteScalingX(double absoluteScalingX)
+	{
+		this.absoluteScalingX = absoluteScalingX;
+	}
+
+	public double getAbsoluteScalingY()
+	{
+		return absoluteScalingY;
+	}
+
+	public void setAbsoluteScalingY(double absoluteScalingY)
+	{
+		this.absoluteScalingY = absoluteScalingY;
+	}
+
+	public ArrayList<ScaleTarget> getTargets()
+	{
+		return targets;
+	}
+
+	public void setTargets(ArrayList<ScaleTarget> targets)
+	{
+		this.targets = targets;
+	}
+
+	/**
+	 * @return the targets, or the scaling of these options as the single target if no targets are set
+	 */
+	public ArrayList<ScaleTarget> getScaleTargets()
+	{
+		if (!targets.isEmpty())
+		{
+			return targets;
+		}
+
+		ArrayList<ScaleTarget> result = new ArrayList<ScaleTarget>();
+		result.add(new ScaleTarget(relativeScaling, relativeScaleRatio, absoluteScalingX, absoluteScalingY));
+
+		return result;
+	}
+
+	public boolean isRoundCoords()
+	{
+		return roundCoords;
+	}
+
+	public void setRoundCoords(boolean roundCoords)
+	{
+		this.roundCoords = roundCoords;
+	}
+
+	public int getDecimalsToRound()
+	{
+		return decimalsToRound;
+	}
+
+	public void setDecimalsToRound(int decimalsToRound)
+	{
+		this.decimalsToRound = decimalsToRound;
+	}
+
+	public int getThreads()
+	{
+		return threads;
+	}
+
+	public void setThreads(int threads)
+	{
+		this.threads = Math.max(threads, 1);
+	}
+
+	public File getCacheFolder()
+	{
+		return cacheFolder;
+	}
+
+	public void setCacheFolder(File cacheFolder)
+	{
+		this.cacheFolder = cacheFolder;
+	}
+
+	public boolean isStreamInput()
+	{
+		return streamInput;
+	}
+
+	public void setStreamInput(boolean streamInput)
+	{
+		this.streamInput = streamInput;
+	}
+
+	public boolean isOptimizeStyles()
+	{
+		return optimizeStyles;
+	}
+
+	public void setOptimizeStyles(boolean optimizeStyles)
+	{
+		this.optimizeStyles = optimizeStyles;
+	}
+
+	public boolean isSimplifyPaths()
+	{
+		return simplifyPaths;
+	}
+
+	public void setSimplifyPaths(boolean simplifyPaths)
+	{
+		this.simplifyPaths = simplifyPaths;
+	}
+
+	public String getDedupMode()
+	{
+		return dedupMode;
+	}
+
+	public void setDedupMode(String dedupMode)
+	{
+		this.dedupMode = dedupMode;
+	}
+
+	public String getMetricsFormat()
+	{
+		return metricsFormat;
+	}
+
+	public void setMetricsFormat(String metricsFormat)
+	{
+		this.metricsFormat = metricsFormat;
+	}
+
+	public File[] getSelectedFiles()
+	{
+		return selectedFiles;
+	}
+
+	public void setSelectedFiles(File[] selectedFiles)
+	{
+		this.selectedFiles = selectedFiles;
+	}
+
+	public File[] getSourceFiles()
+	{
+		return sourceFiles;
+	}
+
+	public void setSourceFiles(File[] sourceFiles)
+	{
+		this.sourceFiles = sourceFiles;
+	}
+
+	public File getDestPath()
+	{
+		return destPath;
+	}
+
+	public void setDestPath(File destPath)
+	{
+		this.destPath = destPath;
+	}
+}
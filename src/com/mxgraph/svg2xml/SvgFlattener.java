@@ -0,0 +1,1147 @@
+/**
+ * Copyright (c) 2013, JGraph
+ */
+
+package com.mxgraph.svg2xml;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.Set;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Flattens a SVG document for the conversion: style attributes are broken up, gradients are replaced by their average
+ * color, uses are replaced by a copy of their def, the style and matrix transform of the groups are inherited by their
+ * children and the groups are removed. The connection points (ellipses with mxConnection="1") are read out and removed.
+ * <p>
+ * Ids, gradients and use targets are indexed in a first pass (a use can refer to a def later in the document),
+ * everything else is done in a single depth-first traversal, that emits the leaf nodes in drawing order. The children
+ * of the svg element are replaced by these leaves once, at the end.
+ * <p>
+ * SvgStreamReader uses the same steps on the elements it reads, in streaming mode. Then the gradients and the
+ * use targets are added while reading, and a reference to one that isn't known yet throws UnsupportedOperationException.
+ */
+public class SvgFlattener
+{
+	private final Document svgDoc;
+
+	// elements with an id, a later element replaces an earlier one with the same id
+	private final Map<String, Node> defsTable = new Hashtable<String, Node>();
+
+	// gradients in document order
+	private final ArrayList<Element> gradients = new ArrayList<Element>();
+
+	// ids referenced by use elements
+	private final Set<String> useTargets = new HashSet<String>();
+
+	// average color of the gradients by id
+	private final Map<String, String> gradientTable = new Hashtable<String, String>();
+
+	// copies of the use targets as they were before the flattening, the uses are replaced by copies of these
+	private final Map<String, Node> useDefs = new Hashtable<String, Node>();
+
+	// defs being copied into a use, a use of one of these inside its own copy isn't replaced again
+	private final ArrayList<String> expandedDefs = new ArrayList<String>();
+
+	// children of the svg element after the flattening
+	private final ArrayList<Node> flatNodes = new ArrayList<Node>();
+
+	private final ArrayList<Element> elements = new ArrayList<Element>();
+
+	private final Connection connection = new Connection();
+
+	// gradients and use targets are added while reading, references must follow them
+	private final boolean streaming;
+
+	// gradients and defs that were referenced, in streaming mode
+	private final Set<String> referencedIds = new HashSet<String>();
+
+	/**
+	 * @param svgDoc the SVG document, it's changed by flatten
+	 */
+	public SvgFlattener(Document svgDoc)
+	{
+		this(svgDoc, false);
+	}
+
+	/**
+	 * @param svgDoc the SVG document, or the document of the flattened elements in streaming mode
+	 * @param streaming true if the elements are read one by one, see SvgStreamReader
+	 */
+	SvgFlattener(Document svgDoc, boolean streaming)
+	{
+		this.svgDoc = svgDoc;
+		this.streaming = streaming;
+	}
+
+	/**
+	 * Flattens the document. Afterwards the svg element only has the leaf nodes as children.
+	 */
+	public void flatten()
+	{
+		Element root = (Element) svgDoc.getElementsByTagName("svg").item(0);
+
+		if (root == null)
+		{
+			return;
+		}
+
+		indexElements(root);
+
+		for (Element gradient : gradients)
+		{
+			String avgColor = getAvgGradientColor(gradient);
+
+			if (avgColor != null)
+			{
+				gradientTable.put(gradient.getAttribute("id"), avgColor);
+			}
+		}
+
+		for (String id : useTargets)
+		{
+			Node def = defsTable.get(id);
+
+			if (def != null)
+			{
+				useDefs.put(id, def.cloneNode(true));
+			}
+		}
+
+		flattenGroup(root);
+
+		while (root.getFirstChild() != null)
+		{
+			root.removeChild(root.getFirstChild());
+		}
+
+		finish(root);
+	}
+
+	/**
+	 * Appends the emitted nodes to <b>root</b>
+	 */
+	void finish(Element root)
+	{
+		for (Node node : flatNodes)
+		{
+			root.appendChild(node);
+
+			if (node.getNodeType() == Node.ELEMENT_NODE)
+			{
+				elements.add((Element) node);
+			}
+		}
+	}
+
+	/**
+	 * @return the flattened document
+	 */
+	public Document getDocument()
+	{
+		return svgDoc;
+	}
+
+	/**
+	 * @return the children elements of the svg element after the flattening, in drawing order
+	 */
+	public ArrayList<Element> getElements()
+	{
+		return elements;
+	}
+
+	/**
+	 * @return the connection points of the SVG, in document order
+	 */
+	public Connection getConnection()
+	{
+		return connection;
+	}
+
+	/**
+	 * Breaks up the style attribute of the elements under <b>parent</b> into single attributes, and indexes their ids,
+	 * the gradients and the use targets
+	 */
+	private void indexElements(Node parent)
+	{
+		NodeList children = parent.getChildNodes();
+
+		for (int i = 0; i < children.getLength(); i++)
+		{
+			Node currChild = children.item(i);
+
+			if (currChild.getNodeType() == Node.ELEMENT_NODE)
+			{
+				Element currEl = (Element) currChild;
+				breakUpStyle(currEl);
+
+				if (!currEl.getAttribute("id").equals(""))
+				{
+					defsTable.put(currEl.getAttribute("id"), currEl);
+				}
+
+				if (currEl.getNodeName().equals("linearGradient") || currEl.getNodeName().equals("radialGradient"))
+				{
+					gradients.add(currEl);
+				}
+
+				if (isUse(currEl) && currEl.getAttributes().getNamedItem("xlink:href") != null)
+				{
+					useTargets.add(getUseTarget(currEl));
+				}
+
+				indexElements(currChild);
+			}
+		}
+	}
+
+	/**
+	 * Breaks up the style attribute of <b>element</b> into single attributes
+	 */
+	static void breakUpStyle(Element element)
+	{
+		Map<String, String> styles = getStylenames(element.getAttribute("style"));
+		element.removeAttribute("style");
+
+		if (styles != null)
+		{
+			for (Map.Entry<String, String> entry : styles.entrySet())
+			{
+				element.setAttribute(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Inherits the style and transform of <b>parent</b> (the svg element or a group) into its children and emits the
+	 * children that aren't groups. Groups are flattened recursively.
+	 */
+	private void flattenGroup(Element parent)
+	{
+		NodeList children = parent.getChildNodes();
+		XmlStyle parentStyle = Svg2Xml.getStyle(parent);
+		String parTr = parent.getAttribute("transform");
+
+		for (int i = 0; i < children.getLength(); i++)
+		{
+			Node currChild = children.item(i);
+
+			if (currChild.getNodeType() != Node.ELEMENT_NODE)
+			{
+				emit(currChild);
+			}
+			else
+			{
+				Element group = flattenChild((Element) currChild, i, parentStyle, parTr);
+
+				if (group != null)
+				{
+					flattenGroup(group);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Inherits the style and transform of the parent into <b>child</b>. A use is replaced by its def, a child that
+	 * isn't a group is emitted.
+	 * NOTE: for now, only styles as attributes and matrix transformations are applied (which are the most common)
+	 * @param child child element of a group or the svg element
+	 * @param index index of <b>child</b> among the child nodes of the parent
+	 * @param parentStyle style of the parent
+	 * @param parTr transform of the parent
+	 * @return <b>child</b> if it's a group, its children still need to be flattened, else null
+	 */
+	Element flattenChild(Element child, int index, XmlStyle parentStyle, String parTr)
+	{
+		Element currEl = child;
+		replaceGradientRefs(currEl);
+		String expandedDef = null;
+
+		if (isUse(currEl) && !expandedDefs.contains(getUseTarget(currEl)))
+		{
+			expandedDef = getUseTarget(currEl);
+			currEl = expandUse(currEl, expandedDef);
+			expandedDefs.add(expandedDef);
+		}
+
+		boolean isGroup = currEl.getNodeName().equals("g");
+
+		if (!isGroup)
+		{
+			prepareDescendants(currEl);
+		}
+
+		inheritStyle(currEl, parentStyle);
+
+		//TODO merge possible transform matrices
+		if (parTr.contains("matrix"))
+		{
+			String currTr = currEl.getAttribute("transform");
+
+			if (currTr.contains("matrix"))
+			{
+				//combine matrices
+				currEl.setAttribute("transform", multiplyStringMatrices(currTr, parTr, index));
+			}
+			else
+			{
+				//copy group matrix
+				currEl.setAttribute("transform", parTr);
+			}
+		}
+
+		if (expandedDef != null)
+		{
+			// the copy of the def is already there, so it's flattened right away
+			flattenGroup(currEl);
+			expandedDefs.remove(expandedDefs.size() - 1);
+
+			return null;
+		}
+		else if (isGroup)
+		{
+			return currEl;
+		}
+		else if (isConnection(currEl))
+		{
+			addConstraint(currEl);
+		}
+		else
+		{
+			emit(currEl);
+		}
+
+		return null;
+	}
+
+	/**
+	 * Adds a node to the children of the svg element
+	 */
+	void emit(Node node)
+	{
+		flatNodes.add(node);
+	}
+
+	/**
+	 * Adds the average color of a gradient, read while streaming. A gradient that was already referenced
+	 * can't be replaced, as the references used the earlier one.
+	 */
+	void putGradient(Element gradient)
+	{
+		String id = gradient.getAttribute("id");
+		checkNotReferenced(id);
+		String avgColor = getAvgGradientColor(gradient);
+
+		if (avgColor != null)
+		{
+			gradientTable.put(id, avgColor);
+		}
+	}
+
+	/**
+	 * Adds a possible use target, read while streaming
+	 * @param id id of the def
+	 * @param def copy of the def, not changed afterwards. If null, the id can't be used by an use.
+	 */
+	void putUseDef(String id, Node def)
+	{
+		checkNotReferenced(id);
+
+		if (def != null)
+		{
+			useDefs.put(id, def);
+		}
+		else
+		{
+			useDefs.remove(id);
+		}
+	}
+
+	private void checkNotReferenced(String id)
+	{
+		if (referencedIds.contains(id))
+		{
+			throw new UnsupportedOperationException("\"" + id + "\" is defined after it's used");
+		}
+	}
+
+	/**
+	 * Prepares the descendants of an element that isn't flattened: replaces the gradients and the uses
+	 * and reads out and removes the connection points
+	 */
+	private void prepareDescendants(Node parent)
+	{
+		NodeList children = parent.getChildNodes();
+
+		for (int i = 0; i < children.getLength(); i++)
+		{
+			Node currChild = children.item(i);
+
+			if (currChild.getNodeType() == Node.ELEMENT_NODE)
+			{
+				Element currEl = (Element) currChild;
+				replaceGradientRefs(currEl);
+
+				if (isUse(currEl) && !expandedDefs.contains(getUseTarget(currEl)))
+				{
+					String expandedDef = getUseTarget(currEl);
+					currEl = expandUse(currEl, expandedDef);
+					expandedDefs.add(expandedDef);
+					prepareDescendants(currEl);
+					expandedDefs.remove(expandedDefs.size() - 1);
+				}
+				else if (isConnection(currEl))
+				{
+					addConstraint(currEl);
+					parent.removeChild(currEl);
+					i--;
+				}
+				else
+				{
+					prepareDescendants(currEl);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Replaces <b>use</b> with a group, translated to the x and y of the use, holding a copy of its def.
+	 * The other attributes of the use are copied to the def.
+	 * @return the new group
+	 */
+	private Element expandUse(Element use, String defName)
+	{
+		NamedNodeMap attr = use.getAttributes();
+
+		if (streaming)
+		{
+			if (!useDefs.containsKey(defName))
+			{
+				throw new UnsupportedOperationException("the def \"" + defName + "\" isn't read yet or isn't in a defs element");
+			}
+
+			referencedIds.add(defName);
+		}
+
+		Node newNode = useDefs.get(defName).cloneNode(true);
+		Element newGroup = svgDoc.createElement("g");
+		String tr = "matrix(1 0 0 1 " + use.getAttribute("x") + " " + use.getAttribute("y") + ")";
+		newGroup.setAttribute("transform", tr);
+		Element newElement = (Element) newNode;
+
+		attr.removeNamedItem("xlink:href");
+
+		if (attr.getNamedItem("x") != null)
+		{
+			attr.removeNamedItem("x");
+		}
+
+		if (attr.getNamedItem("y") != null)
+		{
+			attr.removeNamedItem("y");
+		}
+
+		for (int j = 0; j < attr.getLength(); j++)
+		{
+			newElement.setAttribute(attr.item(j).getNodeName(), attr.item(j).getNodeValue());
+		}
+
+		newGroup.appendChild(newNode);
+
+		// a streamed child of a group has no parent, as the groups aren't built
+		if (use.getParentNode() != null)
+		{
+			use.getParentNode().replaceChild(newGroup, use);
+		}
+
+		return newGroup;
+	}
+
+	/**
+	 * Applies the style of the parent to the style properties that <b>element</b> doesn't define
+	 */
+	private static void inheritStyle(Element element, XmlStyle parentStyle)
+	{
+		XmlStyle currStyle = Svg2Xml.getStyle(element);
+
+		if (currStyle.getStrokeColor().equals(""))
+		{
+			currStyle.setStrokeColor(parentStyle.getStrokeColor());
+		}
+
+		if (currStyle.getFillColor().equals(""))
+		{
+			currStyle.setFillColor(parentStyle.getFillColor());
+		}
+
+		if (currStyle.getStrokeWidth().equals(""))
+		{
+			currStyle.setStrokeWidth(parentStyle.getStrokeWidth());
+		}
+
+		if (currStyle.getLineJoin().equals(""))
+		{
+			currStyle.setLineJoin(parentStyle.getLineJoin());
+		}
+
+		if (currStyle.getLineCap().equals(""))
+		{
+			currStyle.setLineCap(parentStyle.getLineCap());
+		}
+
+		if (currStyle.getMiterLimit().equals(""))
+		{
+			currStyle.setMiterLimit(parentStyle.getMiterLimit());
+		}
+
+		if (currStyle.getDashPattern().equals(""))
+		{
+			currStyle.setDashPattern(parentStyle.getDashPattern());
+		}
+
+		if (currStyle.isDashed().equals(""))
+		{
+			currStyle.setDashed(parentStyle.isDashed());
+		}
+
+		if (currStyle.getAlpha().equals(""))
+		{
+			currStyle.setAlpha(parentStyle.getAlpha());
+		}
+
+		if (currStyle.getStrokeAlpha().equals(""))
+		{
+			currStyle.setStrokeAlpha(parentStyle.getStrokeAlpha());
+		}
+
+		if (currStyle.getFillAlpha().equals(""))
+		{
+			currStyle.setFillAlpha(parentStyle.getFillAlpha());
+		}
+
+		if (currStyle.getFontColor().equals(""))
+		{
+			currStyle.setFontColor(parentStyle.getFontColor());
+		}
+
+		//TODO inherit font style too
+
+		//TODO make sure <tspan> is handled correctly
+
+		if (currStyle.getFontSize().equals(""))
+		{
+			currStyle.setFontSize(parentStyle.getFontSize());
+		}
+
+		if (currStyle.getFontFamily().equals(""))
+		{
+			currStyle.setFontFamily(parentStyle.getFontFamily());
+		}
+
+		setSvgStyle(element, currStyle);
+	}
+
+	/**
+	 * Replaces the url(#id) fill and stroke of <b>element</b> with the average color of the gradient
+	 */
+	private void replaceGradientRefs(Element element)
+	{
+		String currFill = element.getAttribute("fill");
+
+		if (currFill.contains("url(#"))
+		{
+			element.setAttribute("fill", getGradientColor(getUrlId(currFill)));
+		}
+
+		String currStroke = element.getAttribute("stroke");
+
+		if (currStroke.contains("url(#"))
+		{
+			element.setAttribute("stroke", getGradientColor(getUrlId(currStroke)));
+		}
+	}
+
+	private String getGradientColor(String id)
+	{
+		if (streaming)
+		{
+			if (!gradientTable.containsKey(id))
+			{
+				throw new UnsupportedOperationException("the gradient \"" + id + "\" isn't read yet");
+			}
+
+			referencedIds.add(id);
+		}
+
+		return gradientTable.get(id);
+	}
+
+	private static boolean isUse(Element element)
+	{
+		return element.getNodeName().toLowerCase().equals("use");
+	}
+
+	private static String getUseTarget(Element use)
+	{
+		return use.getAttributes().getNamedItem("xlink:href").getNodeValue().substring(1);
+	}
+
+	private static boolean isConnection(Element element)
+	{
+		return element.getNodeName().equals("ellipse") && element.getAttribute("mxConnection").equals("1");
+	}
+
+	/**
+	 * Adds the connection point <b>ellipse</b> to the connections
+	 */
+	private void addConstraint(Element ellipse)
+	{
+		Constraint newConstraint = new Constraint();
+		newConstraint.setName(ellipse.getAttribute("mxName"));
+		newConstraint.setX(Double.valueOf(ellipse.getAttribute("cx")));
+		newConstraint.setY(Double.valueOf(ellipse.getAttribute("cy")));
+		newConstraint.setPerimeter(ellipse.getAttribute("mxPerimeter").equals("1"));
+		connection.addConstraint(newConstraint);
+	}
+
+	/**
+	 * @param paint fill or stroke value in the url(#id) form
+	 * @return the id, with every "url(#", ")" and space removed
+	 */
+	private static String getUrlId(String paint)
+	{
+		StringBuilder id = new StringBuilder(paint.length());
+		int i = 0;
+
+		while (i < paint.length())
+		{
+			char c = paint.charAt(i);
+
+			if (paint.startsWith("url(#", i))
+			{
+				i += 5;
+			}
+			else
+			{
+				if (c != ')' && c != ' ')
+				{
+					id.append(c);
+				}
+
+				i++;
+			}
+		}
+
+		return id.toString();
+	}
+
+	/**
+	 * @param element linear or radial gradient
+	 * @return the average color of the stops of <b>element</b>, or null if a stop has no color
+	 */
+	private static String getAvgGradientColor(Element element)
+	{
+		if (element != null)
+		{
+			String finalColor;
+			ArrayList<Integer> arrR = new ArrayList<Integer>();
+			ArrayList<Integer> arrG = new ArrayList<Integer>();
+			ArrayList<Integer> arrB = new ArrayList<Integer>();
+
+			NodeList children = element.getChildNodes();
+
+			for (int i = 0; i < children.getLength(); i++)
+			{
+				Node currChild = children.item(i);
+
+				if (currChild.getNodeType() == Node.ELEMENT_NODE)
+				{
+					Element currEl = (Element) currChild;
+
+					if (currChild.getNodeName().equals("stop"))
+					{
+						Color col = new Color(0, 0, 0);
+						String colS = currEl.getAttribute("stop-color");
+
+						if (colS == null || colS.equals("")) 
+						{
+							return null;
+						}
+						else if (colS.charAt(0) == '#')
+						{
+							col = Color.decode(colS);
+						}
+						else 
+						{
+							col = stringToColor(colS);
+						}
+
+						if (col != null)
+						{
+							arrR.add(0, col.getRed());
+							arrG.add(0, col.getGreen());
+							arrB.add(0, col.getBlue());
+						}
+					}
+				}
+			}
+
+			int r = 0;
+			int g = 0;
+			int b = 0;
+
+			for (int i = 0; i < arrR.size(); i++)
+			{
+				r = r + arrR.get(i);
+				g = g + arrG.get(i);
+				b = b + arrB.get(i);
+			}
+
+			if (arrR.size() > 0)
+			{
+				r = r / arrR.size();
+			}
+			else
+			{
+				r = 0;
+			}
+			
+			if (arrR.size() > 0)
+			{
+				g = g / arrG.size();
+			}
+			else
+			{
+				g = 0;
+			}
+			
+			if (arrR.size() > 0)
+			{
+				b = b / arrB.size();
+			}
+			else
+			{
+				b = 0;
+			}
+			
+
+			//		finalColor = "#" + Integer.toString(r) + Integer.toString(g) + Integer.toString(b);
+			finalColor = "#";
+
+			StringBuilder sbr = new StringBuilder();
+			sbr.append(Integer.toHexString(r));
+
+			if (sbr.length() < 2) 
+			{
+				sbr.insert(0, '0'); // pad with leading zero if needed
+			}
+
+			finalColor = finalColor + sbr.toString();
+
+			StringBuilder sbg = new StringBuilder();
+			sbg.append(Integer.toHexString(g));
+
+			if (sbg.length() < 2) 
+			{
+				sbg.insert(0, '0'); // pad with leading zero if needed
+			}
+
+			finalColor = finalColor + sbg.toString();
+
+			StringBuilder sbb = new StringBuilder();
+			sbb.append(Integer.toHexString(b));
+
+			if (sbb.length() < 2) 
+			{
+				sbb.insert(0, '0'); // pad with leading zero if needed
+			}
+
+			finalColor = finalColor + sbb.toString();
+
+			return finalColor;
+		}
+		else
+		{
+			return "";
+		}
+	}
+
+	private static Color stringToColor(String col)
+	{
+		//TODO either add the extended color set too, or find a better solution
+		if (col.equals("black"))
+		{
+			return Color.BLACK;
+		}
+		else if (col.equals("blue"))
+		{
+			return Color.BLUE;
+		}
+		else if (col.equals("cyan"))
+		{
+			return Color.CYAN;
+		}
+		else if (col.equals("darkGray"))
+		{
+			return Color.DARK_GRAY;
+		}
+		else if (col.equals("gray"))
+		{
+			return Color.gray;
+		}
+		else if (col.equals("green"))
+		{
+			return Color.GREEN;
+		}
+		else if (col.equals("yellow"))
+		{
+			return Color.YELLOW;
+		}
+		else if (col.equals("lightGray"))
+		{
+			return Color.LIGHT_GRAY;
+		}
+		else if (col.equals("magenta"))
+		{
+			return Color.MAGENTA;
+		}
+		else if (col.equals("orange"))
+		{
+			return Color.ORANGE;
+		}
+		else if (col.equals("pink"))
+		{
+			return Color.PINK;
+		}
+		else if (col.equals("red"))
+		{
+			return Color.RED;
+		}
+		else if (col.equals("white"))
+		{
+			return Color.WHITE;
+		}
+		else
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the stylenames in a style of the form stylename[;key=value] or an
+	 * empty array if the given style does not contain any stylenames.
+	 * 
+	 * @param style
+	 *            String of the form stylename[;stylename][;key=value].
+	 * @return Returns the stylename from the given formatted string.
+	 */
+	static Map<String, String> getStylenames(String style)
+	{
+		if (style != null && style.length() > 0)
+		{
+			Map<String, String> result = new Hashtable<String, String>();
+
+			if (style != null)
+			{
+				String[] pairs = style.split(";");
+
+				for (int i = 0; i < pairs.length; i++)
+				{
+					String[] keyValue = pairs[i].split(":");
+
+					if (keyValue.length == 2)
+					{
+						result.put(keyValue[0].trim().replaceAll(";", ""), keyValue[1].trim().replaceAll(";", ""));
+					}
+				}
+			}
+			return result;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Applies the desired style to the element, not overriding any existing attribute
+	 * @param element the element that the style will be applied to
+	 * @param style style being applied to the element
+	 */
+	private static void setSvgStyle(Element element, XmlStyle style)
+	{
+		// TODO Auto-generated method stub
+		String s = style.getStrokeColor();
+
+		if (s != "")
+		{
+			element.setAttribute("stroke", s);
+		}
+
+		s = style.getFillColor();
+
+		if (s != "")
+		{
+			element.setAttribute("fill", s);
+		}
+
+		s = style.getStrokeWidth();
+
+		if (s != "")
+		{
+			element.setAttribute("stroke-width", s);
+		}
+
+		s = style.getLineJoin();
+
+		if (s != "")
+		{
+			element.setAttribute("stroke-linejoin", s);
+		}
+
+		s = style.getLineCap();
+
+		if (s != "")
+		{
+			element.setAttribute("stroke-linecap", s);
+		}
+
+		s = style.getMiterLimit();
+
+		if (s != "")
+		{
+			element.setAttribute("stroke-miterlimit", s);
+		}
+
+		s = style.getDashPattern();
+
+		if (s != "")
+		{
+			element.setAttribute("stroke-dasharray", s);
+		}
+
+		s = style.getAlpha();
+
+		if (s != "")
+		{
+			element.setAttribute("opacity", s);
+		}
+
+		s = style.getStrokeAlpha();
+
+		if (s != "")
+		{
+			element.setAttribute("stroke-opacity", s);
+		}
+
+		s = style.getFillAlpha();
+
+		if (s != "")
+		{
+			element.setAttribute("fill-opacity", s);
+		}
+
+		//TODO make sure <tspan> is handled correctly
+		s = style.getFontColor();
+
+		if (s != "")
+		{
+			Element e = (Element) element.getElementsByTagName("tspan").item(0);
+
+			if (e != null)
+			{
+				e.setAttribute("fill", s);
+			}
+		}
+
+		s = style.getFontSize();
+
+		if (s != "")
+		{
+			Element e = (Element) element.getElementsByTagName("tspan").item(0);
+
+			if (e != null)
+			{
+				e.setAttribute("font-size", s);
+			}
+		}
+
+
+	}
+
+	/**
+	 * @param matrix1
+	 * @param matrix2
+	 * @param roundDec decimals to round to
+	 * @return matrix1 * matrix2
+	 */
+	private static String multiplyStringMatrices(String matrix1, String matrix2, int roundDec)
+	{
+		if ((matrix1 == null || !matrix1.contains("matrix")) || (matrix2 == null || !matrix2.contains("matrix")))
+		{
+			return null;
+		}
+
+		double a1=0;
+		double b1=0;
+		double c1=0;
+		double d1=0;
+		double e1=0;
+		double f1=0;
+		String a1String;
+		String b1String;
+		String c1String;
+		String d1String;
+		String e1String;
+		String f1String;
+
+		matrix1 = matrix1.replaceAll(",", " ");
+		matrix1 = matrix1.replaceAll("  ", " ");
+		int startCurrIndex = matrix1.indexOf("matrix(");
+		int endCurrIndex = matrix1.indexOf(" ", startCurrIndex);
+		a1String = matrix1.substring(startCurrIndex+7, endCurrIndex);
+
+		startCurrIndex = endCurrIndex + 1;
+		endCurrIndex = matrix1.indexOf(" ", startCurrIndex);
+		b1String = matrix1.substring(startCurrIndex, endCurrIndex);
+
+		startCurrIndex = endCurrIndex + 1;
+		endCurrIndex = matrix1.indexOf(" ", startCurrIndex);
+		c1String = matrix1.substring(startCurrIndex, endCurrIndex);
+
+		startCurrIndex = endCurrIndex + 1;
+		endCurrIndex = matrix1.indexOf(" ", startCurrIndex);
+		d1String = matrix1.substring(startCurrIndex, endCurrIndex);
+
+		startCurrIndex = endCurrIndex + 1;
+		endCurrIndex = matrix1.indexOf(" ", startCurrIndex);
+		e1String = matrix1.substring(startCurrIndex, endCurrIndex);
+
+		startCurrIndex = endCurrIndex + 1;
+		endCurrIndex = matrix1.indexOf(")", startCurrIndex);
+		f1String = matrix1.substring(startCurrIndex, endCurrIndex);
+
+		a1 = Double.valueOf(a1String);
+		b1 = Double.valueOf(b1String);
+		c1 = Double.valueOf(c1String);
+		d1 = Double.valueOf(d1String);
+		e1 = Double.valueOf(e1String);
+		f1 = Double.valueOf(f1String);
+
+		Double[][] A = new Double[3][3];
+		A[0][0] = a1;
+		A[0][1] = c1;
+		A[0][2] = e1;
+		A[1][0] = b1;
+		A[1][1] = d1;
+		A[1][2] = f1;
+		A[2][0] = 0.0;
+		A[2][1] = 0.0;
+		A[2][2] = 1.0;
+
+		double a2=0;
+		double b2=0;
+		double c2=0;
+		double d2=0;
+		double e2=0;
+		double f2=0;
+		String a2String;
+		String b2String;
+		String c2String;
+		String d2String;
+		String e2String;
+		String f2String;
+
+		matrix2 = matrix2.replaceAll(",", " ");
+		matrix2 = matrix2.replaceAll("  ", " ");
+		startCurrIndex = matrix2.indexOf("matrix(");
+		endCurrIndex = matrix2.indexOf(" ", startCurrIndex);
+		a2String = matrix2.substring(startCurrIndex+7, endCurrIndex);
+
+		startCurrIndex = endCurrIndex + 1;
+		endCurrIndex = matrix2.indexOf(" ", startCurrIndex);
+		b2String = matrix2.substring(startCurrIndex, endCurrIndex);
+
+		startCurrIndex = endCurrIndex + 1;
+		endCurrIndex = matrix2.indexOf(" ", startCurrIndex);
+		c2String = matrix2.substring(startCurrIndex, endCurrIndex);
+
+		startCurrIndex = endCurrIndex + 1;
+		endCurrIndex = matrix2.indexOf(" ", startCurrIndex);
+		d2String = matrix2.substring(startCurrIndex, endCurrIndex);
+
+		startCurrIndex = endCurrIndex + 1;
+		endCurrIndex = matrix2.indexOf(" ", startCurrIndex);
+		e2String = matrix2.substring(startCurrIndex, endCurrIndex);
+
+		startCurrIndex = endCurrIndex + 1;
+		endCurrIndex = matrix2.indexOf(")", startCurrIndex);
+		f2String = matrix2.substring(startCurrIndex, endCurrIndex);
+
+		a2 = Double.valueOf(a2String);
+		b2 = Double.valueOf(b2String);
+		c2 = Double.valueOf(c2String);
+		d2 = Double.valueOf(d2String);
+		e2 = Double.valueOf(e2String);
+		f2 = Double.valueOf(f2String);
+
+		Double[][] B = new Double[3][3];
+		B[0][0] = a2;
+		B[0][1] = c2;
+		B[0][2] = e2;
+		B[1][0] = b2;
+		B[1][1] = d2;
+		B[1][2] = f2;
+		B[2][0] = 0.0;
+		B[2][1] = 0.0;
+		B[2][2] = 1.0;
+
+		int mA = A.length;
+		int nA = A[0].length;
+		int mB = B.length;
+		int nB = A[0].length;
+
+		if (nA != mB)
+		{
+			throw new RuntimeException("Illegal matrix dimensions.");
+		}
+
+		double[][] C = new double[mA][nB];
+
+		for (int i = 0; i < mA; i++)
+		{
+			for (int j = 0; j < nB; j++)
+			{
+				for (int k = 0; k < nA; k++)
+				{
+					C[i][j] += (A[i][k] * B[k][j]);
+				}
+			}
+		}
+
+		B[0][0] = a2;
+		B[0][1] = c2;
+		B[0][2] = e2;
+		B[1][0] = b2;
+		B[1][1] = d2;
+		B[1][2] = f2;
+		B[2][0] = 0.0;
+		B[2][1] = 0.0;
+		B[2][2] = 1.0;
+
+		String result = "matrix(" + Shape2Xml.roundToDecimals(C[0][0], roundDec) + " " 
+				+ Shape2Xml.roundToDecimals(C[1][0], roundDec) + " "
+				+ Shape2Xml.roundToDecimals(C[0][1], roundDec) + " "
+				+ Shape2Xml.roundToDecimals(C[1][1], roundDec) + " "
+				+ Shape2Xml.roundToDecimals(C[0][2], roundDec) + " "
+				+ Shape2Xml.roundToDecimals(C[1][2], roundDec) + ")";
+		return result;
+	}
+}
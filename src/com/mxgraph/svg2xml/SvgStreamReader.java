@@ -0,0 +1,301 @@
+/**
+ * Copyright (c) 2013, JGraph
+ */
+
+package com.mxgraph.svg2xml;
+
+import java.io.InputStream;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.Text;
+
+/**
+ * Reads a SVG file with StAX and flattens it while reading, without building a DOM of the source. The groups are
+ * never built, their style and transform are passed down on the call stack. Only the elements that remain after the
+ * flattening (the leaves, like a path with its content or a defs block) are built, in a document holding nothing else
+ * than the svg element and these leaves. The result is the same as parsing and flattening with SvgFlattener.
+ * <p>
+ * A gradient or use has to follow what it refers to, and a use can only refer to an element in a defs block.
+ * Otherwise read throws UnsupportedOperationException, and the SVG must be read as a document instead.
+ */
+public class SvgStreamReader
+{
+	private final XMLStreamReader in;
+
+	private final Document doc;
+
+	private final SvgFlattener flattener;
+
+	/**
+	 * @param input source of the SVG, the encoding is detected from the BOM or the XML declaration
+	 * @throws XMLStreamException if the reader can't be created
+	 * @throws ParserConfigurationException if the result document can't be created
+	 */
+	public SvgStreamReader(InputStream input) throws XMLStreamException, ParserConfigurationException
+	{
+		in = XmlResources.getInputFactory().createXMLStreamReader(input);
+		doc = XmlResources.getDocumentBuilder().newDocument();
+		flattener = new SvgFlattener(doc, true);
+	}
+
+	/**
+	 * Reads and flattens a SVG file
+	 * @param bytes content of the SVG file, see XmlInput
+	 * @return the flattener holding the result
+	 * @throws UnsupportedOperationException if the SVG can't be flattened while streaming
+	 */
+	public static SvgFlattener read(byte[] bytes) throws XMLStreamException, ParserConfigurationException
+	{
+		SvgStreamReader streamReader = new SvgStreamReader(XmlInput.getStream(bytes));
+		streamReader.read();
+
+		return streamReader.getFlattener();
+	}
+
+	/**
+	 * Reads and flattens the SVG. The result is in getFlattener.
+	 * @throws XMLStreamException if the SVG isn't well-formed
+	 * @throws UnsupportedOperationException if the SVG can't be flattened while streaming
+	 */
+	public void read() throws XMLStreamException
+	{
+		while (in.hasNext() && in.next() != XMLStreamConstants.START_ELEMENT)
+		{
+			// skips the prolog
+		}
+
+		if (!in.isStartElement() || !getName().equals("svg"))
+		{
+			throw new UnsupportedOperationException("the document element isn't svg");
+		}
+
+		// the svg element keeps its style attribute, it's not broken up
+		Element root = createElement();
+		doc.appendChild(root);
+		readGroup(Svg2Xml.getStyle(root), root.getAttribute("transform"));
+
+		// the rest must be well-formed too
+		while (in.hasNext())
+		{
+			in.next();
+		}
+
+		in.close();
+		flattener.finish(root);
+	}
+
+	/**
+	 * @return the flattener holding the flattened elements and the connections
+	 */
+	public SvgFlattener getFlattener()
+	{
+		return flattener;
+	}
+
+	/**
+	 * Reads the children of the svg element or of a group, up to its end tag
+	 * @param parentStyle style of the group
+	 * @param parTr transform of the group
+	 */
+	private void readGroup(XmlStyle parentStyle, String parTr) throws XMLStreamException
+	{
+		// index of the next child node, as in the DOM
+		int index = 0;
+		Text text = null;
+
+		while (true)
+		{
+			int event = in.next();
+
+			if (event == XMLStreamConstants.START_ELEMENT)
+			{
+				Element element = createElement();
+				SvgFlattener.breakUpStyle(element);
+
+				if (element.getNodeName().equals("g"))
+				{
+					indexElement(element, null);
+					Element group = flattener.flattenChild(element, index, parentStyle, parTr);
+					readGroup(Svg2Xml.getStyle(group), group.getAttribute("transform"));
+				}
+				else
+				{
+					readContent(element);
+					indexElement(element, (element.getNodeName().equals("defs")) ? (Element) element.cloneNode(true) : null);
+					flattener.flattenChild(element, index, parentStyle, parTr);
+				}
+
+				index++;
+				text = null;
+			}
+			else if (event == XMLStreamConstants.END_ELEMENT)
+			{
+				return;
+			}
+			else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.SPACE)
+			{
+				// the reader may split a text, in the DOM it's a single node
+				if (text == null)
+				{
+					text = doc.createTextNode(in.getText());
+					flattener.emit(text);
+					index++;
+				}
+				else
+				{
+					text.appendData(in.getText());
+				}
+			}
+			else
+			{
+				Node node = createNode(event);
+
+				if (node != null)
+				{
+					flattener.emit(node);
+					index++;
+					text = null;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads the content of <b>parent</b> up to its end tag and appends it to <b>parent</b>
+	 */
+	private void readContent(Element parent) throws XMLStreamException
+	{
+		Text text = null;
+
+		while (true)
+		{
+			int event = in.next();
+
+			if (event == XMLStreamConstants.START_ELEMENT)
+			{
+				Element element = createElement();
+				SvgFlattener.breakUpStyle(element);
+				parent.appendChild(element);
+				readContent(element);
+				text = null;
+			}
+			else if (event == XMLStreamConstants.END_ELEMENT)
+			{
+				return;
+			}
+			else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.SPACE)
+			{
+				if (text == null)
+				{
+					text = doc.createTextNode(in.getText());
+					parent.appendChild(text);
+				}
+				else
+				{
+					text.appendData(in.getText());
+				}
+			}
+			else
+			{
+				Node node = createNode(event);
+
+				if (node != null)
+				{
+					parent.appendChild(node);
+					text = null;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds the ids and gradients of <b>element</b> and its descendants to the flattener
+	 * @param element element that was read
+	 * @param defsCopy copy of <b>element</b> if it's a defs block, its elements can be used by use elements.
+	 * Null if the ids of <b>element</b> can't be used.
+	 */
+	private void indexElement(Element element, Element defsCopy)
+	{
+		String id = element.getAttribute("id");
+
+		if (!id.equals(""))
+		{
+			flattener.putUseDef(id, defsCopy);
+		}
+
+		if (element.getNodeName().equals("linearGradient") || element.getNodeName().equals("radialGradient"))
+		{
+			flattener.putGradient(element);
+		}
+
+		NodeList children = element.getChildNodes();
+		NodeList copyChildren = (defsCopy != null) ? defsCopy.getChildNodes() : null;
+
+		for (int i = 0; i < children.getLength(); i++)
+		{
+			if (children.item(i).getNodeType() == Node.ELEMENT_NODE)
+			{
+				indexElement((Element) children.item(i), (copyChildren != null) ? (Element) copyChildren.item(i) : null);
+			}
+		}
+	}
+
+	/**
+	 * @return the element at the current start tag, with its attributes
+	 */
+	private Element createElement()
+	{
+		Element element = doc.createElement(getName());
+
+		for (int i = 0; i < in.getAttributeCount(); i++)
+		{
+			String prefix = in.getAttributePrefix(i);
+			String name = in.getAttributeLocalName(i);
+
+			if (prefix != null && prefix.length() > 0)
+			{
+				name = prefix + ":" + name;
+			}
+
+			element.setAttribute(name, in.getAttributeValue(i));
+		}
+
+		return element;
+	}
+
+	/**
+	 * @return the node of the current event, if it's a CDATA section, comment or processing instruction, else null
+	 */
+	private Node createNode(int event)
+	{
+		switch (event)
+		{
+			case XMLStreamConstants.CDATA:
+				return doc.createCDATASection(in.getText());
+			case XMLStreamConstants.COMMENT:
+				return doc.createComment(in.getText());
+			case XMLStreamConstants.PROCESSING_INSTRUCTION:
+				return doc.createProcessingInstruction(in.getPITarget(), in.getPIData());
+			case XMLStreamConstants.ENTITY_REFERENCE:
+				throw new UnsupportedOperationException("entity references can't be streamed");
+			default:
+				return null;
+		}
+	}
+
+	// qualified name of the current element, as in a DOM without namespaces
+	private String getName()
+	{
+		String prefix = in.getPrefix();
+
+		return (prefix != null && prefix.length() > 0) ? prefix + ":" + in.getLocalName() : in.getLocalName();
+	}
+}
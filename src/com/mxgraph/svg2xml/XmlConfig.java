@@ -46,6 +46,9 @@ public class XmlConfig
 	
 	//round to decimals (used with roundCoords=true)
 	private int decimalsToRound = 2;
+
+	//simplify the runs of lines of paths and polylines within the rounding precision
+	private boolean simplifyPaths = false;
 	
 	//NOTE: do not set groupName here, since it is read from the groups config file. add an entry such as "groupname: yourgroupname;" without the quotations to your groups XML (config file)
 	//if null, group name is generated from Svg2xml.stencilUserMarker and folder structure
@@ -54,17 +57,30 @@ public class XmlConfig
 	private Connection connection;
 	private XmlStyle style;
 
-	public XmlConfig(Svg2XmlGui gui)
+	public XmlConfig(Svg2XmlOptions options)
 	{
-		setCalculateBorder(gui.isCalculateBorder());
-		setRelativeScaling(gui.isRelativeScaling());
-		setRelativeScalingRatio(gui.getRelativeScaleRatio(), gui);
-		setAbsoluteScalingX(gui.getAbsoluteScalingX());
-		setAbsoluteScalingY(gui.getAbsoluteScalingY());
-		setRoundCoords(gui.isRoundCoords());
-		setDecimalsToRound(gui.getDecimalsToRound());
+		setCalculateBorder(options.isCalculateBorder());
+		setRelativeScaling(options.isRelativeScaling());
+		setRelativeScalingRatio(options.getRelativeScaleRatio());
+		setAbsoluteScalingX(options.getAbsoluteScalingX());
+		setAbsoluteScalingY(options.getAbsoluteScalingY());
+		setRoundCoords(options.isRoundCoords());
+		setDecimalsToRound(options.getDecimalsToRound());
+		setSimplifyPaths(options.isSimplifyPaths());
 	}
 	
+	/**
+	 * Replaces the scaling of the options, so the stencil can be written at another size
+	 * @param target size the stencil is written at
+	 */
+	public void setScaleTarget(ScaleTarget target)
+	{
+		setRelativeScaling(target.isRelativeScaling());
+		setRelativeScalingRatio(target.getRelativeScaleRatio());
+		setAbsoluteScalingX(target.getAbsoluteScalingX());
+		setAbsoluteScalingY(target.getAbsoluteScalingY());
+	}
+
 	public boolean isBackground()
 	{
 		return background;
@@ -134,11 +150,11 @@ public class XmlConfig
 		return relativeScalingRatio;
 	}
 
-	private void setRelativeScalingRatio(double relativeScalingRatio, Svg2XmlGui gui) 
+	private void setRelativeScalingRatio(double relativeScalingRatio) 
 	{
 		if (relativeScalingRatio>0)
 		{
-			if (gui.isRelativeScaling())
+			if (isRelativeScaling())
 			{
 				this.relativeScalingRatio = relativeScalingRatio;
 			}
@@ -202,6 +218,16 @@ public class XmlConfig
 		}
 	}
 
+	public boolean isSimplifyPaths()
+	{
+		return simplifyPaths;
+	}
+
+	private void setSimplifyPaths(boolean simplifyPaths)
+	{
+		this.simplifyPaths = simplifyPaths;
+	}
+
 	public Connection getConnection() 
 	{
 		return connection;
@@ -0,0 +1,78 @@
+/**
+ * Copyright (c) 2013, JGraph
+ */
+
+package com.mxgraph.svg2xml;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.w3c.dom.Document;
+
+/**
+ * Reads XML files for the parsers. A file is read into a byte array in one go and the parser reads the bytes directly,
+ * so the parser detects the encoding from the BOM or the XML declaration (UTF-8 if there is none), as the XML spec
+ * defines it. The platform charset isn't used, and the content isn't copied into a string first.
+ */
+public class XmlInput
+{
+	// the DOCTYPE of the SVGs refers to the SVG DTD on the web, it must not be loaded
+	private static final String LOAD_EXTERNAL_DTD = "http://apache.org/xml/features/nonvalidating/load-external-dtd";
+
+	/**
+	 * @param file file to read
+	 * @return the content of <b>file</b>
+	 * @throws IOException if <b>file</b> can't be read
+	 */
+	public static byte[] readBytes(File file) throws IOException
+	{
+		return Files.readAllBytes(file.toPath());
+	}
+
+	/**
+	 * @param bytes content of an XML file
+	 * @return a stream over <b>bytes</b> for the parsers, without copying them
+	 */
+	public static InputStream getStream(byte[] bytes)
+	{
+		return new ByteArrayInputStream(bytes);
+	}
+
+	/**
+	 * Parses the content of an XML file
+	 * @param bytes content of the XML file, in any encoding the parser can detect
+	 * @return the document, or null if <b>bytes</b> can't be parsed
+	 */
+	public static Document parse(byte[] bytes)
+	{
+		try
+		{
+			return XmlResources.getDocumentBuilder().parse(getStream(bytes));
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+		}
+
+		return null;
+	}
+
+	/**
+	 * @return a document builder that keeps a DOCTYPE but doesn't load the external DTD
+	 * @throws ParserConfigurationException
+	 */
+	public static DocumentBuilder newDocumentBuilder() throws ParserConfigurationException
+	{
+		DocumentBuilderFactory docBuilderFactory = DocumentBuilderFactory.newInstance();
+		docBuilderFactory.setFeature(LOAD_EXTERNAL_DTD, false);
+
+		return docBuilderFactory.newDocumentBuilder();
+	}
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright (c) 2013, JGraph
+ */
+
+package com.mxgraph.svg2xml;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+
+/**
+ * Configured XML parsers and transformers, one of each per thread. Looking up and configuring a factory costs more
+ * than parsing a small SVG, so the instances are created once per thread and reset between uses. The instances
+ * aren't thread safe, they must not be passed to other threads or used by two callers at the same time.
+ */
+public class XmlResources
+{
+	private static final String REPORT_CDATA = "http://java.sun.com/xml/stream/properties/report-cdata-event";
+
+	private static final ThreadLocal<DocumentBuilder> documentBuilders = new ThreadLocal<DocumentBuilder>();
+
+	private static final ThreadLocal<XMLInputFactory> inputFactories = new ThreadLocal<XMLInputFactory>();
+
+	private static final ThreadLocal<Transformer> transformers = new ThreadLocal<Transformer>();
+
+	/**
+	 * @return the document builder of this thread, reset, see XmlInput.newDocumentBuilder
+	 * @throws ParserConfigurationException if the builder can't be created
+	 */
+	public static DocumentBuilder getDocumentBuilder() throws ParserConfigurationException
+	{
+		DocumentBuilder docBuilder = documentBuilders.get();
+
+		if (docBuilder == null)
+		{
+			docBuilder = XmlInput.newDocumentBuilder();
+			documentBuilders.set(docBuilder);
+		}
+		else
+		{
+			docBuilder.reset();
+		}
+
+		return docBuilder;
+	}
+
+	/**
+	 * @return the StAX input factory of this thread, configured to report the same nodes as the document builder
+	 */
+	public static XMLInputFactory getInputFactory()
+	{
+		XMLInputFactory factory = inputFactories.get();
+
+		if (factory == null)
+		{
+			factory = XMLInputFactory.newInstance();
+			// the same as the document parser: no namespaces, DTD and CDATA sections as separate nodes
+			factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+			factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+			factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+
+			if (factory.isPropertySupported(REPORT_CDATA))
+			{
+				factory.setProperty(REPORT_CDATA, true);
+			}
+
+			inputFactories.set(factory);
+		}
+
+		return factory;
+	}
+
+	/**
+	 * @return the transformer of this thread, reset and set up to print indented UTF-8 XML without declaration
+	 * @throws TransformerConfigurationException if the transformer can't be created
+	 */
+	public static Transformer getTransformer() throws TransformerConfigurationException
+	{
+		Transformer transformer = transformers.get();
+
+		if (transformer == null)
+		{
+			transformer = TransformerFactory.newInstance().newTransformer();
+			transformers.set(transformer);
+		}
+		else
+		{
+			// reset drops the output properties too
+			transformer.reset();
+		}
+
+		transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+		transformer.setOutputProperty(OutputKeys.METHOD, "xml");
+		transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+		transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+		transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4");
+
+		return transformer;
+	}
+}
@@ -5,299 +5,391 @@
 
 package com.mxgraph.svg2xml;
 
+import java.util.Arrays;
+
 /**
- * Complete XML style description	 
+ * Complete XML style description. The values are interned, so two styles are compared by reference, and a bitmask
+ * tells which properties are defined (not empty). The property constants are bits of these masks.
  */
 public class XmlStyle
 {
-	private String strokeColor = "";
-	private String fillColor = "";
-	private String strokeWidth = "";
-	private String lineJoin = "";
-	private String lineCap = "";
-	private String miterLimit = "";
-	private String dashPattern = "";
-	private String dashed = "";
-	private String alpha = "";
-	private String strokeAlpha = "";
-	private String fillAlpha = "";
-	private String fontColor = "";
-	private String isFontStyleBold = "";
-	private String isFontStyleItalic = "";
-	private String isFontStyleUnderline = "";
-	private String fontSize = "";
-	private String fontFamily = "";
-	private String align = "";
-	private String vAlign = "";
-
-	public String getAlign() 
-	{
-		return align;
-	}
-	
-	public void setAlign(String align) 
+	public static final int STROKE_COLOR = 1;
+	public static final int FILL_COLOR = 1 << 1;
+	public static final int STROKE_WIDTH = 1 << 2;
+	public static final int LINE_JOIN = 1 << 3;
+	public static final int LINE_CAP = 1 << 4;
+	public static final int MITER_LIMIT = 1 << 5;
+	public static final int DASH_PATTERN = 1 << 6;
+	public static final int DASHED = 1 << 7;
+	public static final int ALPHA = 1 << 8;
+	public static final int STROKE_ALPHA = 1 << 9;
+	public static final int FILL_ALPHA = 1 << 10;
+	public static final int FONT_COLOR = 1 << 11;
+	public static final int BOLD = 1 << 12;
+	public static final int ITALIC = 1 << 13;
+	public static final int UNDERLINE = 1 << 14;
+	public static final int FONT_SIZE = 1 << 15;
+	public static final int FONT_FAMILY = 1 << 16;
+	public static final int ALIGN = 1 << 17;
+	public static final int V_ALIGN = 1 << 18;
+
+	private static final int PROPERTY_COUNT = 19;
+
+	// properties compared by getDiff, vAlign isn't part of the style diff
+	private static final int DIFF_PROPERTIES = (1 << PROPERTY_COUNT) - 1 - V_ALIGN;
+
+	private final String[] values = new String[PROPERTY_COUNT];
+
+	// properties with a value other than ""
+	private int defined = 0;
+
+	public XmlStyle()
+	{
+		Arrays.fill(values, "");
+	}
+
+	private String get(int property)
+	{
+		return values[Integer.numberOfTrailingZeros(property)];
+	}
+
+	private void set(int property, String value)
+	{
+		values[Integer.numberOfTrailingZeros(property)] = value.intern();
+
+		if (value.length() > 0)
+		{
+			defined |= property;
+		}
+		else
+		{
+			defined &= ~property;
+		}
+	}
+
+	/**
+	 * @return the properties that are defined (not empty) in this style
+	 */
+	public int getDefined()
+	{
+		return defined;
+	}
+
+	/**
+	 * NOTE: don't swap the two styles, you'll get a different result.
+	 * @param prevStyle previous style
+	 * @return the properties that this style changes compared to <b>prevStyle</b>
+	 */
+	public int getDiff(XmlStyle prevStyle)
+	{
+		int diff = 0;
+		int changed = (defined | prevStyle.defined) & DIFF_PROPERTIES;
+
+		// only properties defined in one of the styles can differ
+		while (changed != 0)
+		{
+			int property = Integer.lowestOneBit(changed);
+			int i = Integer.numberOfTrailingZeros(property);
+
+			// interned values
+			if (values[i] != prevStyle.values[i])
+			{
+				diff |= property;
+			}
+
+			changed &= ~property;
+		}
+
+		return diff;
+	}
+
+	public String getAlign()
+	{
+		return get(ALIGN);
+	}
+
+	public void setAlign(String align)
 	{
 		if (align != null)
 		{
 			if (align.equals("start"))
 			{
-				this.align = "left";
+				set(ALIGN, "left");
 			}
 			else if (align.equals("end"))
 			{
-				this.align = "right";
+				set(ALIGN, "right");
 			}
 			else
 			{
-				this.align = align;
+				set(ALIGN, align);
 			}
 		}
 	}
-	
-	public String getVAlign() 
+
+	public String getVAlign()
 	{
-		return vAlign;
+		return get(V_ALIGN);
 	}
-	
-	public void setVAlign(String vAlign) 
+
+	public void setVAlign(String vAlign)
 	{
 		if (vAlign != null)
 		{
-			this.vAlign = vAlign;
+			set(V_ALIGN, vAlign);
 		}
 	}
-	
-	public String getStrokeColor() 
+
+	public String getStrokeColor()
 	{
-		return strokeColor;
+		return get(STROKE_COLOR);
 	}
-	
-	public void setStrokeColor(String strokeColor) 
+
+	public void setStrokeColor(String strokeColor)
 	{
 		if (strokeColor != null)
 		{
-			this.strokeColor = strokeColor;
+			set(STROKE_COLOR, strokeColor);
 		}
 	}
-	
-	public String getFillColor() 
+
+	public String getFillColor()
 	{
-		if (fillColor != null)
-		{
-			return fillColor;
-		}
-		else
-		{
-			return "none";
-		}
+		return get(FILL_COLOR);
 	}
-	
-	public void setFillColor(String fillColor) 
+
+	public void setFillColor(String fillColor)
 	{
 		if(fillColor != null)
 		{
-			this.fillColor = fillColor;
+			set(FILL_COLOR, fillColor);
 		}
 	}
-	
-	public String getStrokeWidth() 
+
+	public String getStrokeWidth()
 	{
-		return strokeWidth;
+		return get(STROKE_WIDTH);
 	}
-	
-	public void setStrokeWidth(String strokeWidth) 
+
+	public void setStrokeWidth(String strokeWidth)
 	{
 		if(strokeWidth != null)
 		{
-			strokeWidth = strokeWidth.replaceAll("mm", "");
-			strokeWidth = strokeWidth.replaceAll("pc", "");
-			strokeWidth = strokeWidth.replaceAll("pt", "");
-			strokeWidth = strokeWidth.replaceAll("in", "");
-			strokeWidth = strokeWidth.replaceAll("cm", "");
-			strokeWidth = strokeWidth.replaceAll("px", "");
-			strokeWidth = strokeWidth.replaceAll("%", "");
-			strokeWidth = strokeWidth.replaceAll("\\s","");
-			this.strokeWidth = strokeWidth;
+			strokeWidth = strokeWidth.replace("mm", "");
+			strokeWidth = strokeWidth.replace("pc", "");
+			strokeWidth = strokeWidth.replace("pt", "");
+			strokeWidth = strokeWidth.replace("in", "");
+			strokeWidth = strokeWidth.replace("cm", "");
+			strokeWidth = strokeWidth.replace("px", "");
+			strokeWidth = strokeWidth.replace("%", "");
+			strokeWidth = removeWhitespace(strokeWidth);
+			set(STROKE_WIDTH, strokeWidth);
+		}
+	}
+
+	// the same as replaceAll("\\s", ""), without a regular expression
+	private static String removeWhitespace(String s)
+	{
+		StringBuilder result = null;
+
+		for (int i = 0; i < s.length(); i++)
+		{
+			char c = s.charAt(i);
+			boolean isWhitespace = (c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r');
+
+			if (isWhitespace && result == null)
+			{
+				result = new StringBuilder(s.substring(0, i));
+			}
+			else if (!isWhitespace && result != null)
+			{
+				result.append(c);
+			}
 		}
+
+		return (result != null) ? result.toString() : s;
 	}
-	
-	public String getLineJoin() 
+
+	public String getLineJoin()
 	{
-		return lineJoin;
+		return get(LINE_JOIN);
 	}
-	
-	public void setLineJoin(String lineJoin) 
+
+	public void setLineJoin(String lineJoin)
 	{
 		if(lineJoin != null)
 		{
-			this.lineJoin = lineJoin;
+			set(LINE_JOIN, lineJoin);
 		}
 	}
 
-	public String getLineCap() 
+	public String getLineCap()
 	{
-		return lineCap;
+		return get(LINE_CAP);
 	}
 
-	public void setLineCap(String lineCap) 
+	public void setLineCap(String lineCap)
 	{
 		if(lineCap != null)
 		{
-			this.lineCap = lineCap;
+			set(LINE_CAP, lineCap);
 		}
 	}
 
-	public String getMiterLimit() 
+	public String getMiterLimit()
 	{
-		return miterLimit;
+		return get(MITER_LIMIT);
 	}
-	
-	public void setMiterLimit(String miterLimit) 
+
+	public void setMiterLimit(String miterLimit)
 	{
 		if(miterLimit != null)
 		{
-			this.miterLimit = miterLimit;
+			set(MITER_LIMIT, miterLimit);
 		}
 	}
-	
-	public String getDashPattern() 
+
+	public String getDashPattern()
 	{
-		return dashPattern;
+		return get(DASH_PATTERN);
 	}
 
 	//only arrays that have all values >0 are accepted
-	public void setDashPattern(String dashPattern) 
+	public void setDashPattern(String dashPattern)
 	{
 		if(dashPattern != null)
 		{
-			this.dashPattern = dashPattern;
+			set(DASH_PATTERN, dashPattern);
 		}
 	}
-	
-	public String isDashed() 
+
+	public String isDashed()
 	{
-		return dashed;
+		return get(DASHED);
 	}
-	
-	public void setDashed(String dashed) 
+
+	public void setDashed(String dashed)
 	{
 		if(dashed != null)
 		{
-			this.dashed = dashed;
+			set(DASHED, dashed);
 		}
 	}
-	
-	public String getAlpha() 
+
+	public String getAlpha()
 	{
-		return alpha;
+		return get(ALPHA);
 	}
-	
-	public String getStrokeAlpha() 
+
+	public String getStrokeAlpha()
 	{
-		return strokeAlpha;
+		return get(STROKE_ALPHA);
 	}
-	
-	public String getFillAlpha() 
+
+	public String getFillAlpha()
 	{
-		return fillAlpha;
+		return get(FILL_ALPHA);
 	}
-	
-	public void setAlpha(String alpha) 
+
+	public void setAlpha(String alpha)
 	{
 		if(alpha != null)
 		{
-			this.alpha = alpha;
+			set(ALPHA, alpha);
 		}
 	}
-	
-	public void setStrokeAlpha(String alpha) 
+
+	public void setStrokeAlpha(String alpha)
 	{
 		if(alpha != null)
 		{
-			this.strokeAlpha = alpha;
+			set(STROKE_ALPHA, alpha);
 		}
 	}
 
-	public void setFillAlpha(String alpha) 
+	public void setFillAlpha(String alpha)
 	{
 		if(alpha != null)
 		{
-			this.fillAlpha = alpha;
+			set(FILL_ALPHA, alpha);
 		}
 	}
-	
-	public String getFontColor() 
+
+	public String getFontColor()
 	{
-		return fontColor;
+		return get(FONT_COLOR);
 	}
-	
-	public void setFontColor(String fontColor) 
+
+	public void setFontColor(String fontColor)
 	{
 		if(fontColor != null)
 		{
-			this.fontColor = fontColor;
+			set(FONT_COLOR, fontColor);
 		}
 	}
 
-	public String isFontStyleBold() 
+	public String isFontStyleBold()
 	{
-		return isFontStyleBold;
+		return get(BOLD);
 	}
-	
-	public void setFontStyleBold(String isFontStyleBold) 
+
+	public void setFontStyleBold(String isFontStyleBold)
 	{
 		if(isFontStyleBold != null)
 		{
-			this.isFontStyleBold = isFontStyleBold;
+			set(BOLD, isFontStyleBold);
 		}
 	}
-	
-	public String isFontStyleItalic() 
+
+	public String isFontStyleItalic()
 	{
-		return isFontStyleItalic;
+		return get(ITALIC);
 	}
-	
-	public void setFontStyleItalic(String isFontStyleItalic) 
+
+	public void setFontStyleItalic(String isFontStyleItalic)
 	{
 		if(isFontStyleItalic != null)
 		{
-			this.isFontStyleItalic = isFontStyleItalic;
+			set(ITALIC, isFontStyleItalic);
 		}
 	}
-	
-	public String isFontStyleUnderline() 
+
+	public String isFontStyleUnderline()
 	{
-		return isFontStyleUnderline;
+		return get(UNDERLINE);
 	}
-	
-	public void setFontStyleUnderline(String isFontStyleUnderline) 
+
+	public void setFontStyleUnderline(String isFontStyleUnderline)
 	{
 		if(isFontStyleUnderline != null)
 		{
-			this.isFontStyleUnderline = isFontStyleUnderline;
+			set(UNDERLINE, isFontStyleUnderline);
 		}
 	}
-	
-	public String getFontSize() 
+
+	public String getFontSize()
 	{
-		return fontSize;
+		return get(FONT_SIZE);
 	}
-	
-	public void setFontSize(String fontSize) 
+
+	public void setFontSize(String fontSize)
 	{
 		if(fontSize != null)
 		{
-			this.fontSize = fontSize;
+			set(FONT_SIZE, fontSize);
 		}
 	}
-	
-	public String getFontFamily() 
+
+	public String getFontFamily()
 	{
-		return fontFamily;
+		return get(FONT_FAMILY);
 	}
-	
-	public void setFontFamily(String fontFamily) 
+
+	public void setFontFamily(String fontFamily)
 	{
-		this.fontFamily = fontFamily;
+		if(fontFamily != null)
+		{
+			set(FONT_FAMILY, fontFamily);
+		}
 	}
 }
@@ -1,24 +1,17 @@
 package com.mxgraph.svg2xml;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
-
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-
 public class mxPathParser
 {
 	/**
-	 * Parent document
+	 * Segments of the path, written to the block at the end
 	 */
-	private Document doc;
+	private StencilPath path;
 	
 	/**
 	 * Number of decimals used for rounding
 	 */
 	private int dtr;
 	private boolean doRound = false;
-	private Element pathEl;
 
 	private double currentX = 0;
 	private double currentY = 0;
@@ -27,15 +20,46 @@ public class mxPathParser
 	private double lastMoveX = 0;
 	private double lastMoveY = 0;
 
+	/**
+	 * Collects the runs of lines if the path is simplified, null otherwise
+	 */
+	private PathSimplifier simplifier = null;
+
 	/**
 	 * @param svgPath the "d" attribute of a SVG path element 
-	 * @param parentDoc document where the XML element will be created
+	 * @param block the mxGraph XML equivalent of the SVG path element is written at the end of this block
 	 * @param decimals number of decimals used for rounding coordinates (use -1 to bypass rounding)
-	 * @return An mxGraph XML equivalent of the SVG path element
 	 */
-	public Element createShape(String svgPath, Document parentDoc, int decimals)
+	public void createShape(String svgPath, StencilWriter.Block block, int decimals)
 	{
-		this.doc = parentDoc;
+		createShape(svgPath, block, decimals, false);
+	}
+
+	/**
+	 * @param svgPath the "d" attribute of a SVG path element 
+	 * @param block the mxGraph XML equivalent of the SVG path element is written at the end of this block
+	 * @param decimals number of decimals used for rounding coordinates (use -1 to bypass rounding)
+	 * @param simplify if true, the runs of lines are simplified, see PathSimplifier
+	 */
+	public void createShape(String svgPath, StencilWriter.Block block, int decimals, boolean simplify)
+	{
+		createShape(new PathLexer(svgPath), block, decimals, simplify);
+	}
+
+	/**
+	 * @param lexer the commands of a SVG path, read until its end
+	 * @param block the mxGraph XML equivalent of the path is written at the end of this block
+	 * @param decimals number of decimals used for rounding coordinates (use -1 to bypass rounding)
+	 * @param simplify if true, the runs of lines are simplified, see PathSimplifier
+	 */
+	public void createShape(PathReader lexer, StencilWriter.Block block, int decimals, boolean simplify)
+	{
+		path = new StencilPath();
+
+		if (simplify)
+		{
+			simplifier = new PathSimplifier(path, decimals);
+		}
 
 		if (decimals >=0)
 		{
@@ -43,62 +67,14 @@ public class mxPathParser
 			this.dtr = decimals;
 		}
 
-		this.pathEl = doc.createElement("path");
 		char prevPathType = 'm';
-		
-		do
-		{
-			svgPath = svgPath.trim();
-			int nextPartStartIndex; 
 
-			char currPathType = svgPath.charAt(0);
-
-			boolean hasLetter = true;
-			
-			if (!Character.isLetter(currPathType))
-			{
-				if (prevPathType == 'm')
-				{
-					currPathType = 'l';
-				}
-				else if (prevPathType == 'M')
-				{
-					currPathType = 'L';
-				}
-				else
-				{
-					currPathType = prevPathType;
-				}
-				
-				hasLetter = false;
-			}
-			
-			svgPath = svgPath.replaceAll("\\s{2,}", " ");
-			nextPartStartIndex = Shape2Xml.nextPartIndex(svgPath, currPathType);
-			
-			String currPathString = "";
-			
-			if (nextPartStartIndex == -1)
-			{
-				currPathString = svgPath;
-			}
-			else
-			{
-				currPathString = svgPath.substring(0, nextPartStartIndex);
-			}
+		while (lexer.next())
+		{
+			char currPathType = lexer.getCommand();
 
-			if (!hasLetter)
-			{
-				currPathString = currPathType + " " + currPathString;
-			}
-			
 			switch (currPathType)
 			{
-				case 0xD:
-				case 0xA:
-				case 0x20:
-				case 0x9:
-					break;
 				case 'z':
 				case 'Z':
 					if (Character.toLowerCase(prevPathType) != 'z')
@@ -107,401 +83,352 @@ public class mxPathParser
 					}
 					break;
 				case 'm':
-					movetoRel(currPathString);
+					movetoRel(lexer);
 					break;
 				case 'M':
-					movetoAbs(currPathString);
+					movetoAbs(lexer);
 					break;
 				case 'l':
-					linetoRel(currPathString);
+					linetoRel(lexer);
 					break;
 				case 'L':
-					linetoAbs(currPathString);
+					linetoAbs(lexer);
 					break;
 				case 'h':
-					linetoHorizontalRel(currPathString);
+					linetoHorizontalRel(lexer);
 					break;
 				case 'H':
-					linetoHorizontalAbs(currPathString);
+					linetoHorizontalAbs(lexer);
 					break;
 				case 'v':
-					linetoVerticalRel(currPathString);
+					linetoVerticalRel(lexer);
 					break;
 				case 'V':
-					linetoVerticalAbs(currPathString);
+					linetoVerticalAbs(lexer);
 					break;
 				case 'c':
-					curvetoCubicRel(currPathString);
+					curvetoCubicRel(lexer);
 					break;
 				case 'C':
-					curvetoCubicAbs(currPathString);
+					curvetoCubicAbs(lexer);
 					break;
 				case 'q':
-					curvetoQuadraticRel(currPathString);
+					curvetoQuadraticRel(lexer);
 					break;
 				case 'Q':
-					curvetoQuadraticAbs(currPathString);
+					curvetoQuadraticAbs(lexer);
 					break;
 				case 's':
-					curvetoCubicSmoothRel(currPathString);
+					curvetoCubicSmoothRel(lexer);
 					break;
 				case 'S':
-					curvetoCubicSmoothAbs(currPathString);
+					curvetoCubicSmoothAbs(lexer);
 					break;
 				case 't':
-					curvetoQuadraticSmoothRel(currPathString);
+					curvetoQuadraticSmoothRel(lexer);
 					break;
 				case 'T':
-					curvetoQuadraticSmoothAbs(currPathString);
+					curvetoQuadraticSmoothAbs(lexer);
 					break;
 				case 'a':
-					arcRel(currPathString);
+					arcRel(lexer);
 					break;
 				case 'A':
-					arcAbs(currPathString);
+					arcAbs(lexer);
 					break;
 				default:
 					break;
 			}
-			
-			if (nextPartStartIndex == -1)
-			{
-				svgPath = "";
-			}
-			else
-			{
-				svgPath = svgPath.substring(nextPartStartIndex, svgPath.length());
-			}
-			
+
 			prevPathType = currPathType;
-		} 
-		while (svgPath.length() > 0);
+		}
 
-		return pathEl;
+		flushLines();
+		block.path(path);
 	}
 
-	private void movetoRel(String path)
+	private void movetoRel(PathReader lexer)
 	{
-		double x = Shape2Xml.getPathParam(path, 1);
-		double y = Shape2Xml.getPathParam(path, 2);
+		flushLines();
+		double x = lexer.getParam(0);
+		double y = lexer.getParam(1);
 		currentX = currentX + x;
 		currentY = currentY + y;
 		lastMoveX = currentX;
 		lastMoveY = currentY;
-		Element currChild = doc.createElement("move");
-		currChild.setAttribute("x", Double.toString(rtd(currentX)));
-		currChild.setAttribute("y", Double.toString(rtd(currentY)));
-		pathEl.appendChild(currChild);
+		path.moveTo(rtd(currentX), rtd(currentY));
 	}
 
-	private void movetoAbs(String path)
+	private void movetoAbs(PathReader lexer)
 	{
-		double x = Shape2Xml.getPathParam(path, 1);
-		double y = Shape2Xml.getPathParam(path, 2);
+		flushLines();
+		double x = lexer.getParam(0);
+		double y = lexer.getParam(1);
 
 		currentX = x;
 		currentY = y;
 		lastMoveX = currentX;
 		lastMoveY = currentY;
-		Element currChild = doc.createElement("move");
-		currChild.setAttribute("x", Double.toString(rtd(currentX)));
-		currChild.setAttribute("y", Double.toString(rtd(currentY)));
-		pathEl.appendChild(currChild);
+		path.moveTo(rtd(currentX), rtd(currentY));
 	}
 
 	private void closePath()
 	{
-		Element currChild = doc.createElement("close");
-		pathEl.appendChild(currChild);
+		flushLines();
+		path.close();
 		currentX = lastMoveX;
 		currentY = lastMoveY;
 	}
 
-	private void linetoRel(String path)
+	private void linetoRel(PathReader lexer)
 	{
-		double x = Shape2Xml.getPathParam(path, 1);
-		double y = Shape2Xml.getPathParam(path, 2);
+		double x = lexer.getParam(0);
+		double y = lexer.getParam(1);
 
+		double prevX = currentX;
+		double prevY = currentY;
 		currentX = currentX + x;
 		currentY = currentY + y;
-		Element currChild = doc.createElement("line");
-		currChild.setAttribute("x", Double.toString(rtd(currentX)));
-		currChild.setAttribute("y", Double.toString(rtd(currentY)));
-		pathEl.appendChild(currChild);
+		lineTo(prevX, prevY);
 	}
 
-	private void linetoAbs(String path)
+	private void linetoAbs(PathReader lexer)
 	{
-		double x = Shape2Xml.getPathParam(path, 1);
-		double y = Shape2Xml.getPathParam(path, 2);
+		double x = lexer.getParam(0);
+		double y = lexer.getParam(1);
 
+		double prevX = currentX;
+		double prevY = currentY;
 		currentX = x;
 		currentY = y;
-		Element currChild = doc.createElement("line");
-		currChild.setAttribute("x", Double.toString(rtd(currentX)));
-		currChild.setAttribute("y", Double.toString(rtd(currentY)));
-		pathEl.appendChild(currChild);
+		lineTo(prevX, prevY);
 	}
 
-	private void linetoHorizontalRel(String path)
+	private void linetoHorizontalRel(PathReader lexer)
 	{
-		double x = Shape2Xml.getPathParam(path, 1);
+		double x = lexer.getParam(0);
 
+		double prevX = currentX;
+		double prevY = currentY;
 		currentX = currentX + x;
-		Element currChild = doc.createElement("line");
-		currChild.setAttribute("x", Double.toString(rtd(currentX)));
-		currChild.setAttribute("y", Double.toString(rtd(currentY)));
-		pathEl.appendChild(currChild);
+		lineTo(prevX, prevY);
 	}
 
-	private void linetoHorizontalAbs(String path)
+	private void linetoHorizontalAbs(PathReader lexer)
 	{
-		double x = Shape2Xml.getPathParam(path, 1);
+		double x = lexer.getParam(0);
 
+		double prevX = currentX;
+		double prevY = currentY;
 		currentX = x;
-		Element currChild = doc.createElement("line");
-		currChild.setAttribute("x", Double.toString(rtd(currentX)));
-		currChild.setAttribute("y", Double.toString(rtd(currentY)));
-		pathEl.appendChild(currChild);
+		lineTo(prevX, prevY);
 	}
 
-	private void linetoVerticalRel(String path)
+	private void linetoVerticalRel(PathReader lexer)
 	{
-		double y = Shape2Xml.getPathParam(path, 1);
+		double y = lexer.getParam(0);
 
+		double prevX = currentX;
+		double prevY = currentY;
 		currentY = currentY + y;
-		Element currChild = doc.createElement("line");
-		currChild.setAttribute("x", Double.toString(rtd(currentX)));
-		currChild.setAttribute("y", Double.toString(rtd(currentY)));
-		pathEl.appendChild(currChild);
+		lineTo(prevX, prevY);
 	}
 
-	private void linetoVerticalAbs(String path)
+	private void linetoVerticalAbs(PathReader lexer)
 	{
-		double y = Shape2Xml.getPathParam(path, 1);
+		double y = lexer.getParam(0);
 
+		double prevX = currentX;
+		double prevY = currentY;
 		currentY = y;
-		Element currChild = doc.createElement("line");
-		currChild.setAttribute("x", Double.toString(rtd(currentX)));
-		currChild.setAttribute("y", Double.toString(rtd(currentY)));
-		pathEl.appendChild(currChild);
+		lineTo(prevX, prevY);
 	}
 
-	private void curvetoCubicRel(String path)
+	private void curvetoCubicRel(PathReader lexer)
 	{
-		double x1 = Shape2Xml.getPathParam(path, 1);
-		double y1 = Shape2Xml.getPathParam(path, 2);
-		double x2 = Shape2Xml.getPathParam(path, 3);
-		double y2 = Shape2Xml.getPathParam(path, 4);
-		double x = Shape2Xml.getPathParam(path, 5);
-		double y = Shape2Xml.getPathParam(path, 6);
-
-		Element currChild = doc.createElement("curve");
-		currChild.setAttribute("x1", Double.toString(rtd(currentX + x1)));
-		currChild.setAttribute("y1", Double.toString(rtd(currentY + y1)));
-		currChild.setAttribute("x2", Double.toString(rtd(xCenter = currentX + x2)));
-		currChild.setAttribute("y2", Double.toString(rtd(yCenter = currentY + y2)));
-		currChild.setAttribute("x3", Double.toString(rtd(currentX += x)));
-		currChild.setAttribute("y3", Double.toString(rtd(currentY += y)));
-		pathEl.appendChild(currChild);
+		flushLines();
+		double x1 = lexer.getParam(0);
+		double y1 = lexer.getParam(1);
+		double x2 = lexer.getParam(2);
+		double y2 = lexer.getParam(3);
+		double x = lexer.getParam(4);
+		double y = lexer.getParam(5);
+
+		path.curveTo(rtd(currentX + x1), rtd(currentY + y1), rtd(xCenter = currentX + x2), rtd(yCenter = currentY + y2), rtd(currentX += x), rtd(currentY += y));
 	}
 
-	private void curvetoCubicAbs(String path)
+	private void curvetoCubicAbs(PathReader lexer)
 	{
-		double x1 = Shape2Xml.getPathParam(path, 1);
-		double y1 = Shape2Xml.getPathParam(path, 2);
-		double x2 = Shape2Xml.getPathParam(path, 3);
-		double y2 = Shape2Xml.getPathParam(path, 4);
-		double x = Shape2Xml.getPathParam(path, 5);
-		double y = Shape2Xml.getPathParam(path, 6);
+		flushLines();
+		double x1 = lexer.getParam(0);
+		double y1 = lexer.getParam(1);
+		double x2 = lexer.getParam(2);
+		double y2 = lexer.getParam(3);
+		double x = lexer.getParam(4);
+		double y = lexer.getParam(5);
 
 		xCenter = x2;
 		yCenter = y2;
 		currentX = x;
 		currentY = y;
-		Element currChild = doc.createElement("curve");
-		currChild.setAttribute("x1", Double.toString(rtd(x1)));
-		currChild.setAttribute("y1", Double.toString(rtd(y1)));
-		currChild.setAttribute("x2", Double.toString(rtd(x2)));
-		currChild.setAttribute("y2", Double.toString(rtd(y2)));
-		currChild.setAttribute("x3", Double.toString(rtd(currentX)));
-		currChild.setAttribute("y3", Double.toString(rtd(currentY)));
-		pathEl.appendChild(currChild);
+		path.curveTo(rtd(x1), rtd(y1), rtd(x2), rtd(y2), rtd(currentX), rtd(currentY));
 	}
 
-	private void curvetoCubicSmoothRel(String path)
+	private void curvetoCubicSmoothRel(PathReader lexer)
 	{
-		double x2 = Shape2Xml.getPathParam(path, 1);
-		double y2 = Shape2Xml.getPathParam(path, 2);
-		double x = Shape2Xml.getPathParam(path, 3);
-		double y = Shape2Xml.getPathParam(path, 4);
-
-		Element currChild = doc.createElement("curve");
-		currChild.setAttribute("x1", Double.toString(rtd(currentX * 2 - xCenter)));
-		currChild.setAttribute("y1", Double.toString(rtd(currentY * 2 - yCenter)));
-		currChild.setAttribute("x2", Double.toString(rtd(xCenter = currentX + x2)));
-		currChild.setAttribute("y2", Double.toString(rtd(yCenter = currentY + y2)));
-		currChild.setAttribute("x3", Double.toString(rtd(currentX += x)));
-		currChild.setAttribute("y3", Double.toString(rtd(currentY += y)));
-		pathEl.appendChild(currChild);
+		flushLines();
+		double x2 = lexer.getParam(0);
+		double y2 = lexer.getParam(1);
+		double x = lexer.getParam(2);
+		double y = lexer.getParam(3);
+
+		path.curveTo(rtd(currentX * 2 - xCenter), rtd(currentY * 2 - yCenter), rtd(xCenter = currentX + x2), rtd(yCenter = currentY + y2), rtd(currentX += x), rtd(currentY += y));
 	}
 
-	private void curvetoCubicSmoothAbs(String path)
+	private void curvetoCubicSmoothAbs(PathReader lexer)
 	{
-		double x2 = Shape2Xml.getPathParam(path, 1);
-		double y2 = Shape2Xml.getPathParam(path, 2);
-		double x = Shape2Xml.getPathParam(path, 3);
-		double y = Shape2Xml.getPathParam(path, 4);
-
-		Element currChild = doc.createElement("curve");
-		currChild.setAttribute("x1", Double.toString(rtd(currentX * 2 - xCenter)));
-		currChild.setAttribute("y1", Double.toString(rtd(currentY * 2 - yCenter)));
-		currChild.setAttribute("x2", Double.toString(rtd(xCenter = x2)));
-		currChild.setAttribute("y2", Double.toString(rtd(yCenter = y2)));
-		currChild.setAttribute("x3", Double.toString(rtd(currentX = x)));
-		currChild.setAttribute("y3", Double.toString(rtd(currentY = y)));
-		pathEl.appendChild(currChild);
+		flushLines();
+		double x2 = lexer.getParam(0);
+		double y2 = lexer.getParam(1);
+		double x = lexer.getParam(2);
+		double y = lexer.getParam(3);
+
+		path.curveTo(rtd(currentX * 2 - xCenter), rtd(currentY * 2 - yCenter), rtd(xCenter = x2), rtd(yCenter = y2), rtd(currentX = x), rtd(currentY = y));
 	}
 
-	private void curvetoQuadraticRel(String path)
+	private void curvetoQuadraticRel(PathReader lexer)
 	{
-		double x1 = Shape2Xml.getPathParam(path, 1);
-		double y1 = Shape2Xml.getPathParam(path, 2);
-		double x = Shape2Xml.getPathParam(path, 3);
-		double y = Shape2Xml.getPathParam(path, 4);
+		flushLines();
+		double x1 = lexer.getParam(0);
+		double y1 = lexer.getParam(1);
+		double x = lexer.getParam(2);
+		double y = lexer.getParam(3);
 
 		xCenter = currentX + x1;
 		yCenter = currentY + y1;
-		Element currChild = doc.createElement("quad");
-		currChild.setAttribute("x1", Double.toString(rtd(currentX + x1)));
-		currChild.setAttribute("y1", Double.toString(rtd(currentY + y1)));
-		currChild.setAttribute("x2", Double.toString(rtd(currentX + x)));
-		currChild.setAttribute("y2", Double.toString(rtd(currentY + y)));
-		pathEl.appendChild(currChild);
+		path.quadTo(rtd(currentX + x1), rtd(currentY + y1), rtd(currentX + x), rtd(currentY + y));
 		currentX = currentX + x;
 		currentY = currentY + y;
 	}
 
-	private void curvetoQuadraticAbs(String path)
+	private void curvetoQuadraticAbs(PathReader lexer)
 	{
-		double x1 = Shape2Xml.getPathParam(path, 1);
-		double y1 = Shape2Xml.getPathParam(path, 2);
-		double x = Shape2Xml.getPathParam(path, 3);
-		double y = Shape2Xml.getPathParam(path, 4);
+		flushLines();
+		double x1 = lexer.getParam(0);
+		double y1 = lexer.getParam(1);
+		double x = lexer.getParam(2);
+		double y = lexer.getParam(3);
 
 		xCenter = x1;
 		yCenter = y1;
-		Element currChild = doc.createElement("quad");
-		currChild.setAttribute("x1", Double.toString(rtd(x1)));
-		currChild.setAttribute("y1", Double.toString(rtd(y1)));
-		currChild.setAttribute("x2", Double.toString(rtd(x)));
-		currChild.setAttribute("y2", Double.toString(rtd(y)));
-		pathEl.appendChild(currChild);
+		path.quadTo(rtd(x1), rtd(y1), rtd(x), rtd(y));
 		currentX = x;
 		currentY = y;
 	}
 
-	private void curvetoQuadraticSmoothRel(String path)
+	private void curvetoQuadraticSmoothRel(PathReader lexer)
 	{
-		double x = Shape2Xml.getPathParam(path, 1);
-		double y = Shape2Xml.getPathParam(path, 2);
+		flushLines();
+		double x = lexer.getParam(0);
+		double y = lexer.getParam(1);
 
 		xCenter = currentX * 2 - xCenter;
 		yCenter = currentY * 2 - yCenter;
 		currentX = currentX + x;
 		currentY = currentY + y;
-		Element currChild = doc.createElement("quad");
-		currChild.setAttribute("x1", Double.toString(rtd(xCenter)));
-		currChild.setAttribute("y1", Double.toString(rtd(yCenter)));
-		currChild.setAttribute("x2", Double.toString(rtd(currentX)));
-		currChild.setAttribute("y2", Double.toString(rtd(currentY)));
-		pathEl.appendChild(currChild);
+		path.quadTo(rtd(xCenter), rtd(yCenter), rtd(currentX), rtd(currentY));
 	}
 
-	private void curvetoQuadraticSmoothAbs(String path)
+	private void curvetoQuadraticSmoothAbs(PathReader lexer)
 	{
-		double x = Shape2Xml.getPathParam(path, 1);
-		double y = Shape2Xml.getPathParam(path, 2);
+		flushLines();
+		double x = lexer.getParam(0);
+		double y = lexer.getParam(1);
 
 		xCenter = currentX * 2 - xCenter;
 		yCenter = currentY * 2 - yCenter;
 		currentX = x;
 		currentY = y;
-		Element currChild = doc.createElement("quad");
-		currChild.setAttribute("x1", Double.toString(rtd(xCenter)));
-		currChild.setAttribute("y1", Double.toString(rtd(yCenter)));
-		currChild.setAttribute("x2", Double.toString(rtd(currentX)));
-		currChild.setAttribute("y2", Double.toString(rtd(currentY)));
-		pathEl.appendChild(currChild);
+		path.quadTo(rtd(xCenter), rtd(yCenter), rtd(currentX), rtd(currentY));
 	}
 
-	private void arcRel(String path)
+	private void arcRel(PathReader lexer)
 	{
-		double rx = Shape2Xml.getPathParam(path, 1);
-		double ry = Shape2Xml.getPathParam(path, 2);
-		double ax = Shape2Xml.getPathParam(path, 3);
-		double laf = Shape2Xml.getPathParam(path, 4);
-		double sf = Shape2Xml.getPathParam(path, 5);
-		double x = Shape2Xml.getPathParam(path, 6);
-		double y = Shape2Xml.getPathParam(path, 7);
+		double rx = lexer.getParam(0);
+		double ry = lexer.getParam(1);
+		double ax = lexer.getParam(2);
+		double laf = lexer.getParam(3);
+		double sf = lexer.getParam(4);
+		double x = lexer.getParam(5);
+		double y = lexer.getParam(6);
 
 		if (rx > 0 && ry > 0)
 		{
-			Element currChild = doc.createElement("arc");
-			currChild.setAttribute("rx", Double.toString(rtd(rx)));
-			currChild.setAttribute("ry", Double.toString(rtd(ry)));
-			currChild.setAttribute("x-axis-rotation", Double.toString(rtd(ax)));
-			currChild.setAttribute("large-arc-flag", Double.toString(laf));
-			currChild.setAttribute("sweep-flag", Double.toString(sf));
-			currChild.setAttribute("x", Double.toString(rtd(x+currentX)));
-			currChild.setAttribute("y", Double.toString(rtd(y+currentY)));
-			pathEl.appendChild(currChild);
+			flushLines();
+			path.arcTo(rtd(rx), rtd(ry), rtd(ax), laf, sf, rtd(x+currentX), rtd(y+currentY));
 			xCenter = rtd(currentX += x);
 			yCenter = rtd(currentY += y);
 		}
 		else
 		{
+			double prevX = currentX;
+			double prevY = currentY;
 			currentX = currentX + x;
 			currentY = currentY + y;
-			Element currChild = doc.createElement("line");
-			currChild.setAttribute("x", Double.toString(rtd(currentX)));
-			currChild.setAttribute("y", Double.toString(rtd(currentY)));
-			pathEl.appendChild(currChild);
+			lineTo(prevX, prevY);
 		}
 	}
 	
-	private void arcAbs(String path)
+	private void arcAbs(PathReader lexer)
 	{
-		double rx = Shape2Xml.getPathParam(path, 1);
-		double ry = Shape2Xml.getPathParam(path, 2);
-		double ax = Shape2Xml.getPathParam(path, 3);
-		double laf = Shape2Xml.getPathParam(path, 4);
-		double sf = Shape2Xml.getPathParam(path, 5);
-		double x = Shape2Xml.getPathParam(path, 6);
-		double y = Shape2Xml.getPathParam(path, 7);
+		double rx = lexer.getParam(0);
+		double ry = lexer.getParam(1);
+		double ax = lexer.getParam(2);
+		double laf = lexer.getParam(3);
+		double sf = lexer.getParam(4);
+		double x = lexer.getParam(5);
+		double y = lexer.getParam(6);
 
 		if (rx > 0 && ry > 0)
 		{
-			Element currChild = doc.createElement("arc");
-			currChild.setAttribute("rx", Double.toString(rtd(rx)));
-			currChild.setAttribute("ry", Double.toString(rtd(ry)));
-			currChild.setAttribute("x-axis-rotation", Double.toString(rtd(ax)));
-			currChild.setAttribute("large-arc-flag", Double.toString(laf));
-			currChild.setAttribute("sweep-flag", Double.toString(sf));
-			currChild.setAttribute("x", Double.toString(rtd(x)));
-			currChild.setAttribute("y", Double.toString(rtd(y)));
-			pathEl.appendChild(currChild);
+			flushLines();
+			path.arcTo(rtd(rx), rtd(ry), rtd(ax), laf, sf, rtd(x), rtd(y));
 			xCenter = currentX = rtd(x);
 			yCenter = currentY = rtd(y);
 		}
 		else
 		{
+			double prevX = currentX;
+			double prevY = currentY;
 			currentX = x;
 			currentY = y;
-			Element currChild = doc.createElement("line");
-			currChild.setAttribute("x", Double.toString(rtd(currentX)));
-			currChild.setAttribute("y", Double.toString(rtd(currentY)));
-			pathEl.appendChild(currChild);
+			lineTo(prevX, prevY);
+		}
+	}
+
+	/**
+	 * Writes a line from (<b>prevX</b>, <b>prevY</b>) to the current point, or adds it to the run of the simplifier
+	 */
+	private void lineTo(double prevX, double prevY)
+	{
+		if (simplifier != null)
+		{
+			simplifier.lineTo(prevX, prevY, currentX, currentY);
+		}
+		else
+		{
+			path.lineTo(rtd(currentX), rtd(currentY));
+		}
+	}
+
+	/**
+	 * Writes the lines the simplifier has collected, called before anything else than a line is written
+	 */
+	private void flushLines()
+	{
+		if (simplifier != null)
+		{
+			simplifier.flush();
 		}
 	}
 
@@ -514,9 +441,7 @@ public class mxPathParser
 	{
 		if (doRound)
 		{
-			BigDecimal temp = new BigDecimal(Double.toString(d));
-			temp = temp.setScale(dtr, RoundingMode.HALF_EVEN);
-			return temp.doubleValue();
+			return Shape2Xml.roundToDecimals(d, dtr);
 		}
 		else
 		{
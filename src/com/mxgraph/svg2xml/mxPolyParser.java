@@ -1,87 +1,99 @@
 package com.mxgraph.svg2xml;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
-
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-
 public class mxPolyParser
 {
 	private int dtr;
 	private boolean doRound = false;
 	
-	public Element createShape(String svgPoly, Document parentDoc, int decimals, String tagName)
+	public void createShape(String svgPoly, StencilWriter.Block block, int decimals, String tagName)
 	{
-		if (decimals >=0)
+		createShape(svgPoly, block, decimals, tagName, false);
+	}
+
+	/**
+	 * @param svgPoly the "points" attribute of a SVG polyline or polygon element
+	 * @param block the mxGraph XML equivalent of the element is written at the end of this block
+	 * @param decimals number of decimals used for rounding coordinates (use -1 to bypass rounding)
+	 * @param tagName "polyline" or "polygon"
+	 * @param simplify if true, the lines are simplified, see PathSimplifier
+	 */
+	public void createShape(String svgPoly, StencilWriter.Block block, int decimals, String tagName, boolean simplify)
+	{
+		// a single pass over the string, the coordinates can be separated by commas, whitespace or both
+		PathReader reader = PathLexer.forPoints(svgPoly);
+		double[] points = new double[16];
+		int count = 0;
+
+		while (reader.next())
 		{
-			this.doRound = true;
-			this.dtr = decimals;
+			if (count + 2 > points.length)
+			{
+				double[] newPoints = new double[points.length * 2];
+				System.arraycopy(points, 0, newPoints, 0, count);
+				points = newPoints;
+			}
+
+			points[count++] = reader.getParam(0);
+			points[count++] = reader.getParam(1);
 		}
-		
-		Element pathEl = parentDoc.createElement("path");
 
-		double x = 0;
-		double y = 0;
+		createShape(points, count, block, decimals, tagName.toLowerCase().equals("polygon"), simplify);
+	}
 
-		//a loop that reads the coords
-		int commaIndex = svgPoly.indexOf(",");
-		int spaceIndex = svgPoly.indexOf(" ", commaIndex+1);
+	/**
+	 * @param points the points of a SVG polyline or polygon as x, y pairs
+	 * @param count number of values in <b>points</b>, twice the number of points
+	 * @param block the mxGraph XML equivalent of the element is written at the end of this block
+	 * @param decimals number of decimals used for rounding coordinates (use -1 to bypass rounding)
+	 * @param closed true for a polygon
+	 * @param simplify if true, the lines are simplified, see PathSimplifier
+	 */
+	public void createShape(double[] points, int count, StencilWriter.Block block, int decimals, boolean closed, boolean simplify)
+	{
+		StencilPath path = new StencilPath();
+		PathSimplifier simplifier = (simplify) ? new PathSimplifier(path, decimals) : null;
 
-		if (spaceIndex == -1)
+		if (decimals >=0)
 		{
-			spaceIndex = svgPoly.length();
+			this.doRound = true;
+			this.dtr = decimals;
 		}
 
-		int i = 0;
-		
-		while ((commaIndex != -1) && (spaceIndex > commaIndex))
+		for (int i = 0; i + 1 < count; i += 2)
 		{
-			
-			//read x
-			String xString = svgPoly.substring(0, commaIndex);
-			//read y
-			String yString = svgPoly.substring(commaIndex + 1, spaceIndex);
+			double x = points[i];
+			double y = points[i + 1];
 
-			x = Double.valueOf(xString);
-			y = Double.valueOf(yString);
-
-			Element currChild = null;
-			
-			if (i == 0)
+			if (i > 0 && simplifier != null)
 			{
-				currChild = parentDoc.createElement("move");
+				simplifier.lineTo(points[i - 2], points[i - 1], x, y);
 			}
 			else
 			{
-				currChild = parentDoc.createElement("line");
+				if (i == 0)
+				{
+					path.moveTo(rtd(x), rtd(y));
+				}
+				else
+				{
+					path.lineTo(rtd(x), rtd(y));
+				}
 			}
-			
-			currChild.setAttribute("x", Double.toString(rtd(x)));
-			currChild.setAttribute("y", Double.toString(rtd(y)));
-			pathEl.appendChild(currChild);
-
-			svgPoly = svgPoly.substring(spaceIndex, svgPoly.length());
-
-			commaIndex = svgPoly.indexOf(",");
-			spaceIndex = svgPoly.indexOf(" ", commaIndex + 1);
+		}
 
-			if (spaceIndex==-1)
-			{
-				spaceIndex = svgPoly.length();
-			}
-			
-			i++;
+		if (simplifier != null)
+		{
+			simplifier.flush();
 		}
 
-		if (tagName.toLowerCase().equals("polygon"))
+		if (closed)
 		{
-			pathEl.appendChild(parentDoc.createElement("close"));
+			path.close();
 		}
 
-		return pathEl;
+		block.path(path);
 	}
-	
+
 	/**
 	 * @param d number to round
 	 * @param c decimals to round to
@@ -91,9 +103,7 @@ public class mxPolyParser
 	{
 		if (doRound)
 		{
-			BigDecimal temp = new BigDecimal(Double.toString(d));
-			temp = temp.setScale(dtr, RoundingMode.HALF_EVEN);
-			return temp.doubleValue();
+			return Shape2Xml.roundToDecimals(d, dtr);
 		}
 		else
 		{